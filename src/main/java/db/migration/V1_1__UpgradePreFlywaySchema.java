@@ -0,0 +1,168 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Brings a database that ddl-auto=update created from the original entities up to V1.
+ * <p>
+ * Such a database is baselined at V1 (spring.flyway.baseline-on-migrate), but has none of what V1
+ * added: the sequence tables, author.uuid, book.version, the overdue index and the constraint names
+ * later migrations refer to (Hibernate generated its own). Every step checks the schema first, so on
+ * a database that V1 created this migration changes nothing. The sequences are seeded past the
+ * existing ids by V1_2.
+ */
+public class V1_1__UpgradePreFlywaySchema extends BaseJavaMigration {
+
+    private static final List<String> SEQUENCE_TABLES = List.of("details", "app_users", "author", "book", "book_loan");
+
+    private static final List<Constraint> CONSTRAINTS = List.of(
+            Constraint.unique("details", "email", "uk_details_email"),
+            Constraint.unique("app_users", "username", "uk_app_users_username"),
+            Constraint.unique("app_users", "details_id", "uk_app_users_details_id"),
+            Constraint.unique("book", "isbn", "uk_book_isbn"),
+            Constraint.foreignKey("app_users", "details_id", "details", "fk_app_users_details"),
+            Constraint.foreignKey("author_book", "author_id", "author", "fk_author_book_author"),
+            Constraint.foreignKey("author_book", "book_id", "book", "fk_author_book_book"),
+            Constraint.foreignKey("book_loan", "borrower_id", "app_users", "fk_book_loan_borrower"),
+            Constraint.foreignKey("book_loan", "book_id", "book", "fk_book_loan_book"));
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String table : SEQUENCE_TABLES) {
+                if (!tableExists(connection, table + "_seq")) {
+                    statement.execute("create table " + table + "_seq (next_val bigint) engine=InnoDB");
+                    statement.execute("insert into " + table + "_seq values (1)");
+                }
+            }
+
+            if (!columnExists(connection, "author", "uuid")) {
+                statement.execute("alter table author add column uuid binary(16)");
+                assignAuthorUuids(connection);
+                statement.execute("alter table author modify column uuid binary(16) not null");
+                statement.execute("alter table author add constraint uk_author_uuid unique (uuid)");
+            }
+            if (!columnExists(connection, "book", "version")) {
+                statement.execute("alter table book add column version bigint not null default 0");
+            }
+            if (!indexExists(connection, "book_loan", "idx_book_loan_returned_due_date")) {
+                statement.execute("create index idx_book_loan_returned_due_date on book_loan (returned, due_date)");
+            }
+
+            // Add the named constraint before dropping the generated one: MySQL won't drop the only
+            // index a foreign key can use.
+            for (Constraint constraint : CONSTRAINTS) {
+                List<String> existing = constraintNames(connection, constraint);
+                if (existing.stream().anyMatch(constraint.name()::equalsIgnoreCase)) {
+                    continue;
+                }
+                statement.execute("alter table " + constraint.table() + " add constraint " + constraint.name() + " "
+                        + constraint.definition());
+                for (String generated : existing) {
+                    statement.execute("alter table " + constraint.table() + " drop constraint " + generated);
+                }
+            }
+        }
+    }
+
+    private static void assignAuthorUuids(Connection connection) throws SQLException {
+        try (Statement select = connection.createStatement();
+             ResultSet ids = select.executeQuery("select id from author");
+             PreparedStatement update = connection.prepareStatement("update author set uuid = ? where id = ?")) {
+            while (ids.next()) {
+                UUID uuid = UUID.randomUUID();
+                update.setBytes(1, ByteBuffer.allocate(16)
+                        .putLong(uuid.getMostSignificantBits())
+                        .putLong(uuid.getLeastSignificantBits())
+                        .array());
+                update.setInt(2, ids.getInt(1));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        return exists(connection, "select 1 from information_schema.tables where table_schema = ? and table_name = ?",
+                table);
+    }
+
+    private static boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        return exists(connection, "select 1 from information_schema.columns "
+                + "where table_schema = ? and table_name = ? and column_name = ?", table, column);
+    }
+
+    private static boolean indexExists(Connection connection, String table, String index) throws SQLException {
+        try (ResultSet indexes = connection.getMetaData().getIndexInfo(connection.getCatalog(), connection.getSchema(),
+                table, false, false)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static List<String> constraintNames(Connection connection, Constraint constraint) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement query = connection.prepareStatement("select tc.constraint_name "
+                + "from information_schema.table_constraints tc "
+                + "join information_schema.key_column_usage k on k.constraint_schema = tc.constraint_schema "
+                + "and k.constraint_name = tc.constraint_name and k.table_name = tc.table_name "
+                + "where tc.table_schema = ? and tc.table_name = ? and tc.constraint_type = ? and k.column_name = ?")) {
+            query.setString(1, schema(connection));
+            query.setString(2, constraint.table());
+            query.setString(3, constraint.type());
+            query.setString(4, constraint.column());
+            try (ResultSet result = query.executeQuery()) {
+                while (result.next()) {
+                    names.add(result.getString(1));
+                }
+            }
+        }
+        return names;
+    }
+
+    private static boolean exists(Connection connection, String sql, String... names) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement(sql)) {
+            query.setString(1, schema(connection));
+            for (int i = 0; i < names.length; i++) {
+                query.setString(i + 2, names[i]);
+            }
+            try (ResultSet result = query.executeQuery()) {
+                return result.next();
+            }
+        }
+    }
+
+    // MySQL reports the database as the catalog, H2 (used in the tests) as the schema.
+    private static String schema(Connection connection) throws SQLException {
+        return Objects.requireNonNullElse(connection.getSchema(), connection.getCatalog());
+    }
+
+    private record Constraint(String table, String column, String type, String definition, String name) {
+
+        static Constraint unique(String table, String column, String name) {
+            return new Constraint(table, column, "UNIQUE", "unique (" + column + ")", name);
+        }
+
+        static Constraint foreignKey(String table, String column, String referencedTable, String name) {
+            return new Constraint(table, column, "FOREIGN KEY",
+                    "foreign key (" + column + ") references " + referencedTable + " (id)", name);
+        }
+    }
+}
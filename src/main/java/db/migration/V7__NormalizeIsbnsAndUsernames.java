@@ -0,0 +1,144 @@
+package db.migration;
+
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Stores existing ISBNs and usernames in the form the entities write them since they were
+ * normalized (Isbn.normalize, AppUser.normalizeUsername), so the natural-id lookups, which only
+ * compare normalized values, find rows written before that as well.
+ * <p>
+ * The normalizations are copies of the entities' as they were when this migration was written, so
+ * the migration does the same on every database even if the entities change later.
+ * <p>
+ * Rows that would end up with the same value are duplicates nobody could tell apart at lookup; the
+ * migration fails and lists them instead of picking one. Both normalizations leave a normalized
+ * value as it is, so once there are no collisions the updates can't violate the unique keys in
+ * between.
+ */
+public class V7__NormalizeIsbnsAndUsernames extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        Map<Integer, String> isbns = changes(connection, "book", "isbn", V7__NormalizeIsbnsAndUsernames::normalizeIsbn);
+        Map<Integer, String> usernames = changes(connection, "app_users", "username", V7__NormalizeIsbnsAndUsernames::normalizeUsername);
+        update(connection, "book", "isbn", isbns);
+        update(connection, "app_users", "username", usernames);
+    }
+
+    // The rows whose value changes, by id, after checking that no two rows end up with the same value.
+    private static Map<Integer, String> changes(Connection connection, String table, String column,
+                                                UnaryOperator<String> normalize) throws SQLException {
+        Map<String, List<String>> byNormalized = new LinkedHashMap<>();
+        Map<Integer, String> changes = new LinkedHashMap<>();
+        try (Statement select = connection.createStatement();
+             ResultSet rows = select.executeQuery("select id, " + column + " from " + table)) {
+            while (rows.next()) {
+                int id = rows.getInt(1);
+                String value = rows.getString(2);
+                String normalized = normalize.apply(value);
+                byNormalized.computeIfAbsent(normalized, key -> new ArrayList<>()).add(id + " '" + value + "'");
+                if (!normalized.equals(value)) {
+                    changes.put(id, normalized);
+                }
+            }
+        }
+
+        List<String> collisions = byNormalized.entrySet().stream()
+                .filter(entry -> entry.getValue().size() > 1)
+                .map(entry -> "'" + entry.getKey() + "' <- " + String.join(", ", entry.getValue()))
+                .toList();
+        if (!collisions.isEmpty()) {
+            throw new FlywayException("Cannot normalize " + table + "." + column + ", these rows (id and value) "
+                    + "would get the same value; merge or rename them first: " + String.join("; ", collisions));
+        }
+        return changes;
+    }
+
+    private static void update(Connection connection, String table, String column, Map<Integer, String> changes)
+            throws SQLException {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement update = connection.prepareStatement(
+                "update " + table + " set " + column + " = ? where id = ?")) {
+            for (Map.Entry<Integer, String> change : changes.entrySet()) {
+                update.setString(1, change.getValue());
+                update.setInt(2, change.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
+    // Valid ISBN-13s as 13 digits, valid ISBN-10s converted to ISBN-13, anything else trimmed and upper-cased.
+    private static String normalizeIsbn(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        String trimmed = isbn.strip().toUpperCase(Locale.ROOT);
+        String compact = trimmed.replace("-", "").replace(" ", "");
+        if (isIsbn13(compact)) {
+            return compact;
+        }
+        if (isIsbn10(compact)) {
+            String body = "978" + compact.substring(0, 9);
+            return body + checkDigit13(body);
+        }
+        return trimmed;
+    }
+
+    private static boolean isIsbn13(String isbn) {
+        if (isbn.length() != 13 || !isbn.chars().allMatch(Character::isDigit)) {
+            return false;
+        }
+        return checkDigit13(isbn) == isbn.charAt(12) - '0';
+    }
+
+    private static boolean isIsbn10(String isbn) {
+        if (isbn.length() != 10) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = isbn.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c == 'X' && i == 9) {
+                digit = 10;
+            } else {
+                return false;
+            }
+            sum += (10 - i) * digit;
+        }
+        return sum % 11 == 0;
+    }
+
+    // Check digit of the first 12 digits: weights alternate 1 and 3.
+    private static int checkDigit13(String digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static String normalizeUsername(String username) {
+        return username == null ? null : username.strip().toLowerCase(Locale.ROOT);
+    }
+}
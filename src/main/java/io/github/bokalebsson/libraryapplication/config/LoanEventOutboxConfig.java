@@ -0,0 +1,33 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import io.github.bokalebsson.libraryapplication.outbox.FileLoanEventSink;
+import io.github.bokalebsson.libraryapplication.outbox.InMemoryLoanEventSink;
+import io.github.bokalebsson.libraryapplication.outbox.LoanEventSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * The sink the loan event outbox is delivered to, chosen with {@code library.outbox.sink}:
+ * {@code file} or {@code memory}. There is no default: unset, or with any other value, no sink is
+ * created here and the application declares its own {@link LoanEventSink} bean, e.g. one that
+ * calls the discovery and notification services.
+ */
+@Configuration(proxyBeanMethods = false)
+public class LoanEventOutboxConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "library.outbox.sink", havingValue = "file")
+    public LoanEventSink fileLoanEventSink(@Value("${library.outbox.file:loan-events.jsonl}") Path file) {
+        return new FileLoanEventSink(file);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "library.outbox.sink", havingValue = "memory")
+    public InMemoryLoanEventSink inMemoryLoanEventSink() {
+        return new InMemoryLoanEventSink();
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import io.github.bokalebsson.libraryapplication.config.PasswordHashingProperties.Algorithm;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Password encoder for {@link io.github.bokalebsson.libraryapplication.service.PasswordService}.
+ * <p>
+ * Hashes are stored with the algorithm as prefix ({@code {bcrypt}}, {@code {argon2}},
+ * {@code {pbkdf2}}) and all three stay verifiable whichever one is configured for new hashes.
+ * Their cost parameters are stored in the hash as well, so a hash reports that it needs an
+ * upgrade when the algorithm or the cost changed.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(PasswordHashingProperties.class)
+public class PasswordEncoderConfig {
+
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+
+    @Bean
+    public PasswordEncoder passwordEncoder(PasswordHashingProperties properties) {
+        return delegatingPasswordEncoder(properties);
+    }
+
+    public static DelegatingPasswordEncoder delegatingPasswordEncoder(PasswordHashingProperties properties) {
+        PasswordHashingProperties.Argon2 argon2 = properties.argon2();
+        Map<String, PasswordEncoder> encoders = Map.of(
+                Algorithm.BCRYPT.id(), new BCryptPasswordEncoder(properties.bcrypt().strength()),
+                Algorithm.ARGON2.id(), new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH,
+                        argon2.parallelism(), argon2.memoryKib(), argon2.iterations()),
+                Algorithm.PBKDF2.id(), new Pbkdf2IterationsPasswordEncoder(properties.pbkdf2().iterations()));
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(properties.algorithm().id(), encoders);
+        encoder.setDefaultPasswordEncoderForMatches(properties.acceptLegacyPlaintext()
+                ? new LegacyPlaintext(encoder) : new RejectUnprefixed(encoder));
+        return encoder;
+    }
+
+    /**
+     * Handles stored passwords without an {@code {id}} prefix. Those never come from this
+     * application's encoders, so they always need an upgrade, and encoding produces a hash with
+     * the configured algorithm, like the encoder they belong to.
+     */
+    private abstract static class UnprefixedPasswordEncoder implements PasswordEncoder {
+
+        private final PasswordEncoder current;
+
+        UnprefixedPasswordEncoder(PasswordEncoder current) {
+            this.current = current;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return current.encode(rawPassword);
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return true;
+        }
+    }
+
+    // Passwords stored before hashing was introduced, compared as plain text.
+    private static final class LegacyPlaintext extends UnprefixedPasswordEncoder {
+
+        LegacyPlaintext(PasswordEncoder current) {
+            super(current);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword != null && MessageDigest.isEqual(
+                    rawPassword.toString().getBytes(StandardCharsets.UTF_8), encodedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static final class RejectUnprefixed extends UnprefixedPasswordEncoder {
+
+        RejectUnprefixed(PasswordEncoder current) {
+            super(current);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return false;
+        }
+    }
+}
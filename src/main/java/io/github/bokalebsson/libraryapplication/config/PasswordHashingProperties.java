@@ -0,0 +1,63 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Algorithm and cost of new password hashes ({@code library.password.*}). Existing hashes keep
+ * verifying after a change and are rehashed with the new settings on the next successful login.
+ * <p>
+ * The defaults follow the OWASP password storage recommendations.
+ *
+ * @param algorithm             algorithm for new hashes
+ * @param acceptLegacyPlaintext whether stored passwords without an {@code {id}} prefix, i.e. from
+ *                              before hashing was introduced, are compared as plain text
+ */
+@ConfigurationProperties("library.password")
+public record PasswordHashingProperties(@DefaultValue("bcrypt") Algorithm algorithm,
+                                        @DefaultValue("false") boolean acceptLegacyPlaintext,
+                                        @DefaultValue Bcrypt bcrypt,
+                                        @DefaultValue Argon2 argon2,
+                                        @DefaultValue Pbkdf2 pbkdf2) {
+
+    public enum Algorithm {
+        BCRYPT("bcrypt"), ARGON2("argon2"), PBKDF2("pbkdf2");
+
+        private final String id;
+
+        Algorithm(String id) {
+            this.id = id;
+        }
+
+        // Prefix of the stored hash, e.g. "{bcrypt}$2a$12$...".
+        public String id() {
+            return id;
+        }
+    }
+
+    /**
+     * @param strength log2 of the number of rounds (4-31)
+     */
+    public record Bcrypt(@DefaultValue("12") int strength) {
+    }
+
+    /**
+     * Argon2id.
+     *
+     * @param memoryKib   memory per hash in KiB
+     * @param iterations  passes over the memory
+     * @param parallelism lanes, each hash uses one thread regardless
+     */
+    public record Argon2(@DefaultValue("19456") int memoryKib,
+                         @DefaultValue("2") int iterations,
+                         @DefaultValue("1") int parallelism) {
+    }
+
+    /**
+     * PBKDF2 with HMAC-SHA256.
+     *
+     * @param iterations number of HMAC iterations
+     */
+    public record Pbkdf2(@DefaultValue("600000") int iterations) {
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder.SecretKeyFactoryAlgorithm;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PBKDF2-HMAC-SHA256 that stores the iteration count with the hash ({@code 600000$<hex>}).
+ * {@link Pbkdf2PasswordEncoder} on its own does not, so raising the iteration count would
+ * break every existing hash instead of upgrading it on the next login like bcrypt and Argon2.
+ */
+class Pbkdf2IterationsPasswordEncoder implements PasswordEncoder {
+
+    private static final int SALT_LENGTH = 16;
+
+    private final int iterations;
+    private final Map<Integer, Pbkdf2PasswordEncoder> encoders = new ConcurrentHashMap<>();
+
+    Pbkdf2IterationsPasswordEncoder(int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("PBKDF2 iterations must be positive: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return iterations + "$" + encoder(iterations).encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        int separator = encodedPassword == null ? -1 : encodedPassword.indexOf('$');
+        if (separator <= 0) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(encodedPassword.substring(0, separator));
+            return storedIterations > 0 && encoder(storedIterations).matches(rawPassword, encodedPassword.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int separator = encodedPassword.indexOf('$');
+        try {
+            return separator <= 0 || Integer.parseInt(encodedPassword.substring(0, separator)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private Pbkdf2PasswordEncoder encoder(int iterations) {
+        return encoders.computeIfAbsent(iterations, count ->
+                new Pbkdf2PasswordEncoder("", SALT_LENGTH, count, SecretKeyFactoryAlgorithm.PBKDF2WithHmacSHA256));
+    }
+}
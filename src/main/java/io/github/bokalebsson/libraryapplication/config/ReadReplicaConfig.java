@@ -0,0 +1,155 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.lang.Nullable;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to a read replica, when {@code library.datasource.replica.url} is set.
+ * <p>
+ * The application's {@code DataSource} hands out connections lazily: a transaction marked
+ * {@code @Transactional(readOnly = true)} (which includes Spring Data's finders, e.g. the
+ * {@code BookRepository} searches and {@code BookLoanRepository.findByLoanDateBetween}) gets a
+ * replica connection, everything else, Flyway and the schema tools included, gets a primary one. A
+ * read-only transaction that runs inside a read-write one keeps using the primary connection.
+ * Replicas lag behind, so after a write the same thread, and the same client through
+ * {@link ReadYourWritesFilter}, reads from the primary for a while ({@link ReadYourWrites}).
+ * Transactions on the replica don't fill the second-level cache ({@link ReplicaTransactions}).
+ * <p>
+ * Both pools are HikariCP, configured with {@code spring.datasource.hikari.*} and
+ * {@code library.datasource.replica.hikari.*}.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "library.datasource.replica", name = "url")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(defaultCandidate = false)
+    @ConfigurationProperties("library.datasource.replica")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("library.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Qualifier("replicaDataSourceProperties") DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${library.datasource.replica.read-your-writes-window:5s}") Duration window) {
+        return new ReadYourWrites(window);
+    }
+
+    @Bean
+    public ReplicaTransactions replicaTransactions(ReadYourWrites readYourWrites,
+                                                   ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return new ReplicaTransactions(readYourWrites, entityManagerFactory);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReadYourWrites readYourWrites) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(new ReadYourWritesFilter(readYourWrites));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(Target.PRIMARY, primaryDataSource, Target.REPLICA, replicaDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+
+        // The transaction manager asks for a connection before it marks the transaction read-only;
+        // the proxy only fetches the real one at the first statement.
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    enum Target { PRIMARY, REPLICA }
+
+    /**
+     * Decides, when a transaction begins, whether it reads from the replica: read-only and not
+     * reading its own writes. Its session then only reads the second-level cache and never puts
+     * into it, or an entity the replica hasn't caught up on (a book that was just returned) would
+     * be cached for everyone, the primary's transactions included, until it expires.
+     */
+    static class ReplicaTransactions implements TransactionExecutionListener {
+
+        private final ReadYourWrites readYourWrites;
+        private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+        ReplicaTransactions(ReadYourWrites readYourWrites, ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+            this.readYourWrites = readYourWrites;
+            this.entityManagerFactory = entityManagerFactory;
+        }
+
+        @Override
+        public void afterBegin(TransactionExecution transaction, @Nullable Throwable beginFailure) {
+            if (beginFailure != null || !transaction.isNewTransaction()
+                    || !TransactionSynchronizationManager.isSynchronizationActive()) {
+                return;
+            }
+            Target target = transaction.isReadOnly() && !readYourWrites.readsFromPrimary() ? Target.REPLICA : Target.PRIMARY;
+
+            // A transaction started inside another (REQUIRES_NEW) hides the outer one's target until it ends.
+            Object outer = TransactionSynchronizationManager.unbindResourceIfPossible(Target.class);
+            TransactionSynchronizationManager.bindResource(Target.class, target);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(Target.class);
+                    if (outer != null) {
+                        TransactionSynchronizationManager.bindResource(Target.class, outer);
+                    }
+                }
+            });
+
+            if (target == Target.REPLICA
+                    && TransactionSynchronizationManager.getResource(entityManagerFactory.getObject()) instanceof EntityManagerHolder holder) {
+                holder.getEntityManager().setProperty(AvailableSettings.JAKARTA_SHARED_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+            }
+        }
+    }
+
+    /**
+     * The target {@link ReplicaTransactions} chose for the current transaction; the primary outside of one.
+     */
+    static class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return TransactionSynchronizationManager.getResource(Target.class) instanceof Target target ? target : Target.PRIMARY;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Read-your-writes on top of the read replica. When a read-write transaction commits, read-only
+ * transactions on the same thread go to the primary for {@code window}, because the replica may not
+ * have the change yet. {@link ReadYourWritesFilter} carries this over to the client's next requests.
+ * <p>
+ * Registered with the transaction manager as an execution listener; Spring Boot adds every
+ * {@link TransactionExecutionListener} bean to it.
+ */
+public class ReadYourWrites implements TransactionExecutionListener {
+
+    private static final ThreadLocal<Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+
+    private final Duration window;
+
+    public ReadYourWrites(Duration window) {
+        this.window = window;
+    }
+
+    public Duration window() {
+        return window;
+    }
+
+    public boolean readsFromPrimary() {
+        Instant primaryUntil = CONTEXT.get().primaryUntil;
+        return primaryUntil != null && Instant.now().isBefore(primaryUntil);
+    }
+
+    /**
+     * Starts a request: reads go to the primary until {@code primaryUntil} (if not null), and
+     * {@code onWrite} is told the new deadline whenever the request commits a write.
+     */
+    public void begin(@Nullable Instant primaryUntil, Consumer<Instant> onWrite) {
+        Context context = new Context();
+        context.primaryUntil = primaryUntil;
+        context.onWrite = onWrite;
+        CONTEXT.set(context);
+    }
+
+    public void clear() {
+        CONTEXT.remove();
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, @Nullable Throwable commitFailure) {
+        if (commitFailure != null || transaction.isReadOnly()) {
+            return;
+        }
+        Context context = CONTEXT.get();
+        context.primaryUntil = Instant.now().plus(window);
+        if (context.onWrite != null) {
+            context.onWrite.accept(context.primaryUntil);
+        }
+    }
+
+    private static final class Context {
+        private Instant primaryUntil;
+        private Consumer<Instant> onWrite;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+
+/**
+ * Keeps a client on the primary for a while after it wrote something, e.g. so the loan list shown
+ * right after a checkout contains the new loan. A request that commits a write gets a cookie with
+ * the time until which its reads should go to the primary; later requests that send it back do so.
+ * The client can change the cookie, so a time further ahead than one window is ignored.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "library-primary-until";
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadYourWritesFilter(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        readYourWrites.begin(primaryUntil(request), primaryUntil -> {
+            Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(primaryUntil.toEpochMilli()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) readYourWrites.window().toSeconds() + 1);
+            response.addCookie(cookie);
+        });
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            readYourWrites.clear();
+        }
+    }
+
+    private Instant primaryUntil(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return null;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                Instant primaryUntil;
+                try {
+                    primaryUntil = Instant.ofEpochMilli(Long.parseLong(cookie.getValue()));
+                } catch (NumberFormatException | DateTimeException e) {
+                    return null;
+                }
+                return primaryUntil.isAfter(Instant.now().plus(readYourWrites.window())) ? null : primaryUntil;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the {@code @Scheduled} jobs, e.g. the nightly loan counter reconciliation. A job is switched
+ * off by setting its cron property to "-".
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableScheduling
+public class SchedulingConfig {
+}
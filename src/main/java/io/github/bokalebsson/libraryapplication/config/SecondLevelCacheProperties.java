@@ -0,0 +1,25 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Eviction policy of each Hibernate second-level cache region, keyed by region name
+ * ({@code library.cache.regions.<region>.ttl} and {@code .max-size}).
+ */
+@ConfigurationProperties("library.cache")
+public record SecondLevelCacheProperties(Map<String, Region> regions) {
+
+    public SecondLevelCacheProperties {
+        regions = regions == null ? Map.of() : Map.copyOf(regions);
+    }
+
+    /**
+     * @param ttl     how long an entry lives after it was written, or {@code null} for no limit
+     * @param maxSize maximum number of entries in the region, or {@code 0} for no limit
+     */
+    public record Region(Duration ttl, long maxSize) {
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.web.config.EnableSpringDataWebSupport;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import static org.springframework.data.web.config.EnableSpringDataWebSupport.PageSerializationMode.VIA_DTO;
+
+/**
+ * REST API plumbing.
+ * <p>
+ * Pages are written as {@code {"content": [...], "page": {size, number, totalElements, totalPages}}}
+ * (Spring Data's stable PagedModel) instead of serializing {@code PageImpl} itself. Every GET
+ * under {@code /api} gets an ETag computed from the response body; a request with a matching
+ * {@code If-None-Match} gets an empty 304. The body is still produced, so this saves bandwidth
+ * and client work, not database work.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableSpringDataWebSupport(pageSerializationMode = VIA_DTO)
+public class WebConfig {
+
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> etagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration = new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
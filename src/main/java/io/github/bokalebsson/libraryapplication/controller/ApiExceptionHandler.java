@@ -0,0 +1,45 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.exception.BookUnavailableException;
+import io.github.bokalebsson.libraryapplication.exception.LoanLimitReachedException;
+import io.github.bokalebsson.libraryapplication.exception.NotFoundException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Turns the exceptions of the services into RFC 9457 problem responses. Only the domain
+ * exceptions, whose messages are written for the client, are passed on with their message; any
+ * other exception is an error of ours and stays a 500.
+ */
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    // Unknown user or book in a checkout. The ids come from the request body, the resource the
+    // URL names exists, so this is a bad request rather than a 404.
+    @ExceptionHandler(NotFoundException.class)
+    public ProblemDetail notFound(NotFoundException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    // ?sort= on a property the resource doesn't have: Hibernate rejects the ORDER BY. The message
+    // would show the query, so it is not passed on.
+    @ExceptionHandler(InvalidDataAccessApiUsageException.class)
+    public ProblemDetail invalidQuery(InvalidDataAccessApiUsageException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, "Invalid sort or filter parameter");
+    }
+
+    @ExceptionHandler({BookUnavailableException.class, LoanLimitReachedException.class})
+    public ProblemDetail conflict(IllegalStateException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, e.getMessage());
+    }
+
+    // Still contended after the checkout retries. The message names entities and versions.
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ProblemDetail concurrentUpdate(OptimisticLockingFailureException e) {
+        return ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, "Changed concurrently, please try again");
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.dto.AppUserView;
+import io.github.bokalebsson.libraryapplication.dto.BookLoanView;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+public class AppUserController {
+
+    private final AppUserRepository appUserRepository;
+    private final BookLoanRepository bookLoanRepository;
+
+    @GetMapping
+    public Page<AppUserView> list(@PageableDefault(sort = "id") Pageable pageable) {
+        return appUserRepository.findAllViews(pageable);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<AppUserView> get(@PathVariable int id) {
+        return ResponseEntity.of(appUserRepository.findViewById(id));
+    }
+
+    // The loan history, most recent first. A slice rather than a page: counting a heavy borrower's
+    // whole history on every request would cost more than reading the page.
+    @GetMapping("/{id}/loans")
+    public Slice<BookLoanView> loans(@PathVariable int id, @PageableDefault Pageable pageable) {
+        return bookLoanRepository.findHistoryViewsByBorrowerId(id,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.dto.AuthorView;
+import io.github.bokalebsson.libraryapplication.dto.BookView;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.service.CatalogSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/authors")
+@RequiredArgsConstructor
+public class AuthorController {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final AuthorRepository authorRepository;
+    private final BookRepository bookRepository;
+    private final CatalogSearchService catalogSearchService;
+
+    @GetMapping
+    public Page<AuthorView> list(@RequestParam(required = false) String name,
+                                 @PageableDefault(sort = "id") Pageable pageable) {
+        if (name == null || name.isBlank()) {
+            return authorRepository.findAllViews(pageable);
+        }
+        return authorRepository.findViewsByNameContaining(name.trim(), pageable);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<AuthorView> get(@PathVariable int id) {
+        return ResponseEntity.of(authorRepository.findViewById(id));
+    }
+
+    @GetMapping("/{id}/books")
+    public Page<BookView> books(@PathVariable int id, @PageableDefault(sort = "id") Pageable pageable) {
+        return bookRepository.findViewsByAuthorId(id, pageable);
+    }
+
+    // Ranked search box results, see CatalogSearchService.
+    @GetMapping("/search")
+    public List<AuthorView> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1");
+        }
+        return catalogSearchService.searchAuthors(q, Math.min(limit, MAX_LIMIT)).stream().map(AuthorView::of).toList();
+    }
+}
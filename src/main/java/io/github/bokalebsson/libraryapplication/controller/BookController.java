@@ -0,0 +1,78 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.dto.AuthorView;
+import io.github.bokalebsson.libraryapplication.dto.BookLoanView;
+import io.github.bokalebsson.libraryapplication.dto.BookView;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.service.CatalogSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/books")
+@RequiredArgsConstructor
+public class BookController {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final BookLoanRepository bookLoanRepository;
+    private final CatalogSearchService catalogSearchService;
+
+    @GetMapping
+    public Page<BookView> list(@RequestParam(required = false) String title,
+                               @PageableDefault(sort = "id") Pageable pageable) {
+        if (title == null || title.isBlank()) {
+            return bookRepository.findAllViews(pageable);
+        }
+        return bookRepository.findViewsByTitleContaining(title.trim(), pageable);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BookView> get(@PathVariable int id) {
+        return ResponseEntity.of(bookRepository.findViewById(id));
+    }
+
+    @GetMapping("/{id}/authors")
+    public Page<AuthorView> authors(@PathVariable int id, @PageableDefault(sort = "id") Pageable pageable) {
+        return authorRepository.findViewsByBookId(id, pageable);
+    }
+
+    @GetMapping("/{id}/loans")
+    public Page<BookLoanView> loans(@PathVariable int id, @PageableDefault(sort = "id") Pageable pageable) {
+        return bookLoanRepository.findViewsByBookId(id, pageable);
+    }
+
+    // Ranked search box results, see CatalogSearchService.
+    @GetMapping("/search")
+    public List<BookView> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return catalogSearchService.searchBooks(q, capped(limit)).stream().map(BookView::of).toList();
+    }
+
+    @GetMapping("/suggest")
+    public List<BookView> suggest(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+        return catalogSearchService.suggestBooks(q, capped(limit)).stream().map(BookView::of).toList();
+    }
+
+    private static int capped(int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1");
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
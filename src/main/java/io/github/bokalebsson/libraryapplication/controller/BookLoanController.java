@@ -0,0 +1,65 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.dto.BookLoanView;
+import io.github.bokalebsson.libraryapplication.dto.CheckoutRequest;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.service.LoanService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/loans")
+@RequiredArgsConstructor
+public class BookLoanController {
+
+    private final BookLoanRepository bookLoanRepository;
+    private final LoanService loanService;
+
+    // Open loans, or only the overdue ones with ?overdue=true.
+    @GetMapping
+    public Page<BookLoanView> open(@RequestParam(defaultValue = "false") boolean overdue,
+                                   @PageableDefault(sort = "dueDate") Pageable pageable) {
+        if (overdue) {
+            return bookLoanRepository.findOverdueViews(LocalDate.now(), pageable);
+        }
+        return bookLoanRepository.findOpenViews(pageable);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BookLoanView> get(@PathVariable int id) {
+        return ResponseEntity.of(bookLoanRepository.findViewById(id));
+    }
+
+    @PostMapping
+    public ResponseEntity<BookLoanView> checkout(@RequestBody CheckoutRequest request) {
+        BookLoan loan = loanService.checkout(request.borrowerId(), request.bookId());
+        BookLoanView view = bookLoanRepository.findViewById(loan.getId()).orElseThrow();
+        return ResponseEntity
+                .created(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(loan.getId()).toUri())
+                .body(view);
+    }
+
+    @PostMapping("/{id}/return")
+    public ResponseEntity<Void> returnLoan(@PathVariable int id) {
+        if (!loanService.returnLoan(id)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Loan " + id + " is not open");
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
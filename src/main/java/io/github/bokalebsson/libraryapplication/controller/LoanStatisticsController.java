@@ -0,0 +1,63 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.dto.BookCirculation;
+import io.github.bokalebsson.libraryapplication.dto.CirculationSummary;
+import io.github.bokalebsson.libraryapplication.dto.CohortCirculation;
+import io.github.bokalebsson.libraryapplication.repository.LoanDailyStatsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.format.annotation.DateTimeFormat.ISO.DATE;
+
+// Circulation reports for a period (from and to inclusive), answered from the daily rollups.
+@RestController
+@RequestMapping("/api/statistics/loans")
+@RequiredArgsConstructor
+public class LoanStatisticsController {
+
+    private static final int MAX_LIMIT = 100;
+
+    private final LoanDailyStatsRepository loanDailyStatsRepository;
+
+    @GetMapping("/summary")
+    public CirculationSummary summary(@RequestParam @DateTimeFormat(iso = DATE) LocalDate from,
+                                      @RequestParam @DateTimeFormat(iso = DATE) LocalDate to) {
+        requirePeriod(from, to);
+        return loanDailyStatsRepository.summarize(from, to);
+    }
+
+    @GetMapping("/cohorts")
+    public List<CohortCirculation> cohorts(@RequestParam @DateTimeFormat(iso = DATE) LocalDate from,
+                                           @RequestParam @DateTimeFormat(iso = DATE) LocalDate to) {
+        requirePeriod(from, to);
+        return loanDailyStatsRepository.summarizeByCohort(from, to);
+    }
+
+    @GetMapping("/top-books")
+    public List<BookCirculation> topBooks(@RequestParam @DateTimeFormat(iso = DATE) LocalDate from,
+                                          @RequestParam @DateTimeFormat(iso = DATE) LocalDate to,
+                                          @RequestParam(defaultValue = "10") int limit) {
+        requirePeriod(from, to);
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1");
+        }
+        return loanDailyStatsRepository.findMostBorrowedBooks(from, to, Limit.of(Math.min(limit, MAX_LIMIT)));
+    }
+
+    // An inverted period would read as an empty one and answer with zeros instead of an error.
+    private static void requirePeriod(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+import java.time.LocalDate;
+
+/**
+ * A user as the API shows it: the account joined with its details, never the password hash.
+ * Selected with a constructor expression.
+ */
+public record AppUserView(int id, String username, LocalDate regDate, String name, String email) {
+}
@@ -0,0 +1,13 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+
+/**
+ * An author as the API shows it, without the books. Selected with a constructor expression.
+ */
+public record AuthorView(int id, String firstName, String lastName) {
+
+    public static AuthorView of(Author author) {
+        return new AuthorView(author.getId(), author.getFirstName(), author.getLastName());
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+/**
+ * How often a book was checked out in a period, summed from the daily rollups.
+ */
+public record BookCirculation(int bookId, String title, long checkouts) {
+}
@@ -0,0 +1,11 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+import java.time.LocalDate;
+
+/**
+ * A loan as the API shows it, with the title of the book and the username of the borrower
+ * joined in. Selected with a constructor expression.
+ */
+public record BookLoanView(int id, LocalDate loanDate, LocalDate dueDate, boolean returned,
+                           int bookId, String bookTitle, int borrowerId, String borrowerUsername) {
+}
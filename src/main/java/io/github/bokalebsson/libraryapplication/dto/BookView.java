@@ -0,0 +1,14 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+import io.github.bokalebsson.libraryapplication.entity.Book;
+
+/**
+ * A book as the API shows it. Selected with a constructor expression: only these columns are
+ * read and no Book entity (or its authors) is loaded.
+ */
+public record BookView(int id, String isbn, String title, int maxLoanDays, boolean available) {
+
+    public static BookView of(Book book) {
+        return new BookView(book.getId(), book.getIsbn(), book.getTitle(), book.getMaxLoanDays(), book.isAvailable());
+    }
+}
@@ -0,0 +1,7 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+/**
+ * Body of {@code POST /api/loans}.
+ */
+public record CheckoutRequest(int borrowerId, int bookId) {
+}
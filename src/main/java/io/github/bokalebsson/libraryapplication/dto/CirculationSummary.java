@@ -0,0 +1,24 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+/**
+ * Circulation of a period, summed from the daily rollups. The average loan duration and the overdue
+ * rate are over the loans returned in the period; both are 0 when none were.
+ *
+ * @param averageLoanDays days between checkout and return
+ * @param overdueRate     share of the returned loans that came back after their due date
+ */
+public record CirculationSummary(long checkouts, long returns, double averageLoanDays, double overdueRate) {
+
+    // Sums are null when the period has no rows.
+    public CirculationSummary(Long checkouts, Long returns, Long loanDays, Long returnedOverdue) {
+        this(orZero(checkouts), orZero(returns), ratio(loanDays, returns), ratio(returnedOverdue, returns));
+    }
+
+    private static long orZero(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    private static double ratio(Long part, Long whole) {
+        return orZero(whole) == 0 ? 0 : (double) orZero(part) / whole;
+    }
+}
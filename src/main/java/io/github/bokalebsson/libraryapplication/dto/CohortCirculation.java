@@ -0,0 +1,13 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+/**
+ * Circulation of a period among the borrowers who registered in one month.
+ *
+ * @param cohort registration year and month as yyyyMM, e.g. 202401
+ */
+public record CohortCirculation(int cohort, CirculationSummary circulation) {
+
+    public CohortCirculation(Integer cohort, Long checkouts, Long returns, Long loanDays, Long returnedOverdue) {
+        this(cohort, new CirculationSummary(checkouts, returns, loanDays, returnedOverdue));
+    }
+}
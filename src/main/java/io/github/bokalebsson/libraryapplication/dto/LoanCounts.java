@@ -0,0 +1,8 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+/**
+ * Active and overdue loan counts of one borrower, either as stored on the user or as counted
+ * from book_loan. Selected with a constructor expression.
+ */
+public record LoanCounts(int borrowerId, long activeLoans, long overdueLoans) {
+}
@@ -0,0 +1,10 @@
+package io.github.bokalebsson.libraryapplication.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only row for overdue reminders. Selected directly with a constructor expression,
+ * so no BookLoan, AppUser or Book entities are loaded or kept in the persistence context.
+ */
+public record OverdueLoanView(int loanId, String borrowerEmail, String bookTitle, LocalDate dueDate) {
+}
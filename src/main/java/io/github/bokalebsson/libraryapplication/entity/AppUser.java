@@ -1,60 +1,119 @@
 package io.github.bokalebsson.libraryapplication.entity;
 
+import io.github.bokalebsson.libraryapplication.exception.BookUnavailableException;
+import io.github.bokalebsson.libraryapplication.exception.LoanLimitReachedException;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.OptimisticLock;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 @Entity
+@NamedEntityGraph(name = "AppUser.userDetails", attributeNodes = @NamedAttributeNode("userDetails"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "app-user")
+@NaturalIdCache(region = "app-user-username")
 @Table(name = "app_users")
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
 @Builder
 public class AppUser {
 
+    // What PasswordEncoder produces: the algorithm in braces, then the hash ("{bcrypt}$2a$12$...").
+    private static final Pattern ENCODED_PASSWORD = Pattern.compile("\\{[a-z0-9]+}.+");
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "app_users_seq")
+    @SequenceGenerator(name = "app_users_seq", sequenceName = "app_users_seq", allocationSize = 50)
     private int id;
 
+    @NaturalId(mutable = true)
     @Column(unique = true, nullable = false)
     private String username;
 
+    // Only ever a hash from PasswordService. Rows from before hashing may still hold plain text
+    // until their next login; changing it doesn't conflict with a concurrent checkout.
+    @OptimisticLock(excluded = true)
     @Column(nullable = false)
     private String password;
 
     @Column(nullable = false)
     private LocalDate regDate;
 
-    @OneToOne(cascade = CascadeType.ALL)
+    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "details_id", nullable = false, unique = true)
     private Details userDetails;
 
-    @OneToMany(mappedBy = "borrower")
-    private List<BookLoan> bookLoans;
+    // No collection of loans: a long-standing member has thousands, and touching such a collection
+    // loads all of them. The loan history is paged from BookLoanRepository, most recent first
+    // (findByBorrowerIdOrderByLoanDateDescIdDesc), and the counters below answer "how many".
+
+    // Loans not yet returned, maintained by checkout and return so borrowing limits can be checked
+    // without reading the loan history. LoanCounterReconciler verifies it against book_loan.
+    @Column(nullable = false)
+    private int activeLoanCount;
+
+    // Active loans past their due date. Loans become overdue with time, not with a write, so this
+    // is refreshed by LoanCounterReconciler and only decremented when an overdue loan is returned.
+    @Column(nullable = false)
+    private int overdueLoanCount;
+
+    // Concurrent checkouts by the same borrower both raise activeLoanCount; the version makes the
+    // second one fail and retry, so the limit can't be passed by racing it.
+    @Version
+    private long version;
 
     public AppUser(String username, String password, LocalDate regDate, Details userDetails) {
-        this.username = username;
-        this.password = password;
+        this.username = normalizeUsername(username);
+        this.password = requireEncoded(password);
         this.regDate = regDate;
         this.userDetails = userDetails;
     }
 
+    // Usernames are case-insensitive: stored trimmed and lower-cased, so lookups can match them exactly.
+    public static String normalizeUsername(String username) {
+        return username == null ? null : username.strip().toLowerCase(Locale.ROOT);
+    }
+
+    public void setUsername(String username) {
+        this.username = normalizeUsername(username);
+    }
+
+    public static String requireEncoded(String password) {
+        if (password == null || !ENCODED_PASSWORD.matcher(password).matches()) {
+            throw new IllegalArgumentException("Passwords are stored as hashes, use PasswordService.setPassword");
+        }
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = requireEncoded(password);
+    }
+
     public void addBookLoan(BookLoan loan){
+        addBookLoan(loan, LoanPolicy.UNLIMITED);
+    }
+
+    public void addBookLoan(BookLoan loan, LoanPolicy policy){
 
         Book book = loan.getBook();
 
         if (!book.isAvailable()) {
-            throw new IllegalStateException("Book is not available for loan: " + book.getTitle());
+            throw new BookUnavailableException("Book is not available for loan: " + book.getTitle());
         }
-
-        if(bookLoans==null){
-            bookLoans = new ArrayList<>();
+        if (!policy.allowsAnotherLoan(activeLoanCount)) {
+            throw new LoanLimitReachedException("Borrower " + username + " already has " + activeLoanCount
+                    + " active loans, the limit is " + policy.maxActiveLoans());
         }
-        bookLoans.add(loan);
+
         loan.setBorrower(this);
 
         LocalDate loanDate = loan.getLoanDate() != null ? loan.getLoanDate() : LocalDate.now();
@@ -62,11 +121,25 @@ public class AppUser {
         loan.setDueDate(loanDate.plusDays(book.getMaxLoanDays()));
 
         book.setAvailable(false);
+        activeLoanCount++;
+    }
+
+    // Takes a loan that is being returned off the counters; it was overdue if it was due before today.
+    public void loanReturned(BookLoan loan, LocalDate today) {
+        activeLoanCount--;
+        if (loan.getDueDate().isBefore(today)) {
+            overdueLoanCount = Math.max(0, overdueLoanCount - 1);
+        }
     }
 
     public void removeBookLoan(BookLoan loan){
-        if(bookLoans!=null){
-            bookLoans.remove(loan);
+        // By id: a loan read in another persistence context, or through a lazy proxy, has a
+        // different borrower instance. An unsaved user has no id yet, only its own instance.
+        AppUser borrower = loan.getBorrower();
+        if (borrower != null && (borrower == this || id != 0 && borrower.getId() == id)) {
+            if (!loan.isReturned()) {
+                activeLoanCount--;
+            }
             loan.setBorrower(null);
         }
 
@@ -75,4 +148,17 @@ public class AppUser {
             book.setAvailable(true);
         }
     }
+
+    public static class AppUserBuilder {
+
+        public AppUserBuilder username(String username) {
+            this.username = normalizeUsername(username);
+            return this;
+        }
+
+        public AppUserBuilder password(String password) {
+            this.password = requireEncoded(password);
+            return this;
+        }
+    }
 }
@@ -1,12 +1,20 @@
 package io.github.bokalebsson.libraryapplication.entity;
 
+import io.github.bokalebsson.libraryapplication.search.CatalogIndexListener;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 
 @Entity
+@EntityListeners(CatalogIndexListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "author")
 @Table(name = "author")
 @Getter
 @Setter
@@ -16,9 +24,16 @@ import java.util.Set;
 public class Author {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "author_seq")
+    @SequenceGenerator(name = "author_seq", sequenceName = "author_seq", allocationSize = 50)
     private Integer id;
 
+    // Authors have no natural business key, so each one is assigned a UUID when it is
+    // created. It is used for equals/hashCode and never changes once persisted.
+    @Column(nullable = false, unique = true, updatable = false)
+    @Builder.Default
+    private UUID uuid = UUID.randomUUID();
+
     @Column(nullable = false)
     private String firstName;
 
@@ -26,6 +41,7 @@ public class Author {
     private String lastName;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "author-books")
     @JoinTable(
             name = "author_book",
             joinColumns = @JoinColumn(name = "author_id"),
@@ -61,12 +77,12 @@ public class Author {
         if (this == o) return true;
         if (!(o instanceof Author)) return false;
         Author other = (Author) o;
-        return id != null && id.equals(other.id);
+        return getUuid() != null && getUuid().equals(other.getUuid());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return Objects.hashCode(getUuid());
     }
 
 }
@@ -1,12 +1,22 @@
 package io.github.bokalebsson.libraryapplication.entity;
 
+import io.github.bokalebsson.libraryapplication.search.CatalogIndexListener;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 
 @Entity
+@EntityListeners(CatalogIndexListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
+@NaturalIdCache(region = "book-isbn")
 @Table(name = "book")
 @Getter
 @Setter
@@ -16,9 +26,11 @@ import java.util.Set;
 public class Book {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Integer id;
 
+    @NaturalId(mutable = true)
     @Column(nullable = false, unique = true)
     private String isbn;
 
@@ -29,11 +41,22 @@ public class Book {
     private int maxLoanDays;
 
     @ManyToMany(mappedBy = "books")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book-authors")
     private Set<Author> authors;
 
     @Column(nullable = false)
+    @Builder.Default
     private boolean available = true;
 
+    // Optimistic lock: two concurrent checkouts of the same book cannot both flip "available".
+    @Version
+    private long version;
+
+    // Stored in canonical form, see Isbn.
+    public void setIsbn(String isbn) {
+        this.isbn = Isbn.normalize(isbn);
+    }
+
     public void addAuthor(Author author) {
         if (authors == null) {
             authors = new HashSet<>();
@@ -57,17 +80,27 @@ public class Book {
         }
     }
 
+    // Equality is based on the ISBN (the business key) rather than the generated id,
+    // so a Book keeps the same hash bucket before and after it is persisted.
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof Book)) return false;
         Book other = (Book) o;
-        return id != null && id.equals(other.id);
+        return getIsbn() != null && getIsbn().equals(other.getIsbn());
     }
 
     @Override
     public int hashCode() {
-        return getClass().hashCode();
+        return Objects.hashCode(getIsbn());
+    }
+
+    public static class BookBuilder {
+
+        public BookBuilder isbn(String isbn) {
+            this.isbn = Isbn.normalize(isbn);
+            return this;
+        }
     }
 
 }
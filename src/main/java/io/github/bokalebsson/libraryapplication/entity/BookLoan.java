@@ -6,7 +6,21 @@ import lombok.*;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "book_loan")
+@NamedEntityGraph(name = "BookLoan.book", attributeNodes = @NamedAttributeNode("book"))
+@NamedEntityGraph(name = "BookLoan.borrower", attributeNodes = @NamedAttributeNode("borrower"))
+@NamedEntityGraph(name = "BookLoan.bookAndBorrower", attributeNodes = {
+        @NamedAttributeNode("book"),
+        @NamedAttributeNode("borrower")
+})
+@Table(name = "book_loan", indexes = {
+        // Serves the overdue scan: WHERE returned = false AND due_date < ?
+        @Index(name = "idx_book_loan_returned_due_date", columnList = "returned, due_date"),
+        // Serves a borrower's loan history, most recent first: WHERE borrower_id = ? ORDER BY loan_date DESC
+        @Index(name = "idx_book_loan_borrower_loan_date", columnList = "borrower_id, loan_date"),
+        // Serve LoanStatisticsBackfill, which rebuilds the rollups one range of days at a time
+        @Index(name = "idx_book_loan_loan_date", columnList = "loan_date"),
+        @Index(name = "idx_book_loan_return_date", columnList = "return_date")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,7 +29,8 @@ import java.time.LocalDate;
 public class BookLoan {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_loan_seq")
+    @SequenceGenerator(name = "book_loan_seq", sequenceName = "book_loan_seq", allocationSize = 50)
     private int id;
 
     @Column(nullable = false)
@@ -27,11 +42,14 @@ public class BookLoan {
     @Column(nullable = false)
     private boolean returned;
 
-    @ManyToOne
+    // Null while the loan is open, and for loans returned before the return date was recorded.
+    private LocalDate returnDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "borrower_id", nullable = false)
     private AppUser borrower;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "book_id", nullable = false)
     private Book book;
 
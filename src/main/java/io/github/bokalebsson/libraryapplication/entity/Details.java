@@ -2,11 +2,20 @@ package io.github.bokalebsson.libraryapplication.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDate;
+import java.util.Locale;
 
 @Entity
-@Table(name = "details")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "details")
+@Table(name = "details", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_details_email_key", columnNames = "email_key")
+}, indexes = {
+        @Index(name = "idx_details_name_key", columnList = "name_key")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,15 +24,26 @@ import java.time.LocalDate;
 public class Details {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "details_seq")
+    @SequenceGenerator(name = "details_seq", sequenceName = "details_seq", allocationSize = 50)
     private int id;
 
-    @Column(unique = true, nullable = false, length = 100)
+    @Column(nullable = false, length = 100)
     private String email;
 
     @Column(nullable = false)
     private String name;
 
+    // Lookup keys: email and name as the case-insensitive finders compare them. Filled on every
+    // write, so those finders can use an index instead of wrapping the column in LOWER().
+    @Setter(AccessLevel.NONE)
+    @Column(nullable = false, length = 100)
+    private String emailKey;
+
+    @Setter(AccessLevel.NONE)
+    @Column(nullable = false)
+    private String nameKey;
+
     @Column(nullable = false)
     private LocalDate birthDate;
 
@@ -32,4 +52,19 @@ public class Details {
         this.name = name;
         this.birthDate = birthDate;
     }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.strip().toLowerCase(Locale.ROOT);
+    }
+
+    public static String normalizeName(String name) {
+        return name == null ? null : name.strip().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateLookupKeys() {
+        emailKey = normalizeEmail(email);
+        nameKey = normalizeName(name);
+    }
 }
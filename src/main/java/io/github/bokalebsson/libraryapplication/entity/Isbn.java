@@ -0,0 +1,72 @@
+package io.github.bokalebsson.libraryapplication.entity;
+
+import java.util.Locale;
+
+/**
+ * Canonical form of the ISBNs stored on {@link Book}, so the natural-id lookup can match them exactly.
+ * <p>
+ * Valid ISBN-13s are stored as 13 digits and valid ISBN-10s are converted to ISBN-13, both
+ * without hyphens or spaces. Anything else (local shelf marks, legacy numbers) is only trimmed
+ * and upper-cased.
+ */
+public final class Isbn {
+
+    private Isbn() {
+    }
+
+    public static String normalize(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        String trimmed = isbn.strip().toUpperCase(Locale.ROOT);
+        String compact = trimmed.replace("-", "").replace(" ", "");
+        if (isIsbn13(compact)) {
+            return compact;
+        }
+        if (isIsbn10(compact)) {
+            return toIsbn13(compact);
+        }
+        return trimmed;
+    }
+
+    static boolean isIsbn13(String isbn) {
+        if (isbn.length() != 13 || !isbn.chars().allMatch(Character::isDigit)) {
+            return false;
+        }
+        return checkDigit13(isbn) == isbn.charAt(12) - '0';
+    }
+
+    static boolean isIsbn10(String isbn) {
+        if (isbn.length() != 10) {
+            return false;
+        }
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            char c = isbn.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c == 'X' && i == 9) {
+                digit = 10;
+            } else {
+                return false;
+            }
+            sum += (10 - i) * digit;
+        }
+        return sum % 11 == 0;
+    }
+
+    private static String toIsbn13(String isbn10) {
+        String body = "978" + isbn10.substring(0, 9);
+        return body + checkDigit13(body);
+    }
+
+    // Check digit of the first 12 digits: weights alternate 1 and 3.
+    private static int checkDigit13(String digits) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.bokalebsson.libraryapplication.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Circulation of one book on one day by the borrowers of one registration cohort. Maintained by
+ * LoanService on checkout and return and rebuilt by LoanStatisticsBackfill, so reports sum a few
+ * rows per day instead of reading book_loan.
+ * <p>
+ * Checkouts are counted on the loan date, returns (with their duration and whether they were late)
+ * on the return date.
+ */
+@Entity
+@IdClass(LoanDailyStats.Key.class)
+// The migration orders the primary key (stat_date, book_id, cohort): reports of a period read one key range.
+@Table(name = "loan_daily_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoanDailyStats {
+
+    @Id
+    private LocalDate statDate;
+
+    @Id
+    private int bookId;
+
+    // Year and month the borrowers registered, as yyyyMM (see cohortOf).
+    @Id
+    private int cohort;
+
+    @Column(nullable = false)
+    private long checkouts;
+
+    @Column(nullable = false)
+    private long returned;
+
+    // Sum of the durations of the loans returned that day, in days.
+    @Column(nullable = false)
+    private long loanDays;
+
+    // Loans returned that day after their due date.
+    @Column(nullable = false)
+    private long returnedOverdue;
+
+    public static int cohortOf(LocalDate regDate) {
+        return regDate.getYear() * 100 + regDate.getMonthValue();
+    }
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate statDate;
+        private int bookId;
+        private int cohort;
+    }
+}
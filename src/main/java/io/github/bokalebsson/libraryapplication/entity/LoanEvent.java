@@ -0,0 +1,59 @@
+package io.github.bokalebsson.libraryapplication.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+
+/**
+ * A checkout or return waiting in the outbox for other systems (discovery, notifications).
+ * Written by LoanService in the transaction that changes the loan, so an event exists exactly
+ * when the change was committed, and deleted by LoanEventDispatcher once a sink accepted it.
+ */
+@Entity
+@Table(name = "loan_event_outbox")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoanEvent {
+
+    public enum Type { CHECKED_OUT, RETURNED }
+
+    // The key consumers deduplicate on: delivery is at least once. Not an order, see LoanEventSink.
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_event_seq")
+    @SequenceGenerator(name = "loan_event_seq", sequenceName = "loan_event_seq", allocationSize = 50)
+    private int id;
+
+    // A plain varchar rather than a MySQL enum column, so new types need no migration.
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    @Column(nullable = false)
+    private int loanId;
+
+    @Column(nullable = false)
+    private int bookId;
+
+    @Column(nullable = false)
+    private int borrowerId;
+
+    @Column(nullable = false)
+    private Instant occurredAt;
+
+    public static LoanEvent of(Type type, int loanId, int bookId, int borrowerId, Instant occurredAt) {
+        return LoanEvent.builder()
+                .type(type)
+                .loanId(loanId)
+                .bookId(bookId)
+                .borrowerId(borrowerId)
+                .occurredAt(occurredAt)
+                .build();
+    }
+}
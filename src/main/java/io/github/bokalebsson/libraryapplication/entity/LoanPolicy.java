@@ -0,0 +1,21 @@
+package io.github.bokalebsson.libraryapplication.entity;
+
+/**
+ * Borrowing limits checked by {@link AppUser#addBookLoan(BookLoan, LoanPolicy)}.
+ *
+ * @param maxActiveLoans the most loans a borrower may have that are not yet returned
+ */
+public record LoanPolicy(int maxActiveLoans) {
+
+    public static final LoanPolicy UNLIMITED = new LoanPolicy(Integer.MAX_VALUE);
+
+    public LoanPolicy {
+        if (maxActiveLoans < 1) {
+            throw new IllegalArgumentException("maxActiveLoans must be at least 1: " + maxActiveLoans);
+        }
+    }
+
+    public boolean allowsAnotherLoan(int activeLoans) {
+        return activeLoans < maxActiveLoans;
+    }
+}
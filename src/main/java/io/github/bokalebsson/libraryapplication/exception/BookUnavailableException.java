@@ -0,0 +1,11 @@
+package io.github.bokalebsson.libraryapplication.exception;
+
+/**
+ * The book to check out is on loan.
+ */
+public class BookUnavailableException extends IllegalStateException {
+
+    public BookUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package io.github.bokalebsson.libraryapplication.exception;
+
+/**
+ * The borrower already has as many active loans as the loan policy allows.
+ */
+public class LoanLimitReachedException extends IllegalStateException {
+
+    public LoanLimitReachedException(String message) {
+        super(message);
+    }
+}
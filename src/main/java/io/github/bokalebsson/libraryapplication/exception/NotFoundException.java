@@ -0,0 +1,11 @@
+package io.github.bokalebsson.libraryapplication.exception;
+
+/**
+ * A user, book or other record a request refers to does not exist.
+ */
+public class NotFoundException extends IllegalArgumentException {
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.bokalebsson.libraryapplication.outbox;
+
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends each event to a file as one line of JSON ({@code library.outbox.sink=file}), for local
+ * runs and for consumers that tail a file. A batch is written with one call and forced to disk
+ * before it counts as delivered.
+ */
+public class FileLoanEventSink implements LoanEventSink {
+
+    private final Path file;
+
+    public FileLoanEventSink(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void publish(List<LoanEvent> events) {
+        StringBuilder lines = new StringBuilder();
+        for (LoanEvent event : events) {
+            lines.append("{\"id\":").append(event.getId())
+                    .append(",\"type\":\"").append(event.getType()).append('"')
+                    .append(",\"loanId\":").append(event.getLoanId())
+                    .append(",\"bookId\":").append(event.getBookId())
+                    .append(",\"borrowerId\":").append(event.getBorrowerId())
+                    .append(",\"occurredAt\":\"").append(event.getOccurredAt()).append("\"}\n");
+        }
+        try {
+            Files.writeString(file, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write loan events to " + file, e);
+        }
+    }
+}
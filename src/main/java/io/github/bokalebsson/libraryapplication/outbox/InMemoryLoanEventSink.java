@@ -0,0 +1,53 @@
+package io.github.bokalebsson.libraryapplication.outbox;
+
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps delivered events in memory, for tests and local runs ({@code library.outbox.sink=memory}).
+ * It can be switched {@linkplain #setAvailable(boolean) unavailable} to act like a consumer that is down.
+ */
+public class InMemoryLoanEventSink implements LoanEventSink {
+
+    private final List<LoanEvent> events = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean available = true;
+
+    @Override
+    public void publish(List<LoanEvent> batch) {
+        if (!available) {
+            throw new IllegalStateException("Loan event sink is unavailable");
+        }
+        lock.lock();
+        try {
+            events.addAll(batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<LoanEvent> events() {
+        lock.lock();
+        try {
+            return List.copyOf(events);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            events.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+}
@@ -0,0 +1,198 @@
+package io.github.bokalebsson.libraryapplication.outbox;
+
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+import io.github.bokalebsson.libraryapplication.repository.LoanEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Drains the loan event outbox into the {@link LoanEventSink}, off the circulation hot path.
+ * <p>
+ * Each batch is one transaction: the oldest {@code library.outbox.batch-size} events are locked,
+ * handed to the sink and deleted. If the sink throws, the transaction rolls back and the events
+ * stay where they are; so a slow or failing consumer holds events in the outbox rather than in
+ * memory. A run stops after {@code library.outbox.max-batches-per-run} batches, and after a failure
+ * the next runs are skipped for a back-off that doubles up to {@code library.outbox.max-backoff}.
+ * <p>
+ * Metrics: {@code library.outbox.published} (events delivered), {@code library.outbox.failures}
+ * (batches the sink rejected), {@code library.outbox.batch} (time per delivered batch), and, as of
+ * the last poll, {@code library.outbox.lag} (seconds since the oldest undelivered event happened)
+ * and {@code library.outbox.pending} (undelivered events). Counting the outbox scans it, so the
+ * pending count is refreshed at most once per {@code library.outbox.pending-count-interval}, or
+ * right away when the outbox is empty.
+ * <p>
+ * Dispatching is off unless {@code library.outbox.dispatch-enabled} is set; events then stay in
+ * the outbox. Switching it on without a {@link LoanEventSink} bean fails at startup.
+ */
+@Slf4j
+@Component
+public class LoanEventDispatcher {
+
+    private final LoanEventRepository loanEventRepository;
+    private final LoanEventSink sink;
+    private final boolean dispatchEnabled;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter published;
+    private final Counter failures;
+    private final Timer batchTimer;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    // Runs can be triggered by the scheduler and by hand; they must not overlap.
+    private final ReentrantLock running = new ReentrantLock();
+    private int consecutiveFailures;
+    private Instant retryAt = Instant.MIN;
+    private Instant pendingCountedAt = Instant.MIN;
+
+    @Value("${library.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${library.outbox.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    @Value("${library.outbox.initial-backoff:1s}")
+    private Duration initialBackoff;
+
+    @Value("${library.outbox.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    @Value("${library.outbox.pending-count-interval:1m}")
+    private Duration pendingCountInterval;
+
+    public LoanEventDispatcher(LoanEventRepository loanEventRepository,
+                               ObjectProvider<LoanEventSink> sink,
+                               @Value("${library.outbox.dispatch-enabled:false}") boolean dispatchEnabled,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry) {
+        this.loanEventRepository = loanEventRepository;
+        this.sink = sink.getIfAvailable();
+        this.dispatchEnabled = dispatchEnabled;
+        if (dispatchEnabled && this.sink == null) {
+            throw new IllegalStateException("library.outbox.dispatch-enabled is set but there is no LoanEventSink: "
+                    + "set library.outbox.sink or declare a LoanEventSink bean");
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.published = meterRegistry.counter("library.outbox.published");
+        this.failures = meterRegistry.counter("library.outbox.failures");
+        this.batchTimer = meterRegistry.timer("library.outbox.batch");
+        Gauge.builder("library.outbox.pending", pending, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("library.outbox.lag", lagSeconds, AtomicLong::get).baseUnit("seconds").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${library.outbox.poll-interval:1s}")
+    public void poll() {
+        if (dispatchEnabled) {
+            dispatch();
+            return;
+        }
+        // Nothing is delivered, but the gauges still show the outbox filling up.
+        if (running.tryLock()) {
+            try {
+                updateBacklog();
+            } finally {
+                running.unlock();
+            }
+        }
+    }
+
+    /**
+     * Delivers what is in the outbox, up to {@code max-batches-per-run} batches, unless a previous
+     * failure is still backing off or another run is in progress.
+     *
+     * @return the number of events delivered
+     */
+    public int dispatch() {
+        if (sink == null) {
+            throw new IllegalStateException("No LoanEventSink to deliver loan events to");
+        }
+        if (!running.tryLock()) {
+            return 0;
+        }
+        try {
+            if (Instant.now().isBefore(retryAt)) {
+                return 0;
+            }
+            return dispatchBatches();
+        } finally {
+            updateBacklog();
+            running.unlock();
+        }
+    }
+
+    private int dispatchBatches() {
+        int delivered = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer count;
+            try {
+                count = transactionTemplate.execute(status -> dispatchBatch());
+            } catch (RuntimeException e) {
+                backOff(e);
+                return delivered;
+            }
+            consecutiveFailures = 0;
+            delivered += count == null ? 0 : count;
+            if (count == null || count < batchSize) {
+                break;
+            }
+        }
+        return delivered;
+    }
+
+    private int dispatchBatch() {
+        List<LoanEvent> events = loanEventRepository.findNextBatch(Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        sink.publish(events);
+        loanEventRepository.deleteByIdIn(events.stream().map(LoanEvent::getId).toList());
+        batchTimer.record(Duration.ofNanos(System.nanoTime() - start));
+        published.increment(events.size());
+        return events.size();
+    }
+
+    private void backOff(RuntimeException e) {
+        failures.increment();
+        consecutiveFailures++;
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(consecutiveFailures - 1, 20));
+        if (backoff.compareTo(maxBackoff) > 0) {
+            backoff = maxBackoff;
+        }
+        retryAt = Instant.now().plus(backoff);
+        log.warn("Delivering loan events failed ({} in a row), retrying in {}", consecutiveFailures, backoff, e);
+    }
+
+    private void updateBacklog() {
+        try {
+            Instant now = Instant.now();
+            Instant oldest = loanEventRepository.findOldestOccurredAt();
+            lagSeconds.set(oldest == null ? 0 : Math.max(0, Duration.between(oldest, now).toSeconds()));
+            if (oldest == null) {
+                pending.set(0);
+                pendingCountedAt = now;
+            } else if (!now.isBefore(pendingCountedAt.plus(pendingCountInterval))) {
+                pending.set(loanEventRepository.count());
+                pendingCountedAt = now;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Could not measure the loan event backlog", e);
+        }
+    }
+}
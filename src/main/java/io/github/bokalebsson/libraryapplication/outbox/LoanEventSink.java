@@ -0,0 +1,25 @@
+package io.github.bokalebsson.libraryapplication.outbox;
+
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+
+import java.util.List;
+
+/**
+ * Where {@link LoanEventDispatcher} delivers the outbox: the discovery system, the notification
+ * service, or a local stand-in.
+ * <p>
+ * A batch counts as delivered when {@link #publish} returns; if it throws, the whole batch stays in
+ * the outbox and is offered again after a back-off. Delivery is at least once: a batch can arrive
+ * again after the sink accepted it (e.g. the application stopped before the outbox rows were
+ * deleted), so consumers skip event ids they have already seen.
+ * <p>
+ * There is no overall order. Ids are handed out in blocks per instance, and instances deliver
+ * batches side by side, so a later event can arrive first. Within one loan the order is fixed by
+ * the type: there is one {@code CHECKED_OUT} and at most one {@code RETURNED}, which always comes
+ * after it. A consumer that needs that order keys on {@code loanId} and holds a return back until
+ * the checkout has arrived.
+ */
+public interface LoanEventSink {
+
+    void publish(List<LoanEvent> events);
+}
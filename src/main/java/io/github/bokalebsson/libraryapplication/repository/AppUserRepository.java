@@ -1,20 +1,68 @@
 package io.github.bokalebsson.libraryapplication.repository;
 
+import io.github.bokalebsson.libraryapplication.dto.AppUserView;
+import io.github.bokalebsson.libraryapplication.dto.LoanCounts;
 import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface AppUserRepository extends JpaRepository<AppUser, Integer> {
-
-    Optional<AppUser> findByUsername(String username);
+public interface AppUserRepository extends JpaRepository<AppUser, Integer>, AppUserRepositoryCustom {
 
     List<AppUser> findByRegDateBetween(LocalDate startDate, LocalDate endDate);
 
+    Slice<AppUser> findByRegDateBetween(LocalDate startDate, LocalDate endDate, Pageable pageable);
+
+    Window<AppUser> findByRegDateBetweenOrderByIdAsc(LocalDate startDate, LocalDate endDate, ScrollPosition position, Limit limit);
+
+    // API projections (see AppUserView): only the selected columns are read, no AppUser is loaded.
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.AppUserView(u.id, u.username, u.regDate, d.name, d.email) " +
+            "FROM AppUser u JOIN u.userDetails d WHERE u.id = :id")
+    Optional<AppUserView> findViewById(int id);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.AppUserView(u.id, u.username, u.regDate, d.name, d.email) " +
+            "FROM AppUser u JOIN u.userDetails d")
+    Page<AppUserView> findAllViews(Pageable pageable);
+
+    @EntityGraph("AppUser.userDetails")
     Optional<AppUser> findByUserDetails_Id(Integer detailsId);
 
-    Optional<AppUser> findByUserDetails_EmailIgnoreCase(String email);
+    // Compares the indexed, normalized email (see Details) rather than LOWER(email).
+    default Optional<AppUser> findByUserDetails_EmailIgnoreCase(String email) {
+        return findByUserDetails_EmailKey(Details.normalizeEmail(email));
+    }
+
+    // Written out rather than derived: with the entity graph, the derived query joined details twice
+    // and filtered the outer join, so the plan started with a scan of app_users.
+    @Query("SELECT u FROM AppUser u JOIN FETCH u.userDetails d WHERE d.emailKey = :emailKey")
+    Optional<AppUser> findByUserDetails_EmailKey(String emailKey);
+
+    // Loan counters (see LoanService and LoanCounterReconciler).
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.LoanCounts(u.id, u.activeLoanCount, u.overdueLoanCount) " +
+            "FROM AppUser u WHERE u.id > :afterId ORDER BY u.id")
+    List<LoanCounts> findLoanCountsAfter(int afterId, Limit limit);
+
+    // Users whose counters are about to change (borrowers of returned loans, users the reconciler
+    // corrects), locked in id order. The counters are then changed on the entities, so only these
+    // users' cache entries are updated; a bulk UPDATE would evict the whole app-user region.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM AppUser u WHERE u.id IN :ids ORDER BY u.id")
+    List<AppUser> findAllByIdInForUpdate(Collection<Integer> ids);
 
 }
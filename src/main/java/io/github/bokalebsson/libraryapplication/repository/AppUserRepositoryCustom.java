@@ -0,0 +1,17 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Read-only, like the finders of the repository, so the lookup goes to the read replica when one is
+// configured. The implementation joins that transaction.
+@Transactional(readOnly = true)
+public interface AppUserRepositoryCustom {
+
+    // Natural-id lookup with the user's details fetched. The username is normalized like stored
+    // usernames and resolved through the natural-id cache, so a cached user is found without any SQL.
+    Optional<AppUser> findByUsername(String username);
+
+}
@@ -0,0 +1,35 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.graph.RootGraph;
+
+import java.util.Optional;
+
+class AppUserRepositoryCustomImpl implements AppUserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public Optional<AppUser> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        Session session = entityManager.unwrap(Session.class);
+        Optional<AppUser> user = session.bySimpleNaturalId(AppUser.class)
+                .withFetchGraph((RootGraph<AppUser>) session.getEntityGraph("AppUser.userDetails"))
+                .loadOptional(AppUser.normalizeUsername(username));
+
+        // The fetch graph only applies when the user is selected; a user taken from the
+        // second-level cache comes with a details proxy, initialized here (from the cache as well).
+        user.ifPresent(found -> Hibernate.initialize(found.getUserDetails()));
+        return user;
+    }
+}
@@ -1,14 +1,23 @@
 package io.github.bokalebsson.libraryapplication.repository;
 
+import io.github.bokalebsson.libraryapplication.dto.AuthorView;
 import io.github.bokalebsson.libraryapplication.entity.Author;
-import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface AuthorRepository extends JpaRepository<Author, Integer> {
+@Transactional(readOnly = true)
+public interface AuthorRepository extends JpaRepository<Author, Integer>, AuthorRepositoryCustom {
 
     List<Author> findByFirstName(String firstName);
 
@@ -18,14 +27,48 @@ public interface AuthorRepository extends JpaRepository<Author, Integer> {
 
     List<Author> findByBooks_Id(int bookId);
 
-    @Modifying(clearAutomatically = true)
-    @Transactional
-    @Query("UPDATE Author SET firstName = :firstName, lastName = :lastName WHERE id = :id")
-    void updateNameById(int id, String firstName, String lastName);
+    // Paged (Slice) and keyset (Window, seek by id) variants of the finders above.
 
-    @Modifying
-    @Transactional
-    @Query("DELETE FROM Author WHERE id = :id")
-    void deleteById(int id);
+    Slice<Author> findByFirstName(String firstName, Pageable pageable);
+
+    Window<Author> findByFirstNameOrderByIdAsc(String firstName, ScrollPosition position, Limit limit);
+
+    Slice<Author> findByLastName(String lastName, Pageable pageable);
+
+    Window<Author> findByLastNameOrderByIdAsc(String lastName, ScrollPosition position, Limit limit);
+
+    Slice<Author> findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String firstName, String lastName, Pageable pageable);
+
+    Window<Author> findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCaseOrderByIdAsc(String firstName, String lastName, ScrollPosition position, Limit limit);
+
+    Slice<Author> findByBooks_Id(int bookId, Pageable pageable);
+
+    Window<Author> findByBooks_IdOrderByIdAsc(int bookId, ScrollPosition position, Limit limit);
+
+    // Walks the whole table in id order, e.g. to rebuild the search index.
+    Window<Author> findAllByOrderByIdAsc(ScrollPosition position, Limit limit);
+
+    // API projections (see AuthorView): only the selected columns are read, no Author is loaded.
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.AuthorView(a.id, a.firstName, a.lastName) " +
+            "FROM Author a WHERE a.id = :id")
+    Optional<AuthorView> findViewById(int id);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.AuthorView(a.id, a.firstName, a.lastName) " +
+            "FROM Author a")
+    Page<AuthorView> findAllViews(Pageable pageable);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.AuthorView(a.id, a.firstName, a.lastName) " +
+            "FROM Author a WHERE LOWER(a.firstName) LIKE LOWER(CONCAT('%', :name, '%')) " +
+            "OR LOWER(a.lastName) LIKE LOWER(CONCAT('%', :name, '%'))")
+    Page<AuthorView> findViewsByNameContaining(String name, Pageable pageable);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.AuthorView(a.id, a.firstName, a.lastName) " +
+            "FROM Author a JOIN a.books b WHERE b.id = :bookId")
+    Page<AuthorView> findViewsByBookId(int bookId, Pageable pageable);
+
+    // Expects lower-cased last names.
+    @Query("SELECT a FROM Author a WHERE LOWER(a.lastName) IN :lastNames ORDER BY a.id")
+    List<Author> findByLastNameIgnoreCaseIn(Collection<String> lastNames);
 
 }
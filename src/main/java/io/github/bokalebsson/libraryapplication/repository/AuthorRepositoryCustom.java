@@ -0,0 +1,25 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import java.util.Collection;
+
+public interface AuthorRepositoryCustom {
+
+    // Set-based author maintenance, e.g. cleaning up duplicates after an import. Each one runs a
+    // fixed number of SQL statements however many books are linked; no Author or Book is loaded.
+    // The persistence context is cleared afterwards, and the author and author/book collection
+    // caches and the search index are updated.
+
+    // Renames the author with one UPDATE; nothing happens if there is no such author.
+    void updateNameById(int id, String firstName, String lastName);
+
+    // Deletes the author and its author_book rows.
+    void deleteById(int id);
+
+    // Deletes the authors and their author_book rows. Returns the number of authors deleted.
+    int deleteAuthors(Collection<Integer> ids);
+
+    // Moves the books of the duplicates to the canonical author (books they share are linked once)
+    // and deletes the duplicates. Returns the number of duplicates deleted.
+    int mergeAuthors(Collection<Integer> duplicateIds, int canonicalId);
+
+}
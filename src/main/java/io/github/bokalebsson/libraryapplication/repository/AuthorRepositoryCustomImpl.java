@@ -0,0 +1,166 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.search.CatalogSearchIndex;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.hibernate.Cache;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The statements are native SQL. Each one declares the table it writes as its query space, so
+ * Hibernate evicts the author region after a delete instead of the whole second-level cache, as
+ * it would for a native update without one. The cached {@code Author.books} and
+ * {@code Book.authors} collections are not covered by that and are evicted here; author cleanups
+ * are rare, so both regions are evicted whole.
+ */
+class AuthorRepositoryCustomImpl implements AuthorRepositoryCustom {
+
+    // Ids per statement, to keep IN lists within what MySQL and the driver handle comfortably.
+    private static final int CHUNK_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectProvider<CatalogSearchIndex> searchIndex;
+
+    AuthorRepositoryCustomImpl(ObjectProvider<CatalogSearchIndex> searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    // JPQL: Hibernate evicts the author region itself. The author/book collections don't change.
+    @Override
+    @Transactional
+    public void updateNameById(int id, String firstName, String lastName) {
+        int updated = entityManager.createQuery("UPDATE Author SET firstName = :firstName, lastName = :lastName WHERE id = :id")
+                .setParameter("firstName", firstName)
+                .setParameter("lastName", lastName)
+                .setParameter("id", id)
+                .executeUpdate();
+        entityManager.clear();
+
+        if (updated > 0) {
+            String name = CatalogSearchIndex.fullName(firstName, lastName);
+            afterCommit(index -> index.authorChanged(id, name));
+        }
+    }
+
+    @Override
+    @Transactional
+    public void deleteById(int id) {
+        deleteAuthors(List.of(id));
+    }
+
+    @Override
+    @Transactional
+    public int deleteAuthors(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        entityManager.flush();
+
+        int deleted = 0;
+        for (List<Integer> chunk : chunks(ids)) {
+            deleted += delete(chunk);
+        }
+
+        // Nothing deleted means no author_book row went either; the context stays valid.
+        if (deleted > 0) {
+            afterBulkChange(ids);
+        }
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public int mergeAuthors(Collection<Integer> duplicateIds, int canonicalId) {
+        Set<Integer> duplicates = new LinkedHashSet<>(duplicateIds);
+        duplicates.remove(canonicalId);
+        if (duplicates.isEmpty()) {
+            return 0;
+        }
+        long canonicalCount = entityManager.createQuery("SELECT COUNT(a) FROM Author a WHERE a.id = :id", Long.class)
+                .setParameter("id", canonicalId)
+                .getSingleResult();
+        if (canonicalCount == 0) {
+            throw new IllegalArgumentException("Author not found: " + canonicalId);
+        }
+        entityManager.flush();
+
+        int deleted = 0;
+        for (List<Integer> chunk : chunks(duplicates)) {
+            // Books already linked to the canonical author, or to several duplicates, are linked once.
+            execute("INSERT INTO author_book (author_id, book_id) " +
+                            "SELECT DISTINCT :canonicalId, ab.book_id FROM author_book ab " +
+                            "WHERE ab.author_id IN (:ids) AND NOT EXISTS (" +
+                            "SELECT 1 FROM author_book c WHERE c.author_id = :canonicalId AND c.book_id = ab.book_id)",
+                    Map.of("canonicalId", canonicalId, "ids", chunk), "author_book");
+            deleted += delete(chunk);
+        }
+
+        afterBulkChange(duplicates);
+        return deleted;
+    }
+
+    private int delete(List<Integer> ids) {
+        execute("DELETE FROM author_book WHERE author_id IN (:ids)", Map.of("ids", ids), "author_book");
+        return execute("DELETE FROM author WHERE id IN (:ids)", Map.of("ids", ids), "author");
+    }
+
+    private int execute(String sql, Map<String, Object> parameters, String table) {
+        NativeQuery<?> query = entityManager.createNativeQuery(sql).unwrap(NativeQuery.class);
+        parameters.forEach(query::setParameter);
+        return query.addSynchronizedQuerySpace(table).executeUpdate();
+    }
+
+    private void afterBulkChange(Collection<Integer> removedAuthorIds) {
+        entityManager.clear();
+
+        Cache cache = entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class);
+        cache.evictCollectionData(Author.class.getName() + ".books");
+        cache.evictCollectionData(Book.class.getName() + ".authors");
+
+        removeFromSearchIndexAfterCommit(removedAuthorIds);
+    }
+
+    // Bulk statements bypass CatalogIndexListener, so the removed authors are reported here.
+    private void removeFromSearchIndexAfterCommit(Collection<Integer> ids) {
+        List<Integer> removed = List.copyOf(ids);
+        afterCommit(index -> removed.forEach(index::authorRemoved));
+    }
+
+    private void afterCommit(Consumer<CatalogSearchIndex> change) {
+        CatalogSearchIndex index = searchIndex.getIfAvailable();
+        if (index == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.accept(index);
+            }
+        });
+    }
+
+    private static List<List<Integer>> chunks(Collection<Integer> ids) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        List<Integer> all = List.copyOf(ids);
+        for (int from = 0; from < all.size(); from += CHUNK_SIZE) {
+            chunks.add(all.subList(from, Math.min(from + CHUNK_SIZE, all.size())));
+        }
+        return chunks;
+    }
+}
@@ -1,29 +1,143 @@
 package io.github.bokalebsson.libraryapplication.repository;
 
+import io.github.bokalebsson.libraryapplication.dto.BookLoanView;
+import io.github.bokalebsson.libraryapplication.dto.LoanCounts;
+import io.github.bokalebsson.libraryapplication.dto.OverdueLoanView;
 import io.github.bokalebsson.libraryapplication.entity.BookLoan;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+@Transactional(readOnly = true)
 public interface BookLoanRepository extends JpaRepository<BookLoan, Integer> {
 
+    @EntityGraph("BookLoan.book")
     List<BookLoan> findByBorrowerId(int borrowerId);
 
+    @EntityGraph("BookLoan.borrower")
     List<BookLoan> findByBookId(int bookId);
 
+    @EntityGraph("BookLoan.bookAndBorrower")
     List<BookLoan> findByReturnedFalse();
 
+    @EntityGraph("BookLoan.bookAndBorrower")
     List<BookLoan> findByDueDateBeforeAndReturnedFalse(LocalDate date);
 
+    // Streams overdue loans as lightweight rows for reminder jobs. Must be consumed inside a
+    // transaction and closed afterwards (try-with-resources).
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.OverdueLoanView(l.id, d.email, b.title, l.dueDate) " +
+            "FROM BookLoan l JOIN l.borrower u JOIN u.userDetails d JOIN l.book b " +
+            "WHERE l.returned = false AND l.dueDate < :date ORDER BY l.id")
+    Stream<OverdueLoanView> streamOverdueLoans(LocalDate date);
+
     List<BookLoan> findByLoanDateBetween(LocalDate startDate, LocalDate endDate);
 
-    @Modifying(clearAutomatically = true)
+    // Paged (Slice) and keyset (Window, seek by id) variants of the finders above.
+    // Prefer the keyset variants for deep pages: they never scan past the previous page.
+
+    @EntityGraph("BookLoan.book")
+    Slice<BookLoan> findByBorrowerId(int borrowerId, Pageable pageable);
+
+    @EntityGraph("BookLoan.book")
+    Window<BookLoan> findByBorrowerIdOrderByIdAsc(int borrowerId, ScrollPosition position, Limit limit);
+
+    @EntityGraph("BookLoan.borrower")
+    Slice<BookLoan> findByBookId(int bookId, Pageable pageable);
+
+    @EntityGraph("BookLoan.borrower")
+    Window<BookLoan> findByBookIdOrderByIdAsc(int bookId, ScrollPosition position, Limit limit);
+
+    @EntityGraph("BookLoan.bookAndBorrower")
+    Slice<BookLoan> findByReturnedFalse(Pageable pageable);
+
+    @EntityGraph("BookLoan.bookAndBorrower")
+    Window<BookLoan> findByReturnedFalseOrderByIdAsc(ScrollPosition position, Limit limit);
+
+    @EntityGraph("BookLoan.bookAndBorrower")
+    Slice<BookLoan> findByDueDateBeforeAndReturnedFalse(LocalDate date, Pageable pageable);
+
+    @EntityGraph("BookLoan.bookAndBorrower")
+    Window<BookLoan> findByDueDateBeforeAndReturnedFalseOrderByIdAsc(LocalDate date, ScrollPosition position, Limit limit);
+
+    Slice<BookLoan> findByLoanDateBetween(LocalDate startDate, LocalDate endDate, Pageable pageable);
+
+    Window<BookLoan> findByLoanDateBetweenOrderByIdAsc(LocalDate startDate, LocalDate endDate, ScrollPosition position, Limit limit);
+
+    // Loan history of a borrower, most recent first, read page by page instead of through a
+    // collection on AppUser. Ordered along idx_book_loan_borrower_loan_date; the id breaks ties
+    // between loans of the same day so pages never overlap.
+
+    @EntityGraph("BookLoan.book")
+    Slice<BookLoan> findByBorrowerIdOrderByLoanDateDescIdDesc(int borrowerId, Pageable pageable);
+
+    @EntityGraph("BookLoan.book")
+    Window<BookLoan> findByBorrowerIdOrderByLoanDateDescIdDesc(int borrowerId, ScrollPosition position, Limit limit);
+
+    // API projections (see BookLoanView): only the selected columns are read, no entity is loaded.
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookLoanView(" +
+            "l.id, l.loanDate, l.dueDate, l.returned, b.id, b.title, u.id, u.username) " +
+            "FROM BookLoan l JOIN l.book b JOIN l.borrower u WHERE l.id = :id")
+    Optional<BookLoanView> findViewById(int id);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookLoanView(" +
+            "l.id, l.loanDate, l.dueDate, l.returned, b.id, b.title, u.id, u.username) " +
+            "FROM BookLoan l JOIN l.book b JOIN l.borrower u WHERE u.id = :borrowerId " +
+            "ORDER BY l.loanDate DESC, l.id DESC")
+    Slice<BookLoanView> findHistoryViewsByBorrowerId(int borrowerId, Pageable pageable);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookLoanView(" +
+            "l.id, l.loanDate, l.dueDate, l.returned, b.id, b.title, u.id, u.username) " +
+            "FROM BookLoan l JOIN l.book b JOIN l.borrower u WHERE b.id = :bookId")
+    Page<BookLoanView> findViewsByBookId(int bookId, Pageable pageable);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookLoanView(" +
+            "l.id, l.loanDate, l.dueDate, l.returned, b.id, b.title, u.id, u.username) " +
+            "FROM BookLoan l JOIN l.book b JOIN l.borrower u WHERE l.returned = false")
+    Page<BookLoanView> findOpenViews(Pageable pageable);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookLoanView(" +
+            "l.id, l.loanDate, l.dueDate, l.returned, b.id, b.title, u.id, u.username) " +
+            "FROM BookLoan l JOIN l.book b JOIN l.borrower u WHERE l.returned = false AND l.dueDate < :date")
+    Page<BookLoanView> findOverdueViews(LocalDate date, Pageable pageable);
+
+    // Open and overdue loans per borrower in an id range, for LoanCounterReconciler. Borrowers
+    // without open loans are left out.
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.LoanCounts(l.borrower.id, COUNT(l), " +
+            "SUM(CASE WHEN l.dueDate < :today THEN 1 ELSE 0 END)) " +
+            "FROM BookLoan l WHERE l.returned = false AND l.borrower.id BETWEEN :fromBorrowerId AND :toBorrowerId " +
+            "GROUP BY l.borrower.id")
+    List<LoanCounts> countOpenLoansByBorrowerIdBetween(int fromBorrowerId, int toBorrowerId, LocalDate today);
+
+    // The open loans among loanIds, locked until the transaction ends: a concurrent return of the
+    // same loans waits and then finds them returned, so no loan is taken off a counter twice.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM BookLoan l WHERE l.id IN :loanIds AND l.returned = false ORDER BY l.id")
+    List<BookLoan> findOpenByIdInForUpdate(Collection<Integer> loanIds);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
     @Transactional
-    @Query("UPDATE BookLoan SET returned = true WHERE id = :loanId")
-    void markAsReturned(int loanId);
+    @Query("UPDATE BookLoan SET returned = true, returnDate = :returnDate WHERE id IN :loanIds AND returned = false")
+    int markAsReturnedByIdIn(Collection<Integer> loanIds, LocalDate returnDate);
 
 }
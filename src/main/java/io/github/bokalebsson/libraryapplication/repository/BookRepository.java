@@ -1,17 +1,72 @@
 package io.github.bokalebsson.libraryapplication.repository;
 
+import io.github.bokalebsson.libraryapplication.dto.BookView;
 import io.github.bokalebsson.libraryapplication.entity.Book;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
-public interface BookRepository extends JpaRepository<Book, Integer> {
-
-    Optional<Book> findByIsbnIgnoreCase(String isbn);
+// Finders run in read-only transactions, which go to the read replica when one is configured.
+@Transactional(readOnly = true)
+public interface BookRepository extends JpaRepository<Book, Integer>, BookRepositoryCustom {
 
     List<Book> findByTitleContainingIgnoreCase(String title);
 
     List<Book> findByMaxLoanDaysLessThan(int maxLoanDays);
 
+    // Paged (Slice) and keyset (Window, seek by id) variants of the finders above.
+
+    Slice<Book> findByTitleContainingIgnoreCase(String title, Pageable pageable);
+
+    Window<Book> findByTitleContainingIgnoreCaseOrderByIdAsc(String title, ScrollPosition position, Limit limit);
+
+    Slice<Book> findByMaxLoanDaysLessThan(int maxLoanDays, Pageable pageable);
+
+    Window<Book> findByMaxLoanDaysLessThanOrderByIdAsc(int maxLoanDays, ScrollPosition position, Limit limit);
+
+    // Walks the whole table in id order, e.g. to rebuild the search index.
+    Window<Book> findAllByOrderByIdAsc(ScrollPosition position, Limit limit);
+
+    // API projections (see BookView): only the selected columns are read, no Book is loaded.
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookView(b.id, b.isbn, b.title, b.maxLoanDays, b.available) " +
+            "FROM Book b WHERE b.id = :id")
+    Optional<BookView> findViewById(int id);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookView(b.id, b.isbn, b.title, b.maxLoanDays, b.available) " +
+            "FROM Book b")
+    Page<BookView> findAllViews(Pageable pageable);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookView(b.id, b.isbn, b.title, b.maxLoanDays, b.available) " +
+            "FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))")
+    Page<BookView> findViewsByTitleContaining(String title, Pageable pageable);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookView(b.id, b.isbn, b.title, b.maxLoanDays, b.available) " +
+            "FROM Author a JOIN a.books b WHERE a.id = :authorId")
+    Page<BookView> findViewsByAuthorId(int authorId, Pageable pageable);
+
+    // Batched existence check for ISBNs in canonical form (see Isbn); returns the ones that already exist.
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    Set<String> findExistingIsbns(Collection<String> isbns);
+
+    // The books of loans being returned, locked in id order, to be made available on the entities:
+    // the version goes up, so concurrent checkouts holding a stale copy fail their optimistic lock
+    // check, and only these books' cache entries change.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id IN :ids ORDER BY b.id")
+    List<Book> findAllByIdInForUpdate(Collection<Integer> ids);
+
 }
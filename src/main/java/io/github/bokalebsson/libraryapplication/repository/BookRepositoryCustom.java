@@ -0,0 +1,17 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+// Read-only, like the finders of the repository, so the lookup goes to the read replica when one is
+// configured. The implementation joins that transaction.
+@Transactional(readOnly = true)
+public interface BookRepositoryCustom {
+
+    // Natural-id lookup: the ISBN is normalized like stored ISBNs (see Isbn) and resolved through
+    // the natural-id cache, so a cached book is found without any SQL.
+    Optional<Book> findByIsbnIgnoreCase(String isbn);
+
+}
@@ -0,0 +1,27 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.Isbn;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public Optional<Book> findByIsbnIgnoreCase(String isbn) {
+        if (isbn == null) {
+            return Optional.empty();
+        }
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Book.class)
+                .loadOptional(Isbn.normalize(isbn));
+    }
+}
@@ -1,6 +1,11 @@
 package io.github.bokalebsson.libraryapplication.repository;
 
 import io.github.bokalebsson.libraryapplication.entity.Details;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -8,10 +13,37 @@ import java.util.Optional;
 
 public interface DetailsRepository extends JpaRepository<Details, Integer> {
 
-    Optional<Details> findByEmail(String email);
+    // Email and name lookups ignore case and surrounding whitespace. They compare the normalized
+    // lookup columns (see Details), which are indexed, instead of LOWER(column), which is not.
+
+    default Optional<Details> findByEmail(String email) {
+        return findByEmailKey(Details.normalizeEmail(email));
+    }
 
     List<Details> findByNameContaining(String partOfName);
 
-    List<Details> findByNameIgnoreCase(String name);
+    default List<Details> findByNameIgnoreCase(String name) {
+        return findByNameKey(Details.normalizeName(name));
+    }
+
+    Slice<Details> findByNameContaining(String partOfName, Pageable pageable);
+
+    Window<Details> findByNameContainingOrderByIdAsc(String partOfName, ScrollPosition position, Limit limit);
+
+    default Slice<Details> findByNameIgnoreCase(String name, Pageable pageable) {
+        return findByNameKey(Details.normalizeName(name), pageable);
+    }
+
+    default Window<Details> findByNameIgnoreCaseOrderByIdAsc(String name, ScrollPosition position, Limit limit) {
+        return findByNameKeyOrderByIdAsc(Details.normalizeName(name), position, limit);
+    }
+
+    Optional<Details> findByEmailKey(String emailKey);
+
+    List<Details> findByNameKey(String nameKey);
+
+    Slice<Details> findByNameKey(String nameKey, Pageable pageable);
+
+    Window<Details> findByNameKeyOrderByIdAsc(String nameKey, ScrollPosition position, Limit limit);
 
 }
@@ -0,0 +1,88 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.dto.BookCirculation;
+import io.github.bokalebsson.libraryapplication.dto.CirculationSummary;
+import io.github.bokalebsson.libraryapplication.dto.CohortCirculation;
+import io.github.bokalebsson.libraryapplication.entity.LoanDailyStats;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The circulation rollups. Reports read at most one row per day, book and cohort of the period,
+ * however many loans that is.
+ * <p>
+ * The increments are upserts (Hibernate turns ON CONFLICT into the database's own form, on MySQL
+ * {@code insert ... on duplicate key update}), so two transactions that start the same row add to
+ * it instead of one of them failing on the insert.
+ */
+@Transactional(readOnly = true)
+public interface LoanDailyStatsRepository extends JpaRepository<LoanDailyStats, LoanDailyStats.Key> {
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.BookCirculation(b.id, b.title, SUM(s.checkouts)) " +
+            "FROM LoanDailyStats s JOIN Book b ON b.id = s.bookId WHERE s.statDate BETWEEN :from AND :to " +
+            "GROUP BY b.id, b.title HAVING SUM(s.checkouts) > 0 ORDER BY SUM(s.checkouts) DESC, b.id")
+    List<BookCirculation> findMostBorrowedBooks(LocalDate from, LocalDate to, Limit limit);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.CirculationSummary(" +
+            "SUM(s.checkouts), SUM(s.returned), SUM(s.loanDays), SUM(s.returnedOverdue)) " +
+            "FROM LoanDailyStats s WHERE s.statDate BETWEEN :from AND :to")
+    CirculationSummary summarize(LocalDate from, LocalDate to);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.dto.CohortCirculation(" +
+            "s.cohort, SUM(s.checkouts), SUM(s.returned), SUM(s.loanDays), SUM(s.returnedOverdue)) " +
+            "FROM LoanDailyStats s WHERE s.statDate BETWEEN :from AND :to GROUP BY s.cohort ORDER BY s.cohort")
+    List<CohortCirculation> summarizeByCohort(LocalDate from, LocalDate to);
+
+    @Modifying
+    @Transactional
+    @Query("INSERT INTO LoanDailyStats s (statDate, bookId, cohort, checkouts, returned, loanDays, returnedOverdue) " +
+            "VALUES (:loanDate, :bookId, :cohort, 1, 0, 0, 0) " +
+            "ON CONFLICT (statDate, bookId, cohort) DO UPDATE SET checkouts = s.checkouts + 1")
+    void addCheckout(LocalDate loanDate, int bookId, int cohort);
+
+    @Modifying
+    @Transactional
+    @Query("INSERT INTO LoanDailyStats s (statDate, bookId, cohort, checkouts, returned, loanDays, returnedOverdue) " +
+            "VALUES (:returnDate, :bookId, :cohort, 0, :returned, :loanDays, :returnedOverdue) " +
+            "ON CONFLICT (statDate, bookId, cohort) DO UPDATE SET returned = s.returned + excluded.returned, " +
+            "loanDays = s.loanDays + excluded.loanDays, returnedOverdue = s.returnedOverdue + excluded.returnedOverdue")
+    void addReturns(LocalDate returnDate, int bookId, int cohort, long returned, long loanDays, long returnedOverdue);
+
+    // The returns the given loans add, per book and cohort. Loans already returned are left out,
+    // so this has to run before they are marked as returned.
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.entity.LoanDailyStats(" +
+            "CAST(:returnDate AS LocalDate), l.book.id, YEAR(u.regDate) * 100 + MONTH(u.regDate), 0L, COUNT(l), " +
+            "SUM((:returnDate - l.loanDate) BY DAY), SUM(CASE WHEN l.dueDate < :returnDate THEN 1L ELSE 0L END)) " +
+            "FROM BookLoan l JOIN l.borrower u WHERE l.id IN :loanIds AND l.returned = false " +
+            "GROUP BY l.book.id, YEAR(u.regDate), MONTH(u.regDate)")
+    List<LoanDailyStats> sumReturnsOfOpenLoans(Collection<Integer> loanIds, LocalDate returnDate);
+
+    // For LoanStatisticsBackfill: the rollup rows of a range of days, counted from book_loan.
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.entity.LoanDailyStats(" +
+            "l.loanDate, l.book.id, YEAR(u.regDate) * 100 + MONTH(u.regDate), COUNT(l), 0L, 0L, 0L) " +
+            "FROM BookLoan l JOIN l.borrower u WHERE l.loanDate BETWEEN :from AND :to " +
+            "GROUP BY l.loanDate, l.book.id, YEAR(u.regDate), MONTH(u.regDate)")
+    List<LoanDailyStats> countCheckoutsBetween(LocalDate from, LocalDate to);
+
+    @Query("SELECT new io.github.bokalebsson.libraryapplication.entity.LoanDailyStats(" +
+            "l.returnDate, l.book.id, YEAR(u.regDate) * 100 + MONTH(u.regDate), 0L, COUNT(l), " +
+            "SUM((l.returnDate - l.loanDate) BY DAY), SUM(CASE WHEN l.dueDate < l.returnDate THEN 1L ELSE 0L END)) " +
+            "FROM BookLoan l JOIN l.borrower u WHERE l.returnDate BETWEEN :from AND :to " +
+            "GROUP BY l.returnDate, l.book.id, YEAR(u.regDate), MONTH(u.regDate)")
+    List<LoanDailyStats> countReturnsBetween(LocalDate from, LocalDate to);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query("DELETE FROM LoanDailyStats s WHERE s.statDate BETWEEN :from AND :to")
+    int deleteByStatDateBetween(LocalDate from, LocalDate to);
+
+    @Query("SELECT MIN(l.loanDate) FROM BookLoan l")
+    LocalDate findFirstLoanDate();
+}
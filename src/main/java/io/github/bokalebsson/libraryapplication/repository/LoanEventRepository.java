@@ -0,0 +1,36 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface LoanEventRepository extends JpaRepository<LoanEvent, Integer> {
+
+    // The oldest events, locked until the transaction ends. Rows another dispatcher has locked are
+    // skipped (lock timeout -2 is SKIP LOCKED where the database has it), so instances share the work.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM LoanEvent e ORDER BY e.id")
+    List<LoanEvent> findNextBatch(Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LoanEvent e WHERE e.id IN :ids")
+    int deleteByIdIn(Collection<Integer> ids);
+
+    // The event with the lowest id: ids follow insertion, so this is a primary key lookup where
+    // MIN(occurredAt) would scan the outbox.
+    @Query("SELECT e.occurredAt FROM LoanEvent e WHERE e.id = (SELECT MIN(o.id) FROM LoanEvent o)")
+    Instant findOldestOccurredAt();
+}
@@ -0,0 +1,68 @@
+package io.github.bokalebsson.libraryapplication.search;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * Keeps {@link CatalogSearchIndex} in sync with {@link Book} and {@link Author} writes. Changes
+ * are applied after the transaction commits, so rolled back writes never show up in searches.
+ * Does nothing in contexts without the index (e.g. repository slice tests).
+ */
+public class CatalogIndexListener {
+
+    private final ObjectProvider<CatalogSearchIndex> index;
+
+    public CatalogIndexListener(ObjectProvider<CatalogSearchIndex> index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    @PostUpdate
+    void onSave(Object entity) {
+        if (entity instanceof Book book) {
+            int id = book.getId();
+            String title = book.getTitle();
+            afterCommit(index -> index.bookChanged(id, title));
+        } else if (entity instanceof Author author) {
+            int id = author.getId();
+            String name = CatalogSearchIndex.fullName(author);
+            afterCommit(index -> index.authorChanged(id, name));
+        }
+    }
+
+    @PostRemove
+    void onRemove(Object entity) {
+        if (entity instanceof Book book) {
+            int id = book.getId();
+            afterCommit(index -> index.bookRemoved(id));
+        } else if (entity instanceof Author author) {
+            int id = author.getId();
+            afterCommit(index -> index.authorRemoved(id));
+        }
+    }
+
+    private void afterCommit(Consumer<CatalogSearchIndex> change) {
+        CatalogSearchIndex searchIndex = index.getIfAvailable();
+        if (searchIndex == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.accept(searchIndex);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.accept(searchIndex);
+            }
+        });
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.bokalebsson.libraryapplication.search;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.support.WindowIterator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Search indexes over book titles and author names.
+ * <p>
+ * Committed writes reach the index through {@link CatalogIndexListener}. Bulk JPQL or JDBC
+ * statements bypass entity listeners, so code using them has to report its changes itself.
+ * <p>
+ * {@link #rebuild()} reads both tables into new indexes and swaps them in. While it runs the
+ * index is not {@linkplain #isReady() ready}; changes committed in the meantime are applied to
+ * the old index and replayed onto the new one before the swap.
+ */
+@Slf4j
+@Component
+public class CatalogSearchIndex {
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${library.search.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    @Value("${library.search.rebuild-window-size:1000}")
+    private int rebuildWindowSize;
+
+    private volatile TextIndex books = new TextIndex();
+    private volatile TextIndex authors = new TextIndex();
+    private volatile boolean ready;
+
+    // Non-null while a rebuild runs. A null value means the row was deleted.
+    private Map<Integer, String> pendingBooks;
+    private Map<Integer, String> pendingAuthors;
+
+    // Guards the swap and the pending changes.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public CatalogSearchIndex(BookRepository bookRepository,
+                              AuthorRepository authorRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public TextIndex books() {
+        return books;
+    }
+
+    public TextIndex authors() {
+        return authors;
+    }
+
+    public void bookChanged(int id, String title) {
+        lock.lock();
+        try {
+            books.put(id, title);
+            if (pendingBooks != null) {
+                pendingBooks.put(id, title);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void bookRemoved(int id) {
+        lock.lock();
+        try {
+            books.remove(id);
+            if (pendingBooks != null) {
+                pendingBooks.put(id, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void authorChanged(int id, String name) {
+        lock.lock();
+        try {
+            authors.put(id, name);
+            if (pendingAuthors != null) {
+                pendingAuthors.put(id, name);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void authorRemoved(int id) {
+        lock.lock();
+        try {
+            authors.remove(id);
+            if (pendingAuthors != null) {
+                pendingAuthors.put(id, null);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (rebuildOnStartup) {
+            rebuildAsync();
+        }
+    }
+
+    public CompletableFuture<Void> rebuildAsync() {
+        return CompletableFuture.runAsync(this::rebuild, task -> {
+            Thread thread = new Thread(task, "catalog-index-rebuild");
+            thread.setDaemon(true);
+            thread.start();
+        }).whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                log.error("Rebuilding the catalogue search index failed, searches keep using the database", failure);
+            }
+        });
+    }
+
+    public void rebuild() {
+        lock.lock();
+        try {
+            if (pendingBooks != null) {
+                throw new IllegalStateException("The catalogue search index is already being rebuilt");
+            }
+            ready = false;
+            pendingBooks = new LinkedHashMap<>();
+            pendingAuthors = new LinkedHashMap<>();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            long start = System.nanoTime();
+            TextIndex newBooks = load(bookRepository::findAllByOrderByIdAsc, Book::getId, Book::getTitle);
+            TextIndex newAuthors = load(authorRepository::findAllByOrderByIdAsc, Author::getId, CatalogSearchIndex::fullName);
+
+            lock.lock();
+            try {
+                replay(pendingBooks, newBooks);
+                replay(pendingAuthors, newAuthors);
+                books = newBooks;
+                authors = newAuthors;
+                ready = true;
+            } finally {
+                lock.unlock();
+            }
+            log.info("Indexed {} books and {} authors in {} ms",
+                    newBooks.size(), newAuthors.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            lock.lock();
+            try {
+                pendingBooks = null;
+                pendingAuthors = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    static String fullName(Author author) {
+        return fullName(author.getFirstName(), author.getLastName());
+    }
+
+    public static String fullName(String firstName, String lastName) {
+        return firstName + " " + lastName;
+    }
+
+    private <T> TextIndex load(WindowQuery<T> query, ToIntFunction<T> id, Function<T, String> text) {
+        TextIndex.Builder builder = TextIndex.builder();
+        WindowIterator.of(position -> readOnlyTransaction.execute(status -> query.find(position, Limit.of(rebuildWindowSize))))
+                .startingAt(ScrollPosition.keyset())
+                .forEachRemaining(row -> builder.add(id.applyAsInt(row), text.apply(row)));
+        return builder.build();
+    }
+
+    private static void replay(Map<Integer, String> pending, TextIndex index) {
+        pending.forEach((id, text) -> {
+            if (text == null) {
+                index.remove(id);
+            } else {
+                index.put(id, text);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface WindowQuery<T> {
+        Window<T> find(ScrollPosition position, Limit limit);
+    }
+}
@@ -0,0 +1,551 @@
+package io.github.bokalebsson.libraryapplication.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index from words to ids.
+ * <p>
+ * Text is split into lower-case words without accents. Each word maps to a sorted array of
+ * the ids containing it, kept in a skip list so a prefix is a range scan. Substring lookups go
+ * through a trigram index over the vocabulary (not over the documents), which stays small
+ * because titles and names reuse the same words.
+ * <p>
+ * Every query word has to match for an id to be returned. Hits are ranked by how well the words
+ * match (whole word, then prefix, then infix), then by fewer words, then by id. Ranking only
+ * walks sorted id arrays, so even a query matching a large part of the index allocates no
+ * object per hit.
+ * <p>
+ * Reads are lock-free; writes are serialized by a {@link ReentrantLock} and replace posting arrays
+ * instead of changing them, so a reader never sees a half-updated list. Ids must not be negative.
+ * Use {@link #builder()} for bulk loads.
+ */
+public class TextIndex {
+
+    private static final int WHOLE_WORD = 3;
+    private static final int PREFIX = 2;
+    private static final int INFIX = 1;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final String[] NO_WORDS = new String[0];
+    private static final int[] NO_IDS = new int[0];
+
+    // Query words matching more words than this are merged into one list before probing.
+    private static final int MAX_PROBED_LISTS = 8;
+
+    private final ConcurrentSkipListMap<String, int[]> postings;
+    private final ConcurrentHashMap<String, Set<String>> wordsByTrigram;
+    private final ConcurrentHashMap<Integer, String[]> wordsById;
+
+    // Number of words per id (capped), 0 for ids not in the index. Used to rank shorter texts first.
+    private volatile byte[] wordCounts;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public TextIndex() {
+        this(new ConcurrentSkipListMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new byte[0]);
+    }
+
+    private TextIndex(ConcurrentSkipListMap<String, int[]> postings,
+                      ConcurrentHashMap<String, Set<String>> wordsByTrigram,
+                      ConcurrentHashMap<Integer, String[]> wordsById,
+                      byte[] wordCounts) {
+        this.postings = postings;
+        this.wordsByTrigram = wordsByTrigram;
+        this.wordsById = wordsById;
+        this.wordCounts = wordCounts;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return wordsById.size();
+    }
+
+    public void put(int id, String text) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id: " + id);
+        }
+        String[] words = words(text);
+        writeLock.lock();
+        try {
+            String[] previous = wordsById.put(id, words);
+            if (previous != null) {
+                if (Arrays.equals(previous, words)) {
+                    return;
+                }
+                for (String word : distinct(previous)) {
+                    removePosting(word, id);
+                }
+            }
+            for (String word : distinct(words)) {
+                addPosting(word, id);
+            }
+            setWordCount(id, words.length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void remove(int id) {
+        writeLock.lock();
+        try {
+            String[] previous = wordsById.remove(id);
+            if (previous != null) {
+                for (String word : distinct(previous)) {
+                    removePosting(word, id);
+                }
+                setWordCount(id, 0);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Ids where every word of the query starts a word of the text, e.g. "har pot" finds
+     * "Harry Potter". Meant for search-as-you-type.
+     */
+    public List<Integer> searchPrefix(String query, int limit) {
+        return search(query, limit, true);
+    }
+
+    /**
+     * Ids where every word of the query occurs inside a word of the text, e.g. "arry otter"
+     * finds "Harry Potter".
+     */
+    public List<Integer> searchSubstring(String query, int limit) {
+        return search(query, limit, false);
+    }
+
+    private List<Integer> search(String query, int limit, boolean prefixOnly) {
+        String[] terms = distinct(words(query));
+        if (terms.length == 0 || limit <= 0) {
+            return List.of();
+        }
+
+        Term[] matches = new Term[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            matches[i] = match(terms[i], prefixOnly);
+            if (matches[i].total() == 0) {
+                return List.of();
+            }
+        }
+        return rank(matches, limit);
+    }
+
+    private Term match(String term, boolean prefixOnly) {
+        List<int[]> startingWith = postingsOf(wordsStartingWith(term));
+        List<int[]> all = prefixOnly ? startingWith : postingsOf(wordsContaining(term));
+        int total = all.stream().mapToInt(ids -> ids.length).sum();
+        return new Term(all, startingWith, postings.getOrDefault(term, NO_IDS), total);
+    }
+
+    private List<int[]> postingsOf(Collection<String> words) {
+        List<int[]> lists = new ArrayList<>(words.size());
+        for (String word : words) {
+            int[] ids = postings.get(word);
+            if (ids != null) {
+                lists.add(ids);
+            }
+        }
+        return lists;
+    }
+
+    private Collection<String> wordsStartingWith(String prefix) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, true).keySet();
+    }
+
+    private Collection<String> wordsContaining(String term) {
+        if (term.length() < 3) {
+            return postings.keySet().stream().filter(word -> word.contains(term)).toList();
+        }
+
+        Set<String> smallest = null;
+        for (int i = 0; i + 3 <= term.length(); i++) {
+            Set<String> words = wordsByTrigram.get(term.substring(i, i + 3));
+            if (words == null) {
+                return List.of();
+            }
+            if (smallest == null || words.size() < smallest.size()) {
+                smallest = words;
+            }
+        }
+        return smallest.stream().filter(word -> word.contains(term)).toList();
+    }
+
+    private static List<int[]> union(List<int[]> lists) {
+        if (lists.size() <= MAX_PROBED_LISTS) {
+            return lists;
+        }
+        int total = 0;
+        int maxId = 0;
+        for (int[] ids : lists) {
+            total += ids.length;
+            maxId = Math.max(maxId, ids[ids.length - 1]);
+        }
+        return List.of( total > maxId / 64 ? unionWithBitSet(lists, total, maxId) : unionWithSort(lists, total));
+    }
+
+    private static int[] unionWithBitSet(List<int[]> lists, int total, int maxId) {
+        long[] bits = new long[(maxId >>> 6) + 1];
+        for (int[] ids : lists) {
+            for (int id : ids) {
+                bits[id >>> 6] |= 1L << id;
+            }
+        }
+
+        int[] union = new int[total];
+        int size = 0;
+        for (int i = 0; i < bits.length; i++) {
+            for (long word = bits[i]; word != 0; word &= word - 1) {
+                union[size++] = (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return Arrays.copyOf(union, size);
+    }
+
+    private static int[] unionWithSort(List<int[]> lists, int total) {
+        int[] all = new int[total];
+        int offset = 0;
+        for (int[] ids : lists) {
+            System.arraycopy(ids, 0, all, offset, ids.length);
+            offset += ids.length;
+        }
+        Arrays.sort(all);
+
+        int size = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) {
+                all[size++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, size);
+    }
+
+    /**
+     * Keeps the best {@code limit} hits in a max-heap of packed sort keys, where a lower key is a
+     * better hit. The lists of the rarest query word drive the loop, whole-word matches first,
+     * then prefixes, then infixes, so the list tells how well that word matches. The other words
+     * are probed by binary search, but only for ids whose best possible key could still make it
+     * into the heap; for broad queries that rejects most ids on their word count and id alone.
+     */
+    private List<Integer> rank(Term[] terms, int limit) {
+        Term[] probed = terms.clone();
+        Arrays.sort(probed, Comparator.comparingInt(Term::total));
+        Term driver = probed[0];
+
+        int bestScore = 0;
+        for (int t = 0; t < probed.length; t++) {
+            bestScore += maxQuality(probed[t]);
+            probed[t] = new Term(union(probed[t].all()), union(probed[t].startingWith()), probed[t].wholeWord(), probed[t].total());
+        }
+        int othersBestScore = bestScore - maxQuality(driver);
+
+        byte[] counts = wordCounts;
+        long[] heap = new long[Math.min(limit, driver.total())];
+        int size = 0;
+        for (DriverList list : driverLists(driver)) {
+            long bestPossibleDeficit = (long) (bestScore - list.quality() - othersBestScore) << 40;
+            for (int id : list.ids()) {
+                int words = id < counts.length ? counts[id] : 0;
+                if (words == 0 || size == heap.length && (bestPossibleDeficit | (long) words << 32 | id) >= heap[0]) {
+                    continue;
+                }
+
+                int score = list.quality();
+                for (int t = 1; t < probed.length && score > 0; t++) {
+                    int quality = quality(probed[t], id);
+                    score = quality == 0 ? 0 : score + quality;
+                }
+                if (score == 0 || containsId(heap, size, id)) {
+                    continue;
+                }
+
+                long key = (long) (bestScore - score) << 40 | (long) words << 32 | id;
+                if (size < heap.length) {
+                    heap[size] = key;
+                    siftUp(heap, size++);
+                } else if (key < heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, size);
+                }
+            }
+        }
+
+        long[] best = Arrays.copyOf(heap, size);
+        Arrays.sort(best);
+        List<Integer> ids = new ArrayList<>(size);
+        for (long key : best) {
+            ids.add((int) key);
+        }
+        return ids;
+    }
+
+    private static List<DriverList> driverLists(Term term) {
+        List<DriverList> lists = new ArrayList<>();
+        Set<int[]> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (term.wholeWord().length > 0) {
+            lists.add(new DriverList(term.wholeWord(), WHOLE_WORD));
+            seen.add(term.wholeWord());
+        }
+        for (int[] ids : term.startingWith()) {
+            if (seen.add(ids)) {
+                lists.add(new DriverList(ids, PREFIX));
+            }
+        }
+        for (int[] ids : term.all()) {
+            if (seen.add(ids)) {
+                lists.add(new DriverList(ids, INFIX));
+            }
+        }
+        return lists;
+    }
+
+    private static int maxQuality(Term term) {
+        if (term.wholeWord().length > 0) {
+            return WHOLE_WORD;
+        }
+        return term.startingWith().isEmpty() ? INFIX : PREFIX;
+    }
+
+    private static int quality(Term term, int id) {
+        if (Arrays.binarySearch(term.wholeWord(), id) >= 0) {
+            return WHOLE_WORD;
+        }
+        if (anyContains(term.startingWith(), id)) {
+            return PREFIX;
+        }
+        return anyContains(term.all(), id) ? INFIX : 0;
+    }
+
+    private static boolean anyContains(List<int[]> lists, int id) {
+        for (int[] ids : lists) {
+            if (Arrays.binarySearch(ids, id) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // An id found through several lists of the driving word is only kept the first, best, time.
+    private static boolean containsId(long[] heap, int size, int id) {
+        for (int i = 0; i < size; i++) {
+            if ((int) heap[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent] >= heap[index]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && heap[left] > heap[largest]) {
+                largest = left;
+            }
+            if (right < size && heap[right] > heap[largest]) {
+                largest = right;
+            }
+            if (largest == index) {
+                return;
+            }
+            swap(heap, index, largest);
+            index = largest;
+        }
+    }
+
+    private static void swap(long[] heap, int i, int j) {
+        long tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private void addPosting(String word, int id) {
+        int[] ids = postings.get(word);
+        if (ids == null) {
+            postings.put(word, new int[]{id});
+            for (String trigram : trigrams(word)) {
+                wordsByTrigram.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(word);
+            }
+            return;
+        }
+
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return;
+        }
+        int insertAt = -position - 1;
+        int[] grown = new int[ids.length + 1];
+        System.arraycopy(ids, 0, grown, 0, insertAt);
+        grown[insertAt] = id;
+        System.arraycopy(ids, insertAt, grown, insertAt + 1, ids.length - insertAt);
+        postings.put(word, grown);
+    }
+
+    private void removePosting(String word, int id) {
+        int[] ids = postings.get(word);
+        int position = ids == null ? -1 : Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return;
+        }
+        if (ids.length == 1) {
+            postings.remove(word);
+            for (String trigram : trigrams(word)) {
+                Set<String> words = wordsByTrigram.get(trigram);
+                if (words != null) {
+                    words.remove(word);
+                    if (words.isEmpty()) {
+                        wordsByTrigram.remove(trigram);
+                    }
+                }
+            }
+            return;
+        }
+
+        int[] shrunk = new int[ids.length - 1];
+        System.arraycopy(ids, 0, shrunk, 0, position);
+        System.arraycopy(ids, position + 1, shrunk, position, ids.length - position - 1);
+        postings.put(word, shrunk);
+    }
+
+    private void setWordCount(int id, int words) {
+        byte[] counts = wordCounts;
+        if (id < counts.length) {
+            counts[id] = wordCount(words);
+        } else if (words > 0) {
+            counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length + counts.length / 2));
+            counts[id] = wordCount(words);
+            wordCounts = counts;
+        }
+    }
+
+    private static byte wordCount(int words) {
+        return (byte) Math.min(words, Byte.MAX_VALUE);
+    }
+
+    static String[] words(String text) {
+        if (text == null || text.isBlank()) {
+            return NO_WORDS;
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.splitAsStream(folded.toLowerCase(Locale.ROOT))
+                .filter(word -> !word.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static String[] distinct(String[] words) {
+        return words.length < 2 ? words : Arrays.stream(words).distinct().toArray(String[]::new);
+    }
+
+    private static List<String> trigrams(String word) {
+        List<String> trigrams = new ArrayList<>();
+        for (int i = 0; i + 3 <= word.length(); i++) {
+            trigrams.add(word.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    // Posting lists of the words matching one query word at all and as a prefix, the ids where it is
+    // a whole word, and the number of ids in all lists together.
+    private record Term(List<int[]> all, List<int[]> startingWith, int[] wholeWord, int total) {
+    }
+
+    private record DriverList(int[] ids, int quality) {
+    }
+
+    /**
+     * Collects documents without maintaining the index on every add; {@link #build()} sorts
+     * each posting list once. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private final Map<Integer, String[]> wordsById = new HashMap<>();
+        private int maxId;
+
+        private Builder() {
+        }
+
+        public Builder add(int id, String text) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative id: " + id);
+            }
+            wordsById.put(id, words(text));
+            maxId = Math.max(maxId, id);
+            return this;
+        }
+
+        public TextIndex build() {
+            Map<String, IdList> idsByWord = new HashMap<>();
+            byte[] wordCounts = new byte[wordsById.isEmpty() ? 0 : maxId + 1];
+            for (Map.Entry<Integer, String[]> document : wordsById.entrySet()) {
+                wordCounts[document.getKey()] = wordCount(document.getValue().length);
+                for (String word : distinct(document.getValue())) {
+                    idsByWord.computeIfAbsent(word, key -> new IdList()).add(document.getKey());
+                }
+            }
+
+            TreeMap<String, int[]> sorted = new TreeMap<>();
+            ConcurrentHashMap<String, Set<String>> wordsByTrigram = new ConcurrentHashMap<>();
+            for (Map.Entry<String, IdList> entry : idsByWord.entrySet()) {
+                sorted.put(entry.getKey(), entry.getValue().toSortedArray());
+                for (String trigram : trigrams(entry.getKey())) {
+                    wordsByTrigram.computeIfAbsent(trigram, key -> ConcurrentHashMap.newKeySet()).add(entry.getKey());
+                }
+            }
+            return new TextIndex(new ConcurrentSkipListMap<>(sorted), wordsByTrigram,
+                    new ConcurrentHashMap<>(wordsById), wordCounts);
+        }
+    }
+
+    private static final class IdList {
+
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int[] toSortedArray() {
+            int[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import java.time.Duration;
+
+public record CatalogImportReport(long rowsRead,
+                                  long booksImported,
+                                  long authorsCreated,
+                                  long duplicates,
+                                  long rejected,
+                                  Duration elapsed) {
+
+    public double rowsPerSecond() {
+        long millis = Math.max(elapsed.toMillis(), 1);
+        return rowsRead * 1000.0 / millis;
+    }
+}
@@ -0,0 +1,266 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Streams a catalogue file of books and authors into the database.
+ * <p>
+ * Rows are parsed one at a time and written in chunks of {@code library.import.chunk-size},
+ * each chunk in its own transaction. The persistence context is cleared after every chunk,
+ * so memory use depends on the chunk size and not on the size of the file.
+ */
+@Slf4j
+@Service
+public class CatalogImportService {
+
+    private static final String INSERT_AUTHOR_BOOK = "INSERT INTO author_book (author_id, book_id) VALUES (?, ?)";
+
+    private static final String AUTHOR_BOOKS = Author.class.getName() + ".books";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${library.import.chunk-size:500}")
+    private int chunkSize;
+
+    public CatalogImportService(BookRepository bookRepository,
+                                AuthorRepository authorRepository,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.authorRepository = authorRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Imports a {@code .jsonl}/{@code .ndjson} file as JSON lines and anything else as CSV.
+     */
+    public CatalogImportReport importFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? importJsonLines(reader) : importCsv(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read catalogue file: " + file, e);
+        }
+    }
+
+    /**
+     * Imports lines in the format {@code isbn,title,maxLoanDays,authors}. A first line starting
+     * with "isbn" is treated as a header.
+     */
+    public CatalogImportReport importCsv(Reader reader) {
+        return importLines(reader, CatalogRecord::fromCsvLine, true);
+    }
+
+    /**
+     * Imports lines like {@code {"isbn": "...", "title": "...", "maxLoanDays": 14, "authors": ["First Last"]}}.
+     */
+    public CatalogImportReport importJsonLines(Reader reader) {
+        return importLines(reader, CatalogImportService::parseJsonLine, false);
+    }
+
+    private CatalogImportReport importLines(Reader reader, Function<String, CatalogRecord> parser, boolean csvHeader) {
+        long start = System.nanoTime();
+        ImportCounters counters = new ImportCounters();
+        List<CatalogRecord> chunk = new ArrayList<>(chunkSize);
+
+        try {
+            BufferedReader lines = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+            String line;
+            long lineNumber = 0;
+
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (csvHeader && lineNumber == 1 && line.strip().toLowerCase(Locale.ROOT).startsWith("isbn"))) {
+                    continue;
+                }
+
+                counters.rowsRead++;
+                try {
+                    chunk.add(parser.apply(line));
+                } catch (IllegalArgumentException e) {
+                    counters.rejected++;
+                    log.warn("Rejected catalogue line {}: {}", lineNumber, e.getMessage());
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, counters);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read catalogue", e);
+        }
+
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, counters);
+        }
+
+        CatalogImportReport report = new CatalogImportReport(counters.rowsRead, counters.booksImported,
+                counters.authorsCreated, counters.duplicates, counters.rejected,
+                Duration.ofNanos(System.nanoTime() - start));
+
+        log.info("Catalogue import finished: {} rows read, {} books imported, {} authors created, {} duplicates, {} rejected ({} rows/s)",
+                report.rowsRead(), report.booksImported(), report.authorsCreated(), report.duplicates(),
+                report.rejected(), Math.round(report.rowsPerSecond()));
+
+        return report;
+    }
+
+    private void writeChunk(List<CatalogRecord> chunk, ImportCounters counters) {
+        Set<Integer> linkedAuthorIds = new HashSet<>();
+        transactionTemplate.executeWithoutResult(status -> {
+
+            // Deduplicate books by ISBN, first within the chunk and then against the database in one query.
+            Map<String, CatalogRecord> recordsByIsbn = new LinkedHashMap<>();
+            for (CatalogRecord record : chunk) {
+                if (recordsByIsbn.putIfAbsent(record.isbnKey(), record) != null) {
+                    counters.duplicates++;
+                }
+            }
+            Set<String> existingIsbns = bookRepository.findExistingIsbns(recordsByIsbn.keySet());
+            counters.duplicates += existingIsbns.size();
+            recordsByIsbn.keySet().removeAll(existingIsbns);
+
+            if (recordsByIsbn.isEmpty()) {
+                return;
+            }
+
+            Map<String, Author> authorsByName = resolveAuthors(recordsByIsbn.values(), counters);
+
+            List<Book> books = new ArrayList<>(recordsByIsbn.size());
+            for (CatalogRecord record : recordsByIsbn.values()) {
+                books.add(Book.builder()
+                        .isbn(record.isbn())
+                        .title(record.title())
+                        .maxLoanDays(record.maxLoanDays())
+                        .build());
+            }
+            bookRepository.saveAll(books);
+            entityManager.flush();
+
+            // Write the author_book links directly instead of through Author.books, which
+            // would initialize the whole collection of every existing author in the chunk.
+            List<Object[]> links = new ArrayList<>();
+            int index = 0;
+            for (CatalogRecord record : recordsByIsbn.values()) {
+                Book book = books.get(index++);
+                Set<Integer> authorIds = new LinkedHashSet<>();
+                for (CatalogRecord.AuthorName name : record.authors()) {
+                    authorIds.add(authorsByName.get(name.key()).getId());
+                }
+                for (Integer authorId : authorIds) {
+                    links.add(new Object[]{authorId, book.getId()});
+                }
+                linkedAuthorIds.addAll(authorIds);
+            }
+            if (!links.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_AUTHOR_BOOK, links);
+            }
+
+            entityManager.clear();
+            counters.booksImported += books.size();
+        });
+
+        // The links bypassed Hibernate, so cached Author.books collections of these authors are stale.
+        Cache cache = entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class);
+        for (Integer authorId : linkedAuthorIds) {
+            cache.evictCollectionData(AUTHOR_BOOKS, authorId);
+        }
+    }
+
+    private Map<String, Author> resolveAuthors(Collection<CatalogRecord> records, ImportCounters counters) {
+        Set<String> lastNames = new HashSet<>();
+        for (CatalogRecord record : records) {
+            for (CatalogRecord.AuthorName name : record.authors()) {
+                lastNames.add(name.lastName().toLowerCase(Locale.ROOT));
+            }
+        }
+
+        Map<String, Author> authorsByName = new HashMap<>();
+        if (lastNames.isEmpty()) {
+            return authorsByName;
+        }
+
+        for (Author author : authorRepository.findByLastNameIgnoreCaseIn(lastNames)) {
+            authorsByName.putIfAbsent(new CatalogRecord.AuthorName(author.getFirstName(), author.getLastName()).key(), author);
+        }
+
+        List<Author> newAuthors = new ArrayList<>();
+        for (CatalogRecord record : records) {
+            for (CatalogRecord.AuthorName name : record.authors()) {
+                authorsByName.computeIfAbsent(name.key(), key -> {
+                    Author author = Author.builder().firstName(name.firstName()).lastName(name.lastName()).build();
+                    newAuthors.add(author);
+                    return author;
+                });
+            }
+        }
+
+        authorRepository.saveAll(newAuthors);
+        counters.authorsCreated += newAuthors.size();
+        return authorsByName;
+    }
+
+    private static CatalogRecord parseJsonLine(String line) {
+        JsonNode node;
+        try {
+            node = OBJECT_MAPPER.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+
+        List<CatalogRecord.AuthorName> authors = new ArrayList<>();
+        for (JsonNode author : node.path("authors")) {
+            authors.add(CatalogRecord.AuthorName.parse(author.asText()));
+        }
+
+        return new CatalogRecord(
+                node.path("isbn").asText(null),
+                node.path("title").asText(null),
+                CatalogRecord.parseMaxLoanDays(node.path("maxLoanDays").asText()),
+                authors);
+    }
+
+    private static class ImportCounters {
+        private long rowsRead;
+        private long booksImported;
+        private long authorsCreated;
+        private long duplicates;
+        private long rejected;
+    }
+}
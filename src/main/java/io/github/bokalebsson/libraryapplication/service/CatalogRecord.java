@@ -0,0 +1,110 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.Isbn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One book row from a catalogue file, with its authors.
+ */
+public record CatalogRecord(String isbn, String title, int maxLoanDays, List<AuthorName> authors) {
+
+    public CatalogRecord {
+        if (isbn == null || isbn.isBlank()) {
+            throw new IllegalArgumentException("ISBN is missing");
+        }
+        if (title == null || title.isBlank()) {
+            throw new IllegalArgumentException("Title is missing for ISBN: " + isbn);
+        }
+        if (maxLoanDays <= 0) {
+            throw new IllegalArgumentException("maxLoanDays must be positive for ISBN: " + isbn);
+        }
+        isbn = isbn.strip();
+        title = title.strip();
+        authors = authors == null ? List.of() : List.copyOf(authors);
+    }
+
+    // The ISBN as Book stores it.
+    public String isbnKey() {
+        return Isbn.normalize(isbn);
+    }
+
+    /**
+     * Parses a line in the format {@code isbn,title,maxLoanDays,authors} where authors is a
+     * semicolon separated list of "First Last" names. Fields may be wrapped in double quotes.
+     */
+    public static CatalogRecord fromCsvLine(String line) {
+        List<String> fields = splitCsvLine(line);
+        if (fields.size() < 3 || fields.size() > 4) {
+            throw new IllegalArgumentException("Expected 3 or 4 columns but got " + fields.size());
+        }
+
+        List<AuthorName> authors = new ArrayList<>();
+        if (fields.size() == 4 && !fields.get(3).isBlank()) {
+            for (String name : fields.get(3).split(";")) {
+                authors.add(AuthorName.parse(name));
+            }
+        }
+
+        return new CatalogRecord(fields.get(0), fields.get(1), parseMaxLoanDays(fields.get(2)), authors);
+    }
+
+    static int parseMaxLoanDays(String value) {
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("maxLoanDays is not a number: " + value);
+        }
+    }
+
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public record AuthorName(String firstName, String lastName) {
+
+        public static AuthorName parse(String fullName) {
+            String name = fullName.strip();
+            int split = name.lastIndexOf(' ');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Author name must be \"First Last\": " + fullName);
+            }
+            return new AuthorName(name.substring(0, split).strip(), name.substring(split + 1));
+        }
+
+        public String key() {
+            return (firstName + '\u0000' + lastName).toLowerCase(Locale.ROOT);
+        }
+    }
+}
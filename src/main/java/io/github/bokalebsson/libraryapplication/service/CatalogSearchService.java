@@ -0,0 +1,80 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.search.CatalogSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Catalogue search box. Served from {@link CatalogSearchIndex}, ranked best match first.
+ * While the index is being (re)built the LIKE finders of the repositories answer instead:
+ * they match the query as one substring, in id order.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogSearchService {
+
+    private final CatalogSearchIndex index;
+    private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
+
+    /**
+     * Books whose title contains every word of the query, as a word or part of one.
+     */
+    @Transactional(readOnly = true)
+    public List<Book> searchBooks(String query, int limit) {
+        if (!index.isReady()) {
+            return bookRepository.findByTitleContainingIgnoreCase(query.trim(), firstPage(limit)).getContent();
+        }
+        return inRankOrder(index.books().searchSubstring(query, limit), bookRepository::findAllById, Book::getId);
+    }
+
+    /**
+     * Books with a title word starting with every word of the query, for search-as-you-type.
+     */
+    @Transactional(readOnly = true)
+    public List<Book> suggestBooks(String prefix, int limit) {
+        if (!index.isReady()) {
+            return bookRepository.findByTitleContainingIgnoreCase(prefix.trim(), firstPage(limit)).getContent();
+        }
+        return inRankOrder(index.books().searchPrefix(prefix, limit), bookRepository::findAllById, Book::getId);
+    }
+
+    /**
+     * Authors whose name contains every word of the query, as a word or part of one.
+     */
+    @Transactional(readOnly = true)
+    public List<Author> searchAuthors(String query, int limit) {
+        if (!index.isReady()) {
+            String name = query.trim();
+            return authorRepository.findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(name, name, firstPage(limit))
+                    .getContent();
+        }
+        return inRankOrder(index.authors().searchSubstring(query, limit), authorRepository::findAllById, Author::getId);
+    }
+
+    private static Pageable firstPage(int limit) {
+        return PageRequest.of(0, limit, Sort.by("id"));
+    }
+
+    private static <T> List<T> inRankOrder(List<Integer> rankedIds, Function<List<Integer>, List<T>> load, ToIntFunction<T> id) {
+        if (rankedIds.isEmpty()) {
+            return List.of();
+        }
+        return load.apply(rankedIds).stream()
+                .sorted(Comparator.comparingInt(row -> rankedIds.indexOf(id.applyAsInt(row))))
+                .toList();
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.dto.LoanCounts;
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Checks the loan counters on AppUser against book_loan and fixes the ones that differ.
+ * <p>
+ * Users are walked in id order, one batch per transaction: the stored counters of a batch are
+ * read first, then the open loans of that id range are counted in one grouped query. The users
+ * whose counters differ are locked and corrected on the entities, so only their second-level
+ * cache entries change. A counter is only overwritten if it still holds the value that was read,
+ * so a checkout or return that commits in between is never undone; that user is left for the
+ * next run.
+ * <p>
+ * The overdue counts are expected to change on every run, because loans fall due without any
+ * write. Wrong active counts are logged as warnings.
+ */
+@Slf4j
+@Service
+public class LoanCounterReconciler {
+
+    private final AppUserRepository appUserRepository;
+    private final BookLoanRepository bookLoanRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${library.loan.counter-reconcile-batch-size:1000}")
+    private int batchSize;
+
+    public LoanCounterReconciler(AppUserRepository appUserRepository,
+                                 BookLoanRepository bookLoanRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.appUserRepository = appUserRepository;
+        this.bookLoanRepository = bookLoanRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${library.loan.counter-reconcile-cron:0 30 2 * * *}")
+    public void reconcileNightly() {
+        LoanCounterReport report = reconcile(LocalDate.now());
+        log.info("Loan counters reconciled: {}", report);
+    }
+
+    public LoanCounterReport reconcile(LocalDate today) {
+        LoanCounterReport report = new LoanCounterReport(0, 0, 0, 0);
+        int afterId = 0;
+        while (true) {
+            int lastId = afterId;
+            Batch batch = transactionTemplate.execute(status -> reconcileBatch(lastId, today));
+            if (batch == null) {
+                return report;
+            }
+            report = report.plus(batch.report());
+            afterId = batch.lastId();
+        }
+    }
+
+    // Null once there are no users after afterId.
+    private Batch reconcileBatch(int afterId, LocalDate today) {
+        List<LoanCounts> stored = appUserRepository.findLoanCountsAfter(afterId, Limit.of(batchSize));
+        if (stored.isEmpty()) {
+            return null;
+        }
+
+        int firstId = stored.get(0).borrowerId();
+        int lastId = stored.get(stored.size() - 1).borrowerId();
+        Map<Integer, LoanCounts> counted = bookLoanRepository.countOpenLoansByBorrowerIdBetween(firstId, lastId, today)
+                .stream()
+                .collect(Collectors.toMap(LoanCounts::borrowerId, Function.identity()));
+
+        List<LoanCounts> differing = stored.stream()
+                .filter(user -> !user.equals(actualOf(user, counted)))
+                .toList();
+        if (differing.isEmpty()) {
+            return new Batch(new LoanCounterReport(stored.size(), 0, 0, 0), lastId);
+        }
+        Map<Integer, AppUser> locked = appUserRepository.findAllByIdInForUpdate(differing.stream()
+                        .map(LoanCounts::borrowerId).toList()).stream()
+                .collect(Collectors.toMap(AppUser::getId, Function.identity()));
+
+        int activeCorrected = 0;
+        int overdueRefreshed = 0;
+        int skipped = 0;
+        for (LoanCounts user : differing) {
+            LoanCounts actual = actualOf(user, counted);
+            AppUser entity = locked.get(user.borrowerId());
+            if (entity == null || entity.getActiveLoanCount() != user.activeLoans()
+                    || entity.getOverdueLoanCount() != user.overdueLoans()) {
+                skipped++;
+                continue;
+            }
+            entity.setActiveLoanCount((int) actual.activeLoans());
+            entity.setOverdueLoanCount((int) actual.overdueLoans());
+            if (actual.activeLoans() != user.activeLoans()) {
+                activeCorrected++;
+                log.warn("Active loan count of user {} was {}, corrected to {}",
+                        user.borrowerId(), user.activeLoans(), actual.activeLoans());
+            }
+            if (actual.overdueLoans() != user.overdueLoans()) {
+                overdueRefreshed++;
+            }
+        }
+        return new Batch(new LoanCounterReport(stored.size(), activeCorrected, overdueRefreshed, skipped), lastId);
+    }
+
+    private static LoanCounts actualOf(LoanCounts user, Map<Integer, LoanCounts> counted) {
+        return counted.getOrDefault(user.borrowerId(), new LoanCounts(user.borrowerId(), 0, 0));
+    }
+
+    private record Batch(LoanCounterReport report, int lastId) {
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+/**
+ * Outcome of a {@link LoanCounterReconciler} run.
+ *
+ * @param usersChecked      users whose counters were compared with their loans
+ * @param activeCorrected   users whose active-loan count was wrong, which points at a write path
+ *                          that bypassed LoanService
+ * @param overdueRefreshed  users whose overdue count changed, mostly because loans fell due
+ * @param skipped           users whose counters changed during the run; they are checked again next time
+ */
+public record LoanCounterReport(int usersChecked, int activeCorrected, int overdueRefreshed, int skipped) {
+
+    public LoanCounterReport plus(LoanCounterReport other) {
+        return new LoanCounterReport(usersChecked + other.usersChecked,
+                activeCorrected + other.activeCorrected,
+                overdueRefreshed + other.overdueRefreshed,
+                skipped + other.skipped);
+    }
+}
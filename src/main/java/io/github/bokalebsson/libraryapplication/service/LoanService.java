@@ -0,0 +1,172 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.LoanDailyStats;
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+import io.github.bokalebsson.libraryapplication.entity.LoanPolicy;
+import io.github.bokalebsson.libraryapplication.exception.BookUnavailableException;
+import io.github.bokalebsson.libraryapplication.exception.NotFoundException;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanDailyStatsRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Circulation desk operations.
+ * <p>
+ * Checkout relies on the optimistic lock on {@link Book}: if two transactions check out the
+ * same book at the same time, only one of them can flip it to unavailable and the other one
+ * fails on commit. The loser is retried in a new transaction, where it sees the book as
+ * unavailable and fails with the usual {@link BookUnavailableException}. Call these methods
+ * outside of an existing transaction so that a retry really starts a new one.
+ * <p>
+ * Checkout also enforces the borrowing limit against the borrower's active-loan counter, which
+ * is versioned the same way: of two concurrent checkouts by one borrower, the second is retried
+ * and sees the raised count.
+ * <p>
+ * Returns lock the open loans, their borrowers and their books, in that order, and change the
+ * counters and availability on the entities, so the second-level cache only loses (and
+ * refreshes) those users and books. One bulk statement then marks the loans as returned.
+ * <p>
+ * Both add to the daily circulation rollups ({@link LoanDailyStats}) and write a {@link LoanEvent}
+ * to the outbox in the same transaction; other systems are told later, by LoanEventDispatcher.
+ */
+@Slf4j
+@Service
+public class LoanService {
+
+    private final AppUserRepository appUserRepository;
+    private final BookRepository bookRepository;
+    private final BookLoanRepository bookLoanRepository;
+    private final LoanDailyStatsRepository loanDailyStatsRepository;
+    private final LoanEventRepository loanEventRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${library.loan.checkout-max-attempts:3}")
+    private int checkoutMaxAttempts;
+
+    @Value("${library.loan.max-active-loans:5}")
+    private int maxActiveLoans;
+
+    public LoanService(AppUserRepository appUserRepository,
+                       BookRepository bookRepository,
+                       BookLoanRepository bookLoanRepository,
+                       LoanDailyStatsRepository loanDailyStatsRepository,
+                       LoanEventRepository loanEventRepository,
+                       PlatformTransactionManager transactionManager) {
+        this.appUserRepository = appUserRepository;
+        this.bookRepository = bookRepository;
+        this.bookLoanRepository = bookLoanRepository;
+        this.loanDailyStatsRepository = loanDailyStatsRepository;
+        this.loanEventRepository = loanEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public BookLoan checkout(int borrowerId, int bookId) {
+        return checkout(borrowerId, bookId, LocalDate.now());
+    }
+
+    public BookLoan checkout(int borrowerId, int bookId, LocalDate loanDate) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> doCheckout(borrowerId, bookId, loanDate));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= checkoutMaxAttempts) {
+                    throw e;
+                }
+                log.debug("Checkout of book {} lost a concurrent update, retrying (attempt {})", bookId, attempt);
+            }
+        }
+    }
+
+    private BookLoan doCheckout(int borrowerId, int bookId, LocalDate loanDate) {
+        AppUser borrower = appUserRepository.findById(borrowerId)
+                .orElseThrow(() -> new NotFoundException("User not found: " + borrowerId));
+        Book book = bookRepository.findById(bookId)
+                .orElseThrow(() -> new NotFoundException("Book not found: " + bookId));
+
+        BookLoan loan = BookLoan.builder()
+                .book(book)
+                .loanDate(loanDate)
+                .build();
+        borrower.addBookLoan(loan, new LoanPolicy(maxActiveLoans));
+
+        // Flush inside the transaction so a lost race surfaces here as an optimistic lock failure.
+        BookLoan saved = bookLoanRepository.saveAndFlush(loan);
+        loanDailyStatsRepository.addCheckout(loanDate, bookId, LoanDailyStats.cohortOf(borrower.getRegDate()));
+        loanEventRepository.save(LoanEvent.of(LoanEvent.Type.CHECKED_OUT, saved.getId(), bookId, borrowerId, Instant.now()));
+        return saved;
+    }
+
+    /**
+     * Marks the loan as returned and makes its book available again.
+     *
+     * @return true if the loan was open, false if it was already returned or does not exist
+     */
+    public boolean returnLoan(int loanId) {
+        return returnLoans(List.of(loanId)) == 1;
+    }
+
+    /**
+     * Returns a batch of loans, e.g. everything from the drop box: three locking selects, the rollup
+     * query and one rollup upsert per book (and borrower cohort) returned, batched updates of the
+     * users and books, the batched event inserts and the update of the loans. Loans that are
+     * already returned or do not exist are ignored.
+     *
+     * @return the number of loans that were open and are now returned
+     */
+    public int returnLoans(Collection<Integer> loanIds) {
+        if (loanIds.isEmpty()) {
+            return 0;
+        }
+
+        LocalDate today = LocalDate.now();
+        Integer returned = transactionTemplate.execute(status -> {
+            List<BookLoan> loans = bookLoanRepository.findOpenByIdInForUpdate(loanIds);
+            if (loans.isEmpty()) {
+                return 0;
+            }
+            // Book and borrower are still proxies; reading their ids doesn't load them.
+            Map<Integer, AppUser> borrowers = appUserRepository.findAllByIdInForUpdate(loans.stream()
+                            .map(loan -> loan.getBorrower().getId()).collect(Collectors.toSet())).stream()
+                    .collect(Collectors.toMap(AppUser::getId, Function.identity()));
+            Map<Integer, Book> books = bookRepository.findAllByIdInForUpdate(loans.stream()
+                            .map(loan -> loan.getBook().getId()).collect(Collectors.toSet())).stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+            Instant now = Instant.now();
+            loanEventRepository.saveAllAndFlush(loans.stream()
+                    .map(loan -> LoanEvent.of(LoanEvent.Type.RETURNED, loan.getId(), loan.getBook().getId(),
+                            loan.getBorrower().getId(), now))
+                    .toList());
+            for (LoanDailyStats returns : loanDailyStatsRepository.sumReturnsOfOpenLoans(loanIds, today)) {
+                loanDailyStatsRepository.addReturns(today, returns.getBookId(), returns.getCohort(),
+                        returns.getReturned(), returns.getLoanDays(), returns.getReturnedOverdue());
+            }
+
+            for (BookLoan loan : loans) {
+                borrowers.get(loan.getBorrower().getId()).loanReturned(loan, today);
+                books.get(loan.getBook().getId()).setAvailable(true);
+            }
+            return bookLoanRepository.markAsReturnedByIdIn(loanIds, today);
+        });
+        return returned == null ? 0 : returned;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.LoanDailyStats;
+import io.github.bokalebsson.libraryapplication.repository.LoanDailyStatsRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds the daily circulation rollups from book_loan.
+ * <p>
+ * Days are rebuilt {@code library.statistics.backfill-days-per-batch} at a time, one batch per
+ * transaction: the rollup rows of those days are deleted, and the checkouts and returns of those
+ * days are counted again with two grouped queries. A day that is over no longer changes, so its
+ * rebuild is exact even while the library is open.
+ * <p>
+ * Only days before today are rebuilt. Today's rows are still being upserted by checkouts and
+ * returns, and a rebuild inserting them could fail on a row one of those just created, or drop
+ * their counts; the nightly rebuild of the previous day takes care of it once the day is over.
+ */
+@Slf4j
+@Service
+public class LoanStatisticsBackfill {
+
+    private final LoanDailyStatsRepository loanDailyStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${library.statistics.backfill-days-per-batch:31}")
+    private int daysPerBatch;
+
+    public LoanStatisticsBackfill(LoanDailyStatsRepository loanDailyStatsRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.loanDailyStatsRepository = loanDailyStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${library.statistics.rebuild-cron:0 15 3 * * *}")
+    public void rebuildYesterday() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        int rows = backfill(yesterday, yesterday);
+        log.info("Circulation rollups of {} rebuilt: {} rows", yesterday, rows);
+    }
+
+    /**
+     * Rebuilds everything from the first loan up to yesterday, e.g. after the rollup table was added.
+     *
+     * @return the number of rollup rows written
+     */
+    public int backfillAll() {
+        LocalDate firstLoanDate = loanDailyStatsRepository.findFirstLoanDate();
+        return firstLoanDate == null ? 0 : backfill(firstLoanDate, LocalDate.now().minusDays(1));
+    }
+
+    /**
+     * @return the number of rollup rows written for the days from {@code from} to {@code to}, inclusive;
+     *         days from today on are left out
+     */
+    public int backfill(LocalDate from, LocalDate to) {
+        to = min(to, LocalDate.now().minusDays(1));
+        int rows = 0;
+        for (LocalDate batchStart = from; !batchStart.isAfter(to); batchStart = batchStart.plusDays(daysPerBatch)) {
+            LocalDate start = batchStart;
+            LocalDate end = min(batchStart.plusDays(daysPerBatch - 1), to);
+            Integer written = transactionTemplate.execute(status -> rebuild(start, end));
+            rows += written == null ? 0 : written;
+            log.debug("Circulation rollups of {} to {} rebuilt", start, end);
+        }
+        return rows;
+    }
+
+    private int rebuild(LocalDate from, LocalDate to) {
+        loanDailyStatsRepository.deleteByStatDateBetween(from, to);
+
+        Map<LoanDailyStats.Key, LoanDailyStats> rows = new LinkedHashMap<>();
+        for (LoanDailyStats checkouts : loanDailyStatsRepository.countCheckoutsBetween(from, to)) {
+            rows.put(keyOf(checkouts), checkouts);
+        }
+        for (LoanDailyStats returns : loanDailyStatsRepository.countReturnsBetween(from, to)) {
+            rows.merge(keyOf(returns), returns, (checkouts, sameDay) -> {
+                checkouts.setReturned(sameDay.getReturned());
+                checkouts.setLoanDays(sameDay.getLoanDays());
+                checkouts.setReturnedOverdue(sameDay.getReturnedOverdue());
+                return checkouts;
+            });
+        }
+
+        // Assigned keys: persist inserts without looking the row up first, in JDBC batches.
+        rows.values().forEach(entityManager::persist);
+        entityManager.flush();
+        entityManager.clear();
+        return rows.size();
+    }
+
+    private static LoanDailyStats.Key keyOf(LoanDailyStats stats) {
+        return new LoanDailyStats.Key(stats.getStatDate(), stats.getBookId(), stats.getCohort());
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+}
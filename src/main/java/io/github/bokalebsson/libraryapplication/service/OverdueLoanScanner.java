@@ -0,0 +1,38 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.dto.OverdueLoanView;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Feeds every loan that is overdue on a given day to a consumer, e.g. the nightly reminder job.
+ * Rows are streamed from the database one fetch at a time, so memory use does not grow with
+ * the number of overdue loans.
+ */
+@Service
+@RequiredArgsConstructor
+public class OverdueLoanScanner {
+
+    private final BookLoanRepository bookLoanRepository;
+
+    /**
+     * @return the number of overdue loans passed to the consumer
+     */
+    @Transactional(readOnly = true)
+    public long scan(LocalDate today, Consumer<OverdueLoanView> consumer) {
+        long count = 0;
+        try (Stream<OverdueLoanView> overdueLoans = bookLoanRepository.streamOverdueLoans(today)) {
+            for (OverdueLoanView overdueLoan : (Iterable<OverdueLoanView>) overdueLoans::iterator) {
+                consumer.accept(overdueLoan);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+/**
+ * Hashes and verifies the passwords of {@link AppUser}s. Algorithm and cost are configured with
+ * {@code library.password.*}, see {@link io.github.bokalebsson.libraryapplication.config.PasswordHashingProperties}.
+ * <p>
+ * A stored hash made with another algorithm or a lower cost (or a legacy plain text password)
+ * is replaced with a hash of the current settings the next time the user logs in successfully.
+ * <p>
+ * Hashing takes tens of milliseconds of CPU by design, so it never runs inside a transaction: a
+ * login would hold a pooled connection for all of it, and logins would queue up checkouts.
+ */
+@Slf4j
+@Service
+public class PasswordService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final AppUserRepository appUserRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Verified against when the username is unknown, so that case takes as long as a wrong password.
+    private final String unknownUserHash;
+
+    public PasswordService(PasswordEncoder passwordEncoder, AppUserRepository appUserRepository,
+                           PlatformTransactionManager transactionManager) {
+        this.passwordEncoder = passwordEncoder;
+        this.appUserRepository = appUserRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.unknownUserHash = passwordEncoder.encode("unknown user");
+    }
+
+    public String hash(String rawPassword) {
+        if (rawPassword == null || rawPassword.isEmpty()) {
+            throw new IllegalArgumentException("Password must not be empty");
+        }
+        return passwordEncoder.encode(rawPassword);
+    }
+
+    public void setPassword(AppUser user, String rawPassword) {
+        user.setPassword(hash(rawPassword));
+    }
+
+    /**
+     * The user with this username and password. An outdated hash is replaced in a transaction of
+     * its own, which only updates the user's row.
+     */
+    public Optional<AppUser> login(String username, String rawPassword) {
+        Optional<AppUser> user = appUserRepository.findByUsername(username);
+        if (user.isEmpty()) {
+            passwordEncoder.matches(rawPassword == null ? "" : rawPassword, unknownUserHash);
+            return Optional.empty();
+        }
+
+        String stored = user.get().getPassword();
+        if (rawPassword == null || !passwordEncoder.matches(rawPassword, stored)) {
+            return Optional.empty();
+        }
+        if (passwordEncoder.upgradeEncoding(stored)) {
+            rehash(user.get(), stored, passwordEncoder.encode(rawPassword));
+        }
+        return user;
+    }
+
+    // Only if the hash is still the one that was verified: a password changed in the meantime stays.
+    private void rehash(AppUser user, String outdated, String upgraded) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> appUserRepository.findById(user.getId())
+                    .filter(current -> current.getPassword().equals(outdated))
+                    .ifPresent(current -> current.setPassword(upgraded)));
+            user.setPassword(upgraded);
+            log.debug("Rehashed the password of user {}", user.getId());
+        } catch (OptimisticLockingFailureException e) {
+            log.debug("User {} changed while rehashing the password, keeping the old hash for now", user.getId());
+        }
+    }
+}
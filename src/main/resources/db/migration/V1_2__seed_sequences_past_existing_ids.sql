@@ -0,0 +1,8 @@
+-- Hibernate's pooled optimizer takes next_val as the top of a block of 50 ids: reading 170 hands
+-- out 121 to 170. Tables that had identity ids before (or whose sequence table ddl-auto=update
+-- created at 1) need next_val at least max(id) + 50, or the first inserts reuse existing ids.
+update details_seq set next_val = greatest(next_val, (select coalesce(max(id), 0) + 50 from details));
+update app_users_seq set next_val = greatest(next_val, (select coalesce(max(id), 0) + 50 from app_users));
+update author_seq set next_val = greatest(next_val, (select coalesce(max(id), 0) + 50 from author));
+update book_seq set next_val = greatest(next_val, (select coalesce(max(id), 0) + 50 from book));
+update book_loan_seq set next_val = greatest(next_val, (select coalesce(max(id), 0) + 50 from book_loan));
@@ -0,0 +1,77 @@
+-- Schema as Hibernate created it with ddl-auto=update. Databases that already have these
+-- tables are baselined at this version (spring.flyway.baseline-on-migrate) instead of migrated.
+
+-- Ids come from pooled sequences (allocationSize = 50), emulated on MySQL with one-row tables.
+create table details_seq (next_val bigint) engine=InnoDB;
+insert into details_seq values (1);
+create table app_users_seq (next_val bigint) engine=InnoDB;
+insert into app_users_seq values (1);
+create table author_seq (next_val bigint) engine=InnoDB;
+insert into author_seq values (1);
+create table book_seq (next_val bigint) engine=InnoDB;
+insert into book_seq values (1);
+create table book_loan_seq (next_val bigint) engine=InnoDB;
+insert into book_loan_seq values (1);
+
+create table details (
+    id integer not null,
+    email varchar(100) not null,
+    name varchar(255) not null,
+    birth_date date not null,
+    primary key (id),
+    constraint uk_details_email unique (email)
+) engine=InnoDB;
+
+create table app_users (
+    id integer not null,
+    username varchar(255) not null,
+    password varchar(255) not null,
+    reg_date date not null,
+    details_id integer not null,
+    primary key (id),
+    constraint uk_app_users_username unique (username),
+    constraint uk_app_users_details_id unique (details_id),
+    constraint fk_app_users_details foreign key (details_id) references details (id)
+) engine=InnoDB;
+
+create table author (
+    id integer not null,
+    uuid binary(16) not null,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    primary key (id),
+    constraint uk_author_uuid unique (uuid)
+) engine=InnoDB;
+
+create table book (
+    id integer not null,
+    isbn varchar(255) not null,
+    title varchar(255) not null,
+    max_loan_days integer not null,
+    available bit not null,
+    version bigint not null,
+    primary key (id),
+    constraint uk_book_isbn unique (isbn)
+) engine=InnoDB;
+
+create table author_book (
+    author_id integer not null,
+    book_id integer not null,
+    primary key (author_id, book_id),
+    constraint fk_author_book_author foreign key (author_id) references author (id),
+    constraint fk_author_book_book foreign key (book_id) references book (id)
+) engine=InnoDB;
+
+create table book_loan (
+    id integer not null,
+    loan_date date not null,
+    due_date date not null,
+    returned bit not null,
+    borrower_id integer not null,
+    book_id integer not null,
+    primary key (id),
+    constraint fk_book_loan_borrower foreign key (borrower_id) references app_users (id),
+    constraint fk_book_loan_book foreign key (book_id) references book (id)
+) engine=InnoDB;
+
+create index idx_book_loan_returned_due_date on book_loan (returned, due_date);
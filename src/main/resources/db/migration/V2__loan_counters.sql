@@ -0,0 +1,12 @@
+-- Active and overdue loan counters on the borrower, maintained by checkout and return
+-- (LoanService) and checked nightly by LoanCounterReconciler. The version column makes
+-- concurrent checkouts by one borrower retry instead of both passing the limit.
+alter table app_users add column active_loan_count integer not null default 0;
+alter table app_users add column overdue_loan_count integer not null default 0;
+alter table app_users add column version bigint not null default 0;
+
+update app_users u
+set active_loan_count  = (select count(*) from book_loan l
+                          where l.borrower_id = u.id and l.returned = false),
+    overdue_loan_count = (select count(*) from book_loan l
+                          where l.borrower_id = u.id and l.returned = false and l.due_date < current_date);
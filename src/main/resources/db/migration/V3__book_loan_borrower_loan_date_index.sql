@@ -0,0 +1,3 @@
+-- A borrower's loan history is read page by page, most recent first, instead of through a
+-- collection on app_users. The index serves both the filter and the order.
+create index idx_book_loan_borrower_loan_date on book_loan (borrower_id, loan_date);
@@ -0,0 +1,17 @@
+-- Normalized (trimmed, lower-case) copies of email and name for the case-insensitive finders,
+-- filled by the Details entity on every write. Comparing them keeps the lookups on an index;
+-- LOWER(email) = ? would scan the table.
+alter table details add column email_key varchar(100);
+alter table details add column name_key varchar(255);
+
+update details set email_key = lower(trim(email)), name_key = lower(trim(name));
+
+alter table details modify column email_key varchar(100) not null;
+alter table details modify column name_key varchar(255) not null;
+
+-- The unique key moves to the normalized email: two addresses differing only in case are the
+-- same mailbox. The default collation already compared them case-insensitively, so existing
+-- rows can't collide.
+alter table details add constraint uk_details_email_key unique (email_key);
+alter table details drop constraint uk_details_email;
+create index idx_details_name_key on details (name_key);
@@ -0,0 +1,17 @@
+-- Return dates, and the daily circulation rollups that LoanService maintains on checkout and
+-- return. Loans returned before this migration have no return date: they count as checkouts in
+-- the rollups, but not as returns. Run LoanStatisticsBackfill once to fill loan_daily_stats.
+alter table book_loan add column return_date date;
+create index idx_book_loan_loan_date on book_loan (loan_date);
+create index idx_book_loan_return_date on book_loan (return_date);
+
+create table loan_daily_stats (
+    stat_date date not null,
+    book_id integer not null,
+    cohort integer not null,
+    checkouts bigint not null,
+    returned bigint not null,
+    loan_days bigint not null,
+    returned_overdue bigint not null,
+    primary key (stat_date, book_id, cohort)
+) engine=InnoDB;
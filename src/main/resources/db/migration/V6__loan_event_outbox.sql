@@ -0,0 +1,14 @@
+-- Loan events written in the same transaction as the checkout or return, and deleted once
+-- LoanEventDispatcher has delivered them. Ordered by id, so the sequence decides the order.
+create table loan_event_seq (next_val bigint) engine=InnoDB;
+insert into loan_event_seq values (1);
+
+create table loan_event_outbox (
+    id integer not null,
+    type varchar(20) not null,
+    loan_id integer not null,
+    book_id integer not null,
+    borrower_id integer not null,
+    occurred_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
@@ -0,0 +1,147 @@
+package io.github.bokalebsson.libraryapplication;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.service.LoanService;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The prod profile on a database that ddl-auto=update created before there were migrations, with
+// rows in it. The context starts with ddl-auto=validate, so it only comes up if the upgrade worked.
+class LegacySchemaUpgradeTest {
+
+    private static final String URL = "jdbc:h2:mem:legacy;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void startOnLegacyDatabase() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/pre-flyway-schema.sql"))
+                .execute(new SimpleDriverDataSource(new org.h2.Driver(), URL, "sa", ""));
+
+        // Command line arguments, so the "test" profile doesn't override them.
+        context = new SpringApplicationBuilder(LibraryApplication.class)
+                .profiles("test", "prod")
+                .web(WebApplicationType.NONE)
+                .run("--spring.flyway.enabled=true",
+                        "--spring.datasource.url=" + URL,
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+                        "--spring.jpa.hibernate.ddl-auto=validate");
+    }
+
+    @AfterAll
+    static void stop() {
+        context.close();
+    }
+
+    @Test
+    @DisplayName("A legacy database is baselined at V1, upgraded by V1_1 and then migrated like any other.")
+    void migrations_shouldUpgradeLegacySchema() {
+
+        // Act
+        MigrationInfo[] applied = context.getBean(Flyway.class).info().applied();
+
+        // Assert
+        assertThat(Arrays.stream(applied).map(MigrationInfo::getVersion).map(Object::toString))
+                .startsWith("1", "1.1")
+                .contains("4", "7");
+        assertThat(context.getBean(Flyway.class).info().pending()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Generated constraint names are replaced with the ones the migrations use.")
+    void upgrade_shouldRenameConstraints() {
+
+        // Act
+        List<String> constraints = new JdbcTemplate(new SimpleDriverDataSource(new org.h2.Driver(), URL, "sa", ""))
+                .queryForList("select constraint_name from information_schema.table_constraints "
+                        + "where table_schema = 'public' and constraint_type in ('UNIQUE', 'FOREIGN KEY')", String.class);
+
+        // Assert: V4 could drop uk_details_email, and nothing Hibernate named is left.
+        assertThat(constraints).containsExactlyInAnyOrder(
+                "uk_details_email_key", "uk_app_users_username", "uk_app_users_details_id", "uk_book_isbn",
+                "uk_author_uuid", "fk_app_users_details", "fk_author_book_author", "fk_author_book_book",
+                "fk_book_loan_borrower", "fk_book_loan_book");
+    }
+
+    @Test
+    @DisplayName("Existing rows get the new columns filled: author uuids and the loan counters.")
+    void upgrade_shouldFillNewColumnsOfExistingRows() {
+
+        // Act
+        List<Author> authors = context.getBean(AuthorRepository.class).findAll();
+        AppUser ada = context.getBean(AppUserRepository.class).findById(130).orElseThrow();
+
+        // Assert
+        assertThat(authors).extracting(Author::getUuid).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(ada.getActiveLoanCount()).isEqualTo(1);
+        assertThat(ada.getOverdueLoanCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Usernames and ISBNs stored before they were normalized are found by the natural-id lookups.")
+    void upgrade_shouldNormalizeUsernamesAndIsbns() {
+
+        // Act
+        AppUser ada = context.getBean(AppUserRepository.class).findByUsername("ada").orElseThrow();
+        Book book = context.getBean(BookRepository.class).findByIsbnIgnoreCase("978-0-13-110362-7").orElseThrow();
+
+        // Assert
+        assertThat(ada.getId()).isEqualTo(130);
+        assertThat(ada.getUsername()).isEqualTo("ada");
+        assertThat(book.getId()).isEqualTo(151);
+        assertThat(book.getIsbn()).isEqualTo("9780131103627");
+    }
+
+    @Test
+    @DisplayName("New rows get ids past the existing ones, whether V1_1 created the sequence table or Hibernate did.")
+    void sequences_shouldContinuePastExistingIds() {
+
+        // Arrange: More books than one block of ids.
+        List<Book> books = IntStream.range(0, 60)
+                .mapToObj(i -> Book.builder().isbn("UPGRADED-" + i).title("Upgraded " + i).maxLoanDays(14).build())
+                .toList();
+
+        // Act
+        List<Book> saved = context.getBean(BookRepository.class).saveAll(books);
+        AppUser grace = context.getBean(AppUserRepository.class).save(AppUser.builder()
+                .username("grace")
+                .password(TestPasswords.HASH)
+                .regDate(LocalDate.now())
+                .userDetails(new Details("grace@example.com", "Grace Hopper", LocalDate.of(1906, 12, 9)))
+                .build());
+        BookLoan loan = context.getBean(LoanService.class).checkout(grace.getId(), 151);
+
+        // Assert
+        assertThat(saved).extracting(Book::getId).allMatch(id -> id > 151).doesNotHaveDuplicates();
+        assertThat(grace.getId()).isGreaterThan(130);
+        assertThat(grace.getUserDetails().getId()).isGreaterThan(120);
+        assertThat(loan.getId()).isGreaterThan(161);
+        assertThat(context.getBean(BookRepository.class).count()).isEqualTo(62);
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.bokalebsson.libraryapplication;
+
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.LoanDailyStats;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanDailyStatsRepository;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.FlywayException;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The prod profile on an empty database: H2 in MySQL mode with the MySQL dialect stands in for MySQL.
+// ddl-auto=validate makes the context fail to start if the migrations don't match the entities, and
+// Flyway is turned back on because the "test" profile turns it off.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.flyway.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:migrated;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect",
+        "spring.jpa.hibernate.ddl-auto=validate"})
+@ActiveProfiles({"test", "prod"})
+class SchemaMigrationTest {
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private LoanDailyStatsRepository loanDailyStatsRepository;
+
+    @Test
+    @DisplayName("Flyway creates a schema that matches the entity mappings.")
+    void migrations_shouldMatchEntities() {
+
+        // Act: Look at what Flyway applied while the context started.
+        MigrationInfo[] applied = flyway.info().applied();
+
+        // Assert: All migrations ran and none is pending.
+        assertThat(applied).isNotEmpty();
+        assertThat(Arrays.stream(applied).map(MigrationInfo::getVersion).map(Object::toString)).startsWith("1");
+        assertThat(flyway.info().pending()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Entities can be written and read back on the migrated schema.")
+    void migratedSchema_shouldStoreEntities() {
+
+        // Arrange
+        Book book = Book.builder().isbn("MIGRATED-1").title("Migrations in Practice").maxLoanDays(14).build();
+
+        // Act
+        bookRepository.save(book);
+
+        // Assert
+        assertThat(bookRepository.findByIsbnIgnoreCase("migrated-1")).hasValueSatisfying(
+                found -> assertThat(found.getTitle()).isEqualTo("Migrations in Practice"));
+    }
+
+    @Test
+    @DisplayName("Normalizing ISBNs stops with the rows involved when two of them would become the same.")
+    void normalization_shouldRefuseCollidingIsbns() {
+
+        // Arrange: A database at V6 with the same book stored as ISBN-10 and as ISBN-13.
+        String url = "jdbc:h2:mem:colliding;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        Flyway.configure().dataSource(url, "sa", "").target("6").load().migrate();
+        new JdbcTemplate(new SimpleDriverDataSource(new org.h2.Driver(), url, "sa", "")).update(
+                "insert into book (id, available, isbn, max_loan_days, title, version) "
+                        + "values (1, true, '0-13-110362-8', 14, 'K&R', 0), (2, true, '9780131103627', 14, 'K&R', 0)");
+
+        // Act & Assert
+        assertThatThrownBy(() -> Flyway.configure().dataSource(url, "sa", "").load().migrate())
+                .isInstanceOf(FlywayException.class)
+                .rootCause()
+                .hasMessageContaining("book.isbn")
+                .hasMessageContaining("1 '0-13-110362-8', 2 '9780131103627'");
+    }
+
+    // What the MySQL dialect makes of ON CONFLICT (insert ... on duplicate key update), as far as
+    // H2's MySQL mode runs it.
+    @Test
+    @DisplayName("The rollup upserts add to an existing row instead of failing on the primary key.")
+    void rollupUpserts_shouldAddToExistingRow() {
+
+        // Arrange
+        LocalDate day = LocalDate.of(2024, 3, 1);
+
+        // Act
+        loanDailyStatsRepository.addCheckout(day, 7, 202401);
+        loanDailyStatsRepository.addCheckout(day, 7, 202401);
+        loanDailyStatsRepository.addReturns(day, 7, 202401, 2, 30, 1);
+        loanDailyStatsRepository.addReturns(day, 7, 202401, 1, 5, 0);
+
+        // Assert
+        LoanDailyStats stats = loanDailyStatsRepository.findById(new LoanDailyStats.Key(day, 7, 202401)).orElseThrow();
+        assertThat(stats.getCheckouts()).isEqualTo(2);
+        assertThat(stats.getReturned()).isEqualTo(3);
+        assertThat(stats.getLoanDays()).isEqualTo(35);
+        assertThat(stats.getReturnedOverdue()).isEqualTo(1);
+    }
+
+}
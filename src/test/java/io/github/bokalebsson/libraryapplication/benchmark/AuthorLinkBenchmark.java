@@ -0,0 +1,115 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of linking many books to one author through {@link Author#addBook(Book)},
+ * and many authors to one book through {@link Book#addAuthor(Author)}.
+ * The "legacy" variants use the old id-based equals with a constant hashCode so the
+ * difference between the two hashing strategies can be compared directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorLinkBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    private int books;
+
+    private List<Book> naturalKeyBooks;
+    private List<Book> legacyBooks;
+    private List<Author> naturalKeyAuthors;
+
+    @Setup
+    public void setUp() {
+        naturalKeyBooks = new ArrayList<>(books);
+        legacyBooks = new ArrayList<>(books);
+        naturalKeyAuthors = new ArrayList<>(books);
+
+        for (int i = 0; i < books; i++) {
+            naturalKeyBooks.add(Book.builder().id(i + 1).isbn("ISBN-" + i).title("Book " + i).build());
+
+            LegacyBook legacyBook = new LegacyBook();
+            legacyBook.setId(i + 1);
+            legacyBook.setIsbn("ISBN-" + i);
+            legacyBook.setTitle("Book " + i);
+            legacyBooks.add(legacyBook);
+
+            naturalKeyAuthors.add(Author.builder().id(i + 1).firstName("Author").lastName("No. " + i).build());
+        }
+    }
+
+    @Benchmark
+    public Author linkBooksNaturalKeyHash() {
+        Author author = Author.builder().id(1).firstName("John").lastName("Doe").build();
+        for (Book book : naturalKeyBooks) {
+            book.setAuthors(null);
+            author.addBook(book);
+        }
+        return author;
+    }
+
+    @Benchmark
+    public Author linkBooksLegacyConstantHash() {
+        Author author = new LegacyAuthor();
+        author.setId(1);
+        for (Book book : legacyBooks) {
+            book.setAuthors(null);
+            author.addBook(book);
+        }
+        return author;
+    }
+
+    // Anthologies: one book, as many authors as the parameter says.
+    @Benchmark
+    public Book linkAuthorsNaturalKeyHash() {
+        Book book = Book.builder().id(1).isbn("ISBN-ANTHOLOGY").title("Anthology").build();
+        for (Author author : naturalKeyAuthors) {
+            author.setBooks(null);
+            book.addAuthor(author);
+        }
+        return book;
+    }
+
+    static class LegacyBook extends Book {
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Book)) return false;
+            Book other = (Book) o;
+            return getId() != null && getId().equals(other.getId());
+        }
+
+        @Override
+        public int hashCode() {
+            return getClass().hashCode();
+        }
+    }
+
+    static class LegacyAuthor extends Author {
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Author)) return false;
+            Author other = (Author) o;
+            return getId() != null && getId().equals(other.getId());
+        }
+
+        @Override
+        public int hashCode() {
+            return getClass().hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.LibraryApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application against the embedded H2 database of the "test" profile, with SQL
+ * logging and statistics turned off so they don't distort the numbers. The properties are passed
+ * as command line arguments: as default properties the "test" profile would override them.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... extraProperties) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--logging.level.root=warn"));
+        for (String property : extraProperties) {
+            arguments.add("--" + property);
+        }
+
+        return new SpringApplicationBuilder(LibraryApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(String[]::new));
+    }
+}
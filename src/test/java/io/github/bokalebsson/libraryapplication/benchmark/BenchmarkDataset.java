@@ -0,0 +1,88 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds a benchmark database with JDBC batches, which is far faster than the repositories for
+ * hundreds of thousands of rows. Seeded ids start at 1. Afterwards the id sequence of the table is
+ * moved past the seeded rows, so entities saved by the benchmark itself get fresh ids.
+ */
+final class BenchmarkDataset {
+
+    private static final int BATCH_SIZE = 10_000;
+    // Hibernate hands out ids in blocks of the allocation size below the sequence value.
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    BenchmarkDataset(ConfigurableApplicationContext context) {
+        this.jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    static String isbn(int id) {
+        return "SEED-" + id;
+    }
+
+    static String username(int id) {
+        return "reader" + id;
+    }
+
+    /** Books 1..count, all available. */
+    void books(int count) {
+        insert("INSERT INTO book (id, isbn, title, max_loan_days, available, version) VALUES (?, ?, ?, 14, true, 0)",
+                count, id -> new Object[]{id, isbn(id), "Seeded Book " + id});
+        restartSequence("book_seq", count);
+    }
+
+    /** Users 1..count, each with its details. */
+    void users(int count) {
+        insert("INSERT INTO details (id, email, name, birth_date, email_key, name_key) VALUES (?1, ?2, ?3, DATE '1990-01-01', LOWER(?2), LOWER(?3))",
+                count, id -> new Object[]{id, username(id) + "@test.nu", "Reader " + id});
+        insert("INSERT INTO app_users (id, username, password, reg_date, details_id, active_loan_count, overdue_loan_count, version) VALUES (?, ?, 'secret', CURRENT_DATE, ?, 0, 0, 0)",
+                count, id -> new Object[]{id, username(id), id});
+        restartSequence("details_seq", count);
+        restartSequence("app_users_seq", count);
+    }
+
+    /**
+     * {@code loansPerBorrower} loans for each of users 1..borrowers, spread over books 1..books,
+     * one loan per day going back from today. Only the most recent loan of a borrower is still open.
+     */
+    void loans(int borrowers, int loansPerBorrower, int books) {
+        LocalDate today = LocalDate.now();
+        insert("INSERT INTO book_loan (id, borrower_id, book_id, loan_date, due_date, returned) VALUES (?, ?, ?, ?, ?, ?)",
+                borrowers * loansPerBorrower, id -> {
+                    int borrower = (id - 1) / loansPerBorrower + 1;
+                    int age = loansPerBorrower - 1 - (id - 1) % loansPerBorrower;
+                    LocalDate loanDate = today.minusDays(age);
+                    return new Object[]{id, borrower, (id - 1) % books + 1, loanDate, loanDate.plusDays(14), age > 0};
+                });
+        jdbcTemplate.update("UPDATE app_users SET active_loan_count = 1 WHERE id <= ?", borrowers);
+        restartSequence("book_loan_seq", borrowers * loansPerBorrower);
+    }
+
+    private void insert(String sql, int count, Row row) {
+        List<Object[]> rows = new ArrayList<>(Math.min(count, BATCH_SIZE));
+        for (int id = 1; id <= count; id++) {
+            rows.add(row.values(id));
+            if (rows.size() == BATCH_SIZE || id == count) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+    }
+
+    private void restartSequence(String sequence, int seededRows) {
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + (seededRows + ALLOCATION_SIZE + 1));
+    }
+
+    @FunctionalInterface
+    private interface Row {
+        Object[] values(int id);
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BookLoanRepository#findByBorrowerId(int)}, the "my loans" page, for borrowers with a
+ * long history. Every borrower has {@code loansPerBorrower} loans, spread over a catalogue of
+ * {@code books}; lookups go round all borrowers.
+ * <p>
+ * Sizes are parameters, e.g. {@code -Djmh.include="BorrowerLoansBenchmark -p loansPerBorrower=5000"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BorrowerLoansBenchmark {
+
+    @Param({"100"})
+    private int borrowers;
+
+    @Param({"10", "100", "1000"})
+    private int loansPerBorrower;
+
+    @Param({"10000"})
+    private int books;
+
+    private ConfigurableApplicationContext context;
+    private BookLoanRepository bookLoanRepository;
+    private int next;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContext.start();
+        bookLoanRepository = context.getBean(BookLoanRepository.class);
+
+        BenchmarkDataset dataset = new BenchmarkDataset(context);
+        dataset.books(books);
+        dataset.users(borrowers);
+        dataset.loans(borrowers, loansPerBorrower, books);
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<BookLoan> findByBorrowerId() {
+        next = next % borrowers + 1;
+        return bookLoanRepository.findByBorrowerId(next);
+    }
+}
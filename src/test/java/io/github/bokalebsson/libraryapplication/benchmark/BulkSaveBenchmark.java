@@ -0,0 +1,57 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BookRepository#saveAll(Iterable)} of new books in one transaction, on top of a catalogue
+ * of {@code books} seeded rows. The score is the time per call, so divide by {@code batch} for
+ * the cost of one row. Inserts go out in JDBC batches (hibernate.jdbc.batch_size) with ids from
+ * the pooled sequence; a regression in either shows up here first.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BulkSaveBenchmark {
+
+    @Param({"100000"})
+    private int books;
+
+    @Param({"100", "1000"})
+    private int batch;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private int saved;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContext.start();
+        bookRepository = context.getBean(BookRepository.class);
+        new BenchmarkDataset(context).books(books);
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Book> saveAll() {
+        List<Book> newBooks = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            int n = ++saved;
+            newBooks.add(Book.builder().isbn("NEW-" + n).title("New Book " + n).maxLoanDays(14).build());
+        }
+        return bookRepository.saveAll(newBooks);
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.search.TextIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of catalogue searches through {@link TextIndex} compared with the LIKE finder on H2,
+ * on a generated catalogue. Title words follow a skewed distribution, so the "common" queries
+ * match a large share of the titles and the "rare" ones only a handful.
+ * <p>
+ * The database benchmarks seed their own table and are slow to set up at a million rows;
+ * run them selectively, e.g. {@code -Djmh.include="CatalogSearchBenchmark.index.*"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class CatalogSearchBenchmark {
+
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int RESULTS = 10;
+
+    @Param({"100000", "1000000"})
+    private int titles;
+
+    private TextIndex index;
+    private String commonPrefix;
+    private String twoWordPrefix;
+    private String rareSubstring;
+
+    @Setup
+    public void buildIndex() {
+        Catalogue catalogue = new Catalogue(titles);
+        TextIndex.Builder builder = TextIndex.builder();
+        for (int id = 1; id <= titles; id++) {
+            builder.add(id, catalogue.title());
+        }
+        index = builder.build();
+
+        commonPrefix = catalogue.commonWord().substring(0, 3);
+        twoWordPrefix = catalogue.commonWord().substring(0, 3) + " " + catalogue.rareWord().substring(0, 4);
+        rareSubstring = catalogue.rareWord().substring(1, 5);
+    }
+
+    @Benchmark
+    public List<Integer> indexPrefixCommon() {
+        return index.searchPrefix(commonPrefix, RESULTS);
+    }
+
+    @Benchmark
+    public List<Integer> indexPrefixTwoWords() {
+        return index.searchPrefix(twoWordPrefix, RESULTS);
+    }
+
+    @Benchmark
+    public List<Integer> indexSubstringRare() {
+        return index.searchSubstring(rareSubstring, RESULTS);
+    }
+
+    @Benchmark
+    public List<Book> likeFinderCommon(Database database) {
+        return database.search(commonPrefix);
+    }
+
+    @Benchmark
+    public List<Book> likeFinderRare(Database database) {
+        return database.search(rareSubstring);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        private ConfigurableApplicationContext context;
+        private BookRepository bookRepository;
+
+        @Setup
+        public void seed(CatalogSearchBenchmark benchmark) {
+            context = BenchmarkContext.start();
+            bookRepository = context.getBean(BookRepository.class);
+
+            Catalogue catalogue = new Catalogue(benchmark.titles);
+            List<Object[]> rows = new ArrayList<>();
+            for (int id = 1; id <= benchmark.titles; id++) {
+                rows.add(new Object[]{id, "SEARCH-" + id, catalogue.title(), 14});
+                if (rows.size() == 10_000 || id == benchmark.titles) {
+                    context.getBean(JdbcTemplate.class).batchUpdate(
+                            "INSERT INTO book (id, isbn, title, max_loan_days, available, version) VALUES (?, ?, ?, ?, true, 0)", rows);
+                    rows.clear();
+                }
+            }
+        }
+
+        List<Book> search(String title) {
+            return bookRepository.findByTitleContainingIgnoreCase(title, PageRequest.of(0, RESULTS, Sort.by("id"))).getContent();
+        }
+
+        @TearDown
+        public void stop() {
+            context.close();
+        }
+    }
+
+    /**
+     * Generates the same titles for the same size. Word i of the vocabulary is picked with a
+     * probability that falls off steeply with i, like words in real titles.
+     */
+    static final class Catalogue {
+
+        private final Random random;
+        private final String[] vocabulary = new String[VOCABULARY_SIZE];
+
+        Catalogue(int titles) {
+            random = new Random(titles);
+            for (int i = 0; i < vocabulary.length; i++) {
+                StringBuilder word = new StringBuilder();
+                int length = 4 + random.nextInt(7);
+                for (int j = 0; j < length; j++) {
+                    word.append((char) ('a' + random.nextInt(26)));
+                }
+                vocabulary[i] = word.toString();
+            }
+        }
+
+        String title() {
+            StringBuilder title = new StringBuilder();
+            int words = 2 + random.nextInt(6);
+            for (int i = 0; i < words; i++) {
+                double skew = random.nextDouble();
+                title.append(i == 0 ? "" : " ").append(vocabulary[(int) (skew * skew * skew * vocabulary.length)]);
+            }
+            return title.toString();
+        }
+
+        String commonWord() {
+            return vocabulary[0];
+        }
+
+        String rareWord() {
+            return vocabulary[vocabulary.length - 1];
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.LoanPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AppUser#addBookLoan(BookLoan, LoanPolicy)} and {@link AppUser#removeBookLoan(BookLoan)}
+ * in memory. Each operation adds one loan and removes it again. AppUser holds no collection of
+ * loans, only counters, so the cost does not depend on how many loans the user had before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoanLinkBenchmark {
+
+    private final LoanPolicy policy = new LoanPolicy(5);
+
+    private AppUser user;
+    private Book book;
+    private LocalDate today;
+
+    @Setup
+    public void setUp() {
+        today = LocalDate.now();
+        user = AppUser.builder().id(1).username("reader").activeLoanCount(2).build();
+        book = Book.builder().id(1).isbn("LOAN-NEW").title("New Book").maxLoanDays(14).build();
+    }
+
+    @Benchmark
+    public BookLoan addAndRemoveLoan() {
+        BookLoan loan = BookLoan.builder().book(book).loanDate(today).build();
+        user.addBookLoan(loan, policy);
+        user.removeBookLoan(loan);
+        return loan;
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.entity.LoanDailyStats;
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanDailyStatsRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanEventRepository;
+import io.github.bokalebsson.libraryapplication.service.LoanService;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares two ways of doing the whole work of a return: marking the loan returned with its
+ * return date, lowering the borrower's counters, making the book available, adding the rollup
+ * returns and writing the outbox event.
+ * <p>
+ * The service path is {@link LoanService}: the loans, borrowers and books are locked with one
+ * select each, the rollups are summed per book and cohort, and the loans are marked in one
+ * statement. The entity path loads each loan with its borrower and book, changes them and lets
+ * dirty checking write them, with one rollup upsert per loan. It takes no locks, so it is only
+ * correct without concurrent returns of the same loans.
+ * <p>
+ * Each iteration returns {@link #LOANS_PER_ITERATION} loans that are checked out through
+ * LoanService in the iteration setup, so the score is the time to return that many loans.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoanReturnBenchmark {
+
+    private static final int LOANS_PER_ITERATION = 500;
+    private static final int DROP_BOX_SIZE = 50;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private BookRepository bookRepository;
+    private BookLoanRepository bookLoanRepository;
+    private LoanDailyStatsRepository loanDailyStatsRepository;
+    private LoanEventRepository loanEventRepository;
+    private TransactionTemplate transactionTemplate;
+
+    private AppUser borrower;
+    private List<Integer> openLoanIds;
+    private int iteration;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        // One borrower has all the loans of an iteration out at once.
+        context = BenchmarkContext.start("library.loan.max-active-loans=" + LOANS_PER_ITERATION);
+        loanService = context.getBean(LoanService.class);
+        bookRepository = context.getBean(BookRepository.class);
+        bookLoanRepository = context.getBean(BookLoanRepository.class);
+        loanDailyStatsRepository = context.getBean(LoanDailyStatsRepository.class);
+        loanEventRepository = context.getBean(LoanEventRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        borrower = context.getBean(AppUserRepository.class).save(AppUser.builder()
+                .username("benchmark")
+                .password(TestPasswords.HASH)
+                .regDate(LocalDate.now())
+                .userDetails(new Details("benchmark@test.nu", "Benchmark User", LocalDate.of(1990, 1, 1)))
+                .build());
+    }
+
+    @Setup(Level.Iteration)
+    public void checkoutLoans() {
+        int round = iteration++;
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < LOANS_PER_ITERATION; i++) {
+            books.add(Book.builder().isbn("BENCH-" + round + "-" + i).title("Benchmark Book " + i).maxLoanDays(14).build());
+        }
+        bookRepository.saveAll(books);
+
+        // Some of them overdue, so both paths lower the overdue counter as well.
+        openLoanIds = new ArrayList<>();
+        for (int i = 0; i < books.size(); i++) {
+            LocalDate loanDate = LocalDate.now().minusDays(i % 20);
+            openLoanIds.add(loanService.checkout(borrower.getId(), books.get(i).getId(), loanDate).getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public void entityPathOnePerTransaction() {
+        for (Integer loanId : openLoanIds) {
+            transactionTemplate.executeWithoutResult(status ->
+                    returnLoaded(bookLoanRepository.findById(loanId).orElseThrow(), LocalDate.now(), Instant.now()));
+        }
+    }
+
+    @Benchmark
+    public void servicePathOnePerTransaction() {
+        for (Integer loanId : openLoanIds) {
+            loanService.returnLoan(loanId);
+        }
+    }
+
+    @Benchmark
+    public void entityPathDropBox() {
+        for (int from = 0; from < openLoanIds.size(); from += DROP_BOX_SIZE) {
+            List<Integer> batch = openLoanIds.subList(from, Math.min(from + DROP_BOX_SIZE, openLoanIds.size()));
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDate today = LocalDate.now();
+                Instant now = Instant.now();
+                for (BookLoan loan : bookLoanRepository.findAllById(batch)) {
+                    returnLoaded(loan, today, now);
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void servicePathDropBox() {
+        for (int from = 0; from < openLoanIds.size(); from += DROP_BOX_SIZE) {
+            loanService.returnLoans(openLoanIds.subList(from, Math.min(from + DROP_BOX_SIZE, openLoanIds.size())));
+        }
+    }
+
+    private void returnLoaded(BookLoan loan, LocalDate today, Instant now) {
+        if (loan.isReturned()) {
+            return;
+        }
+        AppUser loanBorrower = loan.getBorrower();
+        Book book = loan.getBook();
+        loanEventRepository.save(LoanEvent.of(LoanEvent.Type.RETURNED, loan.getId(), book.getId(), loanBorrower.getId(), now));
+        loanDailyStatsRepository.addReturns(today, book.getId(), LoanDailyStats.cohortOf(loanBorrower.getRegDate()),
+                1, ChronoUnit.DAYS.between(loan.getLoanDate(), today), loan.getDueDate().isBefore(today) ? 1 : 0);
+        loanBorrower.loanReturned(loan, today);
+        book.setAvailable(true);
+        loan.setReturned(true);
+        loan.setReturnDate(today);
+    }
+
+}
@@ -0,0 +1,136 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Circulation desk lookups: a book by ISBN and a user by username. Compares the JPQL queries
+ * with case folding that the repositories used before (full scans, the unique index can't be
+ * used for UPPER(isbn)) with the natural-id lookups that resolve through the second-level cache.
+ * <p>
+ * Lookups cycle through {@link #HOT_KEYS} keys, which fit in the cache regions and are looked
+ * up once during setup, so the natural-id lookups are served from the cache like a busy desk would be.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NaturalIdLookupBenchmark {
+
+    private static final int HOT_KEYS = 5_000;
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private AppUserRepository appUserRepository;
+    private EntityManagerFactory entityManagerFactory;
+    private TransactionTemplate readOnlyTransaction;
+
+    private int next;
+
+    @Setup
+    public void seed() {
+        context = BenchmarkContext.start();
+        bookRepository = context.getBean(BookRepository.class);
+        appUserRepository = context.getBean(AppUserRepository.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        readOnlyTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> books = new ArrayList<>();
+        List<Object[]> details = new ArrayList<>();
+        List<Object[]> users = new ArrayList<>();
+        for (int id = 1; id <= rows; id++) {
+            books.add(new Object[]{id, isbn(id), "Lookup Book " + id});
+            details.add(new Object[]{id, "reader" + id + "@test.nu", "Reader " + id});
+            users.add(new Object[]{id, username(id), id});
+            if (books.size() == 10_000 || id == rows) {
+                jdbcTemplate.batchUpdate("INSERT INTO book (id, isbn, title, max_loan_days, available, version) VALUES (?, ?, ?, 14, true, 0)", books);
+                jdbcTemplate.batchUpdate("INSERT INTO details (id, email, name, birth_date, email_key, name_key) VALUES (?1, ?2, ?3, DATE '1990-01-01', LOWER(?2), LOWER(?3))", details);
+                jdbcTemplate.batchUpdate("INSERT INTO app_users (id, username, password, reg_date, details_id, active_loan_count, overdue_loan_count, version) VALUES (?, ?, 'secret', CURRENT_DATE, ?, 0, 0, 0)", users);
+                books.clear();
+                details.clear();
+                users.clear();
+            }
+        }
+
+        // A cold miss costs a query like the JPQL variants; load the hot keys once so the
+        // measurement isn't dominated by the first round of misses.
+        for (int i = 0; i < HOT_KEYS; i++) {
+            isbnNaturalId();
+            usernameNaturalId();
+        }
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public Book isbnJpqlIgnoreCase() {
+        String isbn = isbn(nextKey()).toLowerCase();
+        return inReadOnlyTransaction(entityManager -> entityManager
+                .createQuery("SELECT b FROM Book b WHERE UPPER(b.isbn) = UPPER(:isbn)", Book.class)
+                .setParameter("isbn", isbn)
+                .getSingleResult());
+    }
+
+    @Benchmark
+    public Book isbnNaturalId() {
+        return bookRepository.findByIsbnIgnoreCase(isbn(nextKey()).toLowerCase()).orElseThrow();
+    }
+
+    @Benchmark
+    public AppUser usernameJpql() {
+        String username = username(nextKey());
+        return inReadOnlyTransaction(entityManager -> entityManager
+                .createQuery("SELECT u FROM AppUser u JOIN FETCH u.userDetails WHERE u.username = :username", AppUser.class)
+                .setParameter("username", username)
+                .getSingleResult());
+    }
+
+    @Benchmark
+    public AppUser usernameNaturalId() {
+        return appUserRepository.findByUsername(username(nextKey())).orElseThrow();
+    }
+
+    private int nextKey() {
+        next = next % HOT_KEYS + 1;
+        return next * (rows / HOT_KEYS);
+    }
+
+    private <T> T inReadOnlyTransaction(Function<EntityManager, T> query) {
+        return readOnlyTransaction.execute(status ->
+                query.apply(EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)));
+    }
+
+    // Stored in canonical form, like Book does.
+    private static String isbn(int id) {
+        return "LOOKUP-" + id;
+    }
+
+    private static String username(int id) {
+        return "reader" + id;
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.config.PasswordEncoderConfig;
+import io.github.bokalebsson.libraryapplication.config.PasswordHashingProperties;
+import io.github.bokalebsson.libraryapplication.config.PasswordHashingProperties.Algorithm;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login capacity per password hashing configuration: verifications per second on one thread,
+ * i.e. per core. A login verifies one hash; hashing a new password costs the same.
+ * <p>
+ * A configuration is {@code algorithm:cost...}: {@code bcrypt:<strength>},
+ * {@code argon2:<memory KiB>:<iterations>:<parallelism>} or {@code pbkdf2:<iterations>}, matching
+ * the {@code library.password.*} properties. Argon2 is also bound by memory bandwidth, so check
+ * the scaling with more threads ({@code -t}) before sizing a node on the single-thread figure.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({
+            "bcrypt:10", "bcrypt:12", "bcrypt:13",
+            "argon2:19456:2:1", "argon2:47104:1:1", "argon2:65536:3:1",
+            "pbkdf2:310000", "pbkdf2:600000"})
+    private String configuration;
+
+    private PasswordEncoder encoder;
+    private String storedHash;
+
+    @Setup
+    public void createEncoder() {
+        String[] parts = configuration.split(":");
+        Algorithm algorithm = Algorithm.valueOf(parts[0].toUpperCase(Locale.ROOT));
+        int bcryptStrength = algorithm == Algorithm.BCRYPT ? Integer.parseInt(parts[1]) : 4;
+        PasswordHashingProperties.Argon2 argon2 = algorithm == Algorithm.ARGON2
+                ? new PasswordHashingProperties.Argon2(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]))
+                : new PasswordHashingProperties.Argon2(1024, 1, 1);
+        int pbkdf2Iterations = algorithm == Algorithm.PBKDF2 ? Integer.parseInt(parts[1]) : 1000;
+
+        encoder = PasswordEncoderConfig.delegatingPasswordEncoder(new PasswordHashingProperties(algorithm, false,
+                new PasswordHashingProperties.Bcrypt(bcryptStrength), argon2, new PasswordHashingProperties.Pbkdf2(pbkdf2Iterations)));
+        storedHash = encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return encoder.matches(PASSWORD, storedHash);
+    }
+}
@@ -0,0 +1,303 @@
+package io.github.bokalebsson.libraryapplication.benchmark;
+
+import io.github.bokalebsson.libraryapplication.LibraryApplication;
+import io.github.bokalebsson.libraryapplication.search.CatalogSearchIndex;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP load test of the loan and catalogue endpoints, once with Tomcat on platform threads and
+ * once on virtual threads ({@code spring.threads.virtual.enabled}), against the embedded H2
+ * database of the "test" profile.
+ * <p>
+ * Every client is a virtual thread with its own connection that sends requests back to back:
+ * <ul>
+ *     <li>catalogue: a search ({@code GET /api/books/search}) and one of the books found
+ *     ({@code GET /api/books/{id}}), alternately;</li>
+ *     <li>loans: checkout ({@code POST /api/loans}) and return of a book owned by the client.</li>
+ * </ul>
+ * H2 answers in microseconds, where MySQL needs a network round trip, so every JDBC statement
+ * is delayed by {@code load.jdbc-latency-ms} to make requests wait on the database the way they
+ * do in production. Run with:
+ * <pre>
+ * mvn -Pload-test test -DskipTests [-Dload.clients=1000] [-Dload.seconds=20] [-Dload.jdbc-latency-ms=1]
+ * </pre>
+ */
+public final class RequestThreadingLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 1000);
+    private static final Duration WARM_UP = Duration.ofSeconds(Integer.getInteger("load.warm-up-seconds", 5));
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Integer.getInteger("load.seconds", 20));
+    private static final int JDBC_LATENCY_MILLIS = Integer.getInteger("load.jdbc-latency-ms", 1);
+    private static final int CATALOGUE_BOOKS = 10_000;
+    private static final String[] WORDS = {"river", "night", "garden", "winter", "stone", "silver", "ocean", "shadow"};
+    private static final Pattern LOAN_ID = Pattern.compile("\"id\":(\\d+)");
+
+    private RequestThreadingLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d clients, %ds warm-up, %ds measurement, %d ms per JDBC statement%n%n",
+                CLIENTS, WARM_UP.toSeconds(), MEASUREMENT.toSeconds(), JDBC_LATENCY_MILLIS);
+        System.out.printf("%-9s %-10s %10s %9s %9s %9s %7s%n", "threads", "scenario", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = start(virtualThreads)) {
+                seed(context);
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                String threads = virtualThreads ? "virtual" : "platform";
+
+                print(threads, "catalogue", run(port, client -> catalogueClient(port, client)));
+                print(threads, "loans", run(port, client -> loanClient(port, client)));
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtualThreads) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        // As arguments: they override the "test" profile, default properties would not.
+        return new SpringApplicationBuilder(LibraryApplication.class)
+                .profiles("test")
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(new JdbcLatency()))
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        // The production pool size.
+                        "--spring.datasource.hikari.maximum-pool-size=20",
+                        "--spring.datasource.hikari.minimum-idle=20",
+                        "--spring.datasource.hikari.connection-timeout=30000",
+                        "--server.tomcat.max-connections=" + Math.max(8192, CLIENTS * 2),
+                        "--server.tomcat.accept-count=" + CLIENTS,
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--logging.level.root=warn");
+    }
+
+    // One user per client, a book per client for the loans and a catalogue to browse.
+    private static void seed(ConfigurableApplicationContext context) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> details = new ArrayList<>();
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> books = new ArrayList<>();
+        for (int i = 1; i <= CLIENTS; i++) {
+            details.add(new Object[]{i, "client" + i + "@example.com", "Client " + i, LocalDate.of(1990, 1, 1)});
+            users.add(new Object[]{i, "client" + i, "hash", LocalDate.now(), i});
+            books.add(new Object[]{i, "LOAN-" + i, "Loan copy " + i, 14});
+        }
+        for (int i = 1; i <= CATALOGUE_BOOKS; i++) {
+            String title = WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " " + i;
+            books.add(new Object[]{CLIENTS + i, "CATALOGUE-" + i, title, 21});
+        }
+        jdbc.batchUpdate("INSERT INTO details (id, email, name, birth_date, email_key, name_key) VALUES (?1, ?2, ?3, ?4, LOWER(?2), LOWER(?3))", details);
+        jdbc.batchUpdate("INSERT INTO app_users (id, username, password, reg_date, details_id, active_loan_count, overdue_loan_count, version) VALUES (?, ?, ?, ?, ?, 0, 0, 0)", users);
+        jdbc.batchUpdate("INSERT INTO book (id, isbn, title, max_loan_days, available, version) VALUES (?, ?, ?, ?, true, 0)", books);
+        context.getBean(CatalogSearchIndex.class).rebuild();
+    }
+
+    private static Result run(int port, IntFunction<Client> clientFactory) throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long start = System.nanoTime();
+        long measureFrom = start + WARM_UP.toNanos();
+        long end = measureFrom + MEASUREMENT.toNanos();
+        AtomicLong errors = new AtomicLong();
+
+        List<Future<long[]>> latencies = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 1; i <= CLIENTS; i++) {
+                Client client = clientFactory.apply(i);
+                latencies.add(clients.submit(() -> {
+                    LatencyLog log = new LatencyLog();
+                    for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                        try {
+                            client.request(http);
+                            if (now >= measureFrom) {
+                                log.add(System.nanoTime() - now);
+                            }
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return log.toArray();
+                }));
+                // Spread the connects over the warm-up instead of hitting the accept queue all at once.
+                Thread.sleep(Duration.ofNanos(WARM_UP.toNanos() / 2 / CLIENTS));
+            }
+        }
+
+        List<long[]> all = new ArrayList<>();
+        for (Future<long[]> future : latencies) {
+            all.add(future.get());
+        }
+        long[] sorted = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(sorted, errors.get());
+    }
+
+    private static Client catalogueClient(int port, int client) {
+        URI search = URI.create("http://localhost:" + port + "/api/books/search?limit=20&q=" + WORDS[client % WORDS.length]);
+        int[] request = {0};
+        return http -> {
+            URI uri = request[0] % 2 == 0
+                    ? search
+                    : URI.create("http://localhost:" + port + "/api/books/" + (CLIENTS + 1 + (client * 31 + request[0]) % CATALOGUE_BOOKS));
+            request[0]++;
+            expect(http.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString()), 200);
+        };
+    }
+
+    // Checks out its own book and returns it again, so clients never compete for a book.
+    private static Client loanClient(int port, int client) {
+        URI loans = URI.create("http://localhost:" + port + "/api/loans");
+        String checkout = "{\"borrowerId\": %d, \"bookId\": %d}".formatted(client, client);
+        String[] openLoan = {null};
+        return http -> {
+            if (openLoan[0] == null) {
+                HttpResponse<String> created = expect(http.send(HttpRequest.newBuilder(loans)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(checkout))
+                        .build(), HttpResponse.BodyHandlers.ofString()), 201);
+                Matcher id = LOAN_ID.matcher(created.body());
+                openLoan[0] = id.find() ? id.group(1) : null;
+            } else {
+                String loanId = openLoan[0];
+                openLoan[0] = null;
+                expect(http.send(HttpRequest.newBuilder(URI.create(loans + "/" + loanId + "/return"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(), HttpResponse.BodyHandlers.discarding()), 204);
+            }
+        };
+    }
+
+    private static <T> HttpResponse<T> expect(HttpResponse<T> response, int status) {
+        if (response.statusCode() != status) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " from " + response.uri());
+        }
+        return response;
+    }
+
+    private static void print(String threads, String scenario, Result result) {
+        System.out.printf(Locale.ROOT, "%-9s %-10s %10.0f %9.1f %9.1f %9.1f %7d%n", threads, scenario,
+                result.latencies.length / (double) MEASUREMENT.toSeconds(),
+                result.percentileMillis(0.50), result.percentileMillis(0.99), result.percentileMillis(1.0), result.errors);
+    }
+
+    @FunctionalInterface
+    private interface Client {
+        void request(HttpClient http) throws Exception;
+    }
+
+    private record Result(long[] latencies, long errors) {
+
+        double percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(percentile * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+
+    private static final class LatencyLog {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Stands in for the network round trip to MySQL: every statement execution sleeps first.
+     */
+    private static final class JdbcLatency implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (JDBC_LATENCY_MILLIS <= 0 || !(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                return result instanceof Connection connection ? proxy(Connection.class, connection, JdbcLatency::connection) : result;
+            });
+        }
+
+        private static Object connection(Object target, Method method, Object[] args) throws Throwable {
+            Object result = invoke(target, method, args);
+            return result instanceof Statement statement ? proxy(statementType(statement), statement, JdbcLatency::statement) : result;
+        }
+
+        private static Object statement(Object target, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute")) {
+                Thread.sleep(JDBC_LATENCY_MILLIS);
+            }
+            return invoke(target, method, args);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Class<T> statementType(Statement statement) {
+            if (statement instanceof CallableStatement) {
+                return (Class<T>) CallableStatement.class;
+            }
+            return (Class<T>) (statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class);
+        }
+
+        private static <T> T proxy(Class<T> type, Object target, TargetHandler handler) {
+            InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @FunctionalInterface
+        private interface TargetHandler {
+            Object invoke(Object target, Method method, Object[] args) throws Throwable;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Load on a deliberately small pool: more concurrent requests than connections.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.hikari.maximum-pool-size=" + ConnectionPoolTest.POOL_SIZE,
+        "spring.datasource.hikari.minimum-idle=" + ConnectionPoolTest.POOL_SIZE,
+        "spring.datasource.hikari.connection-timeout=500"})
+@ActiveProfiles("test")
+class ConnectionPoolTest {
+
+    static final int POOL_SIZE = 4;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Requests beyond the pool size wait for a free connection and are all served.")
+    void pool_shouldQueueRequestsBeyondItsSize() throws Exception {
+
+        // Arrange: Four times as many concurrent requests as connections, each holding one for 50 ms.
+        int requests = POOL_SIZE * 4;
+        ExecutorService clients = Executors.newFixedThreadPool(requests);
+        Timer acquire = meterRegistry.get("hikaricp.connections.acquire").tag("pool", "library").timer();
+        long acquiredBefore = acquire.count();
+
+        // Act: Run them all at once.
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            results.add(clients.submit(() -> {
+                query(50);
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        clients.shutdown();
+
+        // Assert: Every request got a connection; the later ones had to wait for one.
+        assertThat(acquire.count() - acquiredBefore).isEqualTo(requests);
+        assertThat(acquire.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+    }
+
+    @Test
+    @DisplayName("When the pool stays exhausted past connection-timeout, requests fail fast and are counted.")
+    void pool_shouldFailFastWhenExhausted() throws Exception {
+
+        // Arrange: Hold every connection of the pool.
+        List<Connection> held = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            held.add(dataSource.getConnection());
+        }
+        double timeoutsBefore = meterRegistry.get("hikaricp.connections.timeout").tag("pool", "library").counter().count();
+
+        try {
+            // Act & Assert: The next request gives up after the connection timeout.
+            long start = System.nanoTime();
+            assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertThat(waitedMillis).isBetween(450L, 3_000L);
+            assertThat(meterRegistry.get("hikaricp.connections.active").tag("pool", "library").gauge().value()).isEqualTo(POOL_SIZE);
+            assertThat(meterRegistry.get("hikaricp.connections.timeout").tag("pool", "library").counter().count())
+                    .isEqualTo(timeoutsBefore + 1);
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+
+        // Assert: The pool recovers as soon as connections are returned.
+        query(0);
+    }
+
+    private void query(long holdMillis) throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SELECT 1");
+            Thread.sleep(holdMillis);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.service.LoanService;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Two H2 databases stand in for the primary and the replica. Nothing replicates between them:
+// replicate() copies the primary over, so anything written since is visibly missing on the replica.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "library.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "library.datasource.replica.username=sa",
+        "library.datasource.replica.password=",
+        "library.datasource.replica.driver-class-name=org.h2.Driver",
+        "library.datasource.replica.hikari.maximum-pool-size=4",
+        "library.datasource.replica.hikari.minimum-idle=1",
+        // replicate() writes through the replica pool
+        "library.datasource.replica.hikari.read-only=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadReplicaRoutingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    private AppUser user;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        user = appUserRepository.save(AppUser.builder()
+                .username("replica-reader")
+                .password(TestPasswords.HASH)
+                .regDate(LocalDate.of(2024, 1, 1))
+                .userDetails(new Details("replica-reader@example.com", "Replica Reader", LocalDate.of(1990, 1, 1)))
+                .build());
+        book = bookRepository.save(Book.builder().isbn("REPLICA-1").title("Replicated Dune").maxLoanDays(14).build());
+
+        replicate();
+        // The writes above would keep this thread on the primary.
+        readYourWrites.clear();
+    }
+
+    @Test
+    @DisplayName("Read-only finders are served by the replica, writes go to the primary.")
+    void readOnlyFinders_shouldUseReplica() {
+
+        // Arrange: A book the replica has not received yet.
+        bookRepository.save(Book.builder().isbn("REPLICA-2").title("Unreplicated Dune").maxLoanDays(14).build());
+        readYourWrites.clear();
+
+        // Act
+        List<Book> beforeReplication = bookRepository.findByTitleContainingIgnoreCase("Dune");
+        replicate();
+        List<Book> afterReplication = bookRepository.findByTitleContainingIgnoreCase("Dune");
+
+        // Assert
+        assertThat(new JdbcTemplate(primaryDataSource).queryForObject("SELECT COUNT(*) FROM book", Long.class)).isEqualTo(2);
+        assertThat(beforeReplication).extracting(Book::getTitle).containsExactly("Replicated Dune");
+        assertThat(afterReplication).extracting(Book::getTitle).containsExactlyInAnyOrder("Replicated Dune", "Unreplicated Dune");
+    }
+
+    @Test
+    @DisplayName("Reads inside a read-write transaction use the primary.")
+    void readWriteTransaction_shouldReadFromPrimary() {
+
+        // Arrange
+        bookRepository.save(Book.builder().isbn("REPLICA-2").title("Unreplicated Dune").maxLoanDays(14).build());
+        readYourWrites.clear();
+
+        // Act
+        List<Book> books = new TransactionTemplate(transactionManager)
+                .execute(status -> bookRepository.findByTitleContainingIgnoreCase("Dune"));
+
+        // Assert
+        assertThat(books).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("After a checkout, the same thread reads its loan from the primary until the window ends.")
+    void checkout_shouldReadOwnWritesOnSameThread() {
+
+        // Act
+        loanService.checkout(user.getId(), book.getId(), LocalDate.of(2024, 3, 1));
+        List<?> stickyRead = bookLoanRepository.findByLoanDateBetween(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31));
+        readYourWrites.clear();
+        List<?> replicaRead = bookLoanRepository.findByLoanDateBetween(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31));
+
+        // Assert
+        assertThat(stickyRead).hasSize(1);
+        assertThat(replicaRead).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A client that checked out a book sees the loan in its next request; other clients see the replica.")
+    void checkout_shouldReadOwnWritesAcrossRequests() throws Exception {
+
+        // Act: The checkout response carries the read-your-writes cookie.
+        Cookie primaryUntil = mockMvc.perform(post("/api/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"borrowerId\": %d, \"bookId\": %d}".formatted(user.getId(), book.getId())))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE_NAME))
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+
+        // Assert: With the cookie the loan is read from the primary, without it from the lagging replica.
+        mockMvc.perform(get("/api/users/{id}/loans", user.getId()).cookie(primaryUntil))
+                .andExpect(jsonPath("$.content[*].bookTitle", contains("Replicated Dune")));
+        mockMvc.perform(get("/api/users/{id}/loans", user.getId()))
+                .andExpect(jsonPath("$.content", empty()));
+
+        // Assert: Once replicated, everyone sees it.
+        replicate();
+        mockMvc.perform(get("/api/users/{id}/loans", user.getId()))
+                .andExpect(jsonPath("$.content[*].bookTitle", contains("Replicated Dune")));
+    }
+
+    @Test
+    @DisplayName("A cookie that asks for the primary beyond one window is ignored.")
+    void forgedCookie_shouldNotPinClientToPrimary() throws Exception {
+
+        // Arrange: A loan on the primary only, and a cookie asking for the primary for a year.
+        loanService.checkout(user.getId(), book.getId(), LocalDate.of(2024, 3, 1));
+        Cookie forged = new Cookie(ReadYourWritesFilter.COOKIE_NAME,
+                Long.toString(Instant.now().plus(Duration.ofDays(365)).toEpochMilli()));
+
+        // Act & Assert: The client reads from the replica like everyone else.
+        mockMvc.perform(get("/api/users/{id}/loans", user.getId()).cookie(forged))
+                .andExpect(jsonPath("$.content", empty()));
+    }
+
+    @Test
+    @DisplayName("Entities read from the lagging replica are not put into the second-level cache.")
+    void replicaReads_shouldNotFillSecondLevelCache() {
+
+        // Arrange: The book goes out on loan on the primary; the replica still has it available.
+        loanService.checkout(user.getId(), book.getId(), LocalDate.of(2024, 3, 1));
+        entityManagerFactory.getCache().evictAll();
+        readYourWrites.clear();
+
+        // Act: By id and by natural id.
+        Book fromReplica = bookRepository.findById(book.getId()).orElseThrow();
+        Book byIsbnFromReplica = bookRepository.findByIsbnIgnoreCase("REPLICA-1").orElseThrow();
+        TransactionTemplate primary = new TransactionTemplate(transactionManager);
+        Book fromPrimary = primary.execute(status -> bookRepository.findById(book.getId()).orElseThrow());
+        Book byIsbnFromPrimary = primary.execute(status -> bookRepository.findByIsbnIgnoreCase("REPLICA-1").orElseThrow());
+
+        // Assert: The primary's transactions (the next checkout) still see the loan, not the replica's copy.
+        assertThat(fromReplica.isAvailable()).isTrue();
+        assertThat(byIsbnFromReplica.isAvailable()).isTrue();
+        assertThat(fromPrimary.isAvailable()).isFalse();
+        assertThat(byIsbnFromPrimary.isAvailable()).isFalse();
+    }
+
+    private void replicate() {
+        List<String> script = new JdbcTemplate(primaryDataSource).queryForList("SCRIPT", String.class);
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("DROP ALL OBJECTS");
+        script.forEach(replica::execute);
+    }
+}
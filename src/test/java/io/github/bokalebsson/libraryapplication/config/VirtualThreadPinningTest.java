@@ -0,0 +1,175 @@
+package io.github.bokalebsson.libraryapplication.config;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.search.CatalogSearchIndex;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Drives the loan and catalogue endpoints from virtual threads while JFR records every time one of
+// them blocks its carrier thread. Not transactional: each request commits on its own.
+@SpringBootTest(properties = "spring.threads.virtual.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VirtualThreadPinningTest {
+
+    private static final int CLIENTS = 50;
+    private static final int WARM_UP_CLIENTS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private CatalogSearchIndex catalogSearchIndex;
+
+    private final List<AppUser> users = new ArrayList<>();
+    private final List<Book> books = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        for (int i = 0; i < CLIENTS + WARM_UP_CLIENTS; i++) {
+            users.add(appUserRepository.save(AppUser.builder()
+                    .username("virtual" + i)
+                    .password(TestPasswords.HASH)
+                    .regDate(LocalDate.now())
+                    .userDetails(new Details("virtual" + i + "@example.com", "Virtual " + i, LocalDate.of(1990, 1, 1)))
+                    .build()));
+            books.add(bookRepository.save(Book.builder().isbn("VIRTUAL-" + i).title("Virtual Book " + i).maxLoanDays(14).build()));
+        }
+        catalogSearchIndex.rebuild();
+    }
+
+    @Test
+    @DisplayName("Loan and catalogue requests on virtual threads never pin or block their carrier thread.")
+    void requests_shouldNotPinCarrierThreads() throws Exception {
+
+        // Arrange: A few clients first, so classes are loaded (under a monitor) before recording starts.
+        runClients(CLIENTS, CLIENTS + WARM_UP_CLIENTS);
+
+        // Arrange: Record pinned parks, and monitor waits on virtual threads.
+        List<String> pinned = new CopyOnWriteArrayList<>();
+        List<String> monitorWaits = new CopyOnWriteArrayList<>();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.enable("jdk.JavaMonitorEnter").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", event -> pinned.add(stackOf(event)));
+            recording.onEvent("jdk.JavaMonitorEnter", event -> {
+                if (event.getThread() != null && event.getThread().isVirtual() && !insideLibraryMonitor(event)) {
+                    monitorWaits.add(stackOf(event));
+                }
+            });
+            recording.startAsync();
+
+            // Act: Every client checks out a book, browses and searches the catalogue and lists its loans.
+            runClients(0, CLIENTS);
+
+            // Flush the events recorded so far to the stream before it closes.
+            recording.stop();
+        }
+
+        // Assert: Nothing pinned, and no virtual thread had to wait for a monitor.
+        assertThat(pinned).isEmpty();
+        assertThat(monitorWaits).isEmpty();
+    }
+
+    private void runClients(int from, int to) throws Exception {
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                AppUser user = users.get(i);
+                Book book = books.get(i);
+                results.add(clients.submit(() -> {
+                    mockMvc.perform(post("/api/loans").contentType(MediaType.APPLICATION_JSON)
+                                    .content("{\"borrowerId\": %d, \"bookId\": %d}".formatted(user.getId(), book.getId())))
+                            .andExpect(status().isCreated());
+                    mockMvc.perform(get("/api/books").param("title", "virtual")).andExpect(status().isOk());
+                    mockMvc.perform(get("/api/books/search").param("q", book.getTitle())).andExpect(status().isOk());
+                    mockMvc.perform(get("/api/users/{id}/loans", user.getId())).andExpect(status().isOk());
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    // Monitors in libraries, which concurrent requests now and then wait for. The embedded test
+    // database locks its tables with them (production runs on MySQL, whose driver uses locks), and
+    // HdrHistogram resizes the pool's connection-acquire percentile histogram under one
+    // (DoubleHistogram.autoAdjustRangeForValueSlowPath). ConcurrentHashMap locks a single bin while
+    // it adds to it, which Spring's caches (e.g. of parsed expressions) do on any request. None of
+    // these is ours to change.
+    private static boolean insideLibraryMonitor(RecordedEvent event) {
+        if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) {
+            return false;
+        }
+        String type = event.getStackTrace().getFrames().get(0).getMethod().getType().getName();
+        return type.startsWith("org.h2.") || type.startsWith("org.HdrHistogram.")
+                || type.equals("java.util.concurrent.ConcurrentHashMap");
+    }
+
+    private static String stackOf(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .map(RecordedFrame::getMethod)
+                .map(method -> method.getType().getName() + "." + method.getName())
+                .collect(Collectors.joining("\n  ", "\n  ", ""));
+    }
+
+}
@@ -0,0 +1,165 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    private Book hobbit;
+    private Author tolkien;
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+
+        hobbit = Book.builder().isbn("API-1").title("The Hobbit").maxLoanDays(21).build();
+        Book silmarillion = Book.builder().isbn("API-2").title("The Silmarillion").maxLoanDays(21).build();
+        Book dune = Book.builder().isbn("API-3").title("Dune").maxLoanDays(14).build();
+        bookRepository.saveAll(List.of(hobbit, silmarillion, dune));
+
+        tolkien = Author.builder().firstName("John").lastName("Tolkien").build();
+        tolkien.addBook(hobbit);
+        tolkien.addBook(silmarillion);
+        authorRepository.save(tolkien);
+    }
+
+    @Test
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 0, maxCollectionFetches = 0)
+    @DisplayName("Books are listed as paged projections, one select plus one count.")
+    void list_shouldReturnPagedViews() throws Exception {
+
+        // Act & Assert: Page metadata next to the content, and only the fields of BookView.
+        mockMvc.perform(get("/api/books").param("size", "2").param("sort", "title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].title", contains("Dune", "The Hobbit")))
+                .andExpect(jsonPath("$.content[0].isbn").value("API-3"))
+                .andExpect(jsonPath("$.content[0].authors").doesNotExist())
+                .andExpect(jsonPath("$.content[0].version").doesNotExist())
+                .andExpect(jsonPath("$.page.size").value(2))
+                .andExpect(jsonPath("$.page.totalElements").value(3))
+                .andExpect(jsonPath("$.page.totalPages").value(2));
+    }
+
+    @Test
+    @DisplayName("Books can be filtered by title and listed per author, and authors per book.")
+    void list_shouldFilterByTitleAndAuthor() throws Exception {
+
+        // Act & Assert
+        mockMvc.perform(get("/api/books").param("title", "silm"))
+                .andExpect(jsonPath("$.content[*].isbn", contains("API-2")));
+        mockMvc.perform(get("/api/authors/{id}/books", tolkien.getId()))
+                .andExpect(jsonPath("$.content[*].isbn", contains("API-1", "API-2")));
+        mockMvc.perform(get("/api/books/{id}/authors", hobbit.getId()))
+                .andExpect(jsonPath("$.content[*].lastName", contains("Tolkien")));
+    }
+
+    @Test
+    @DisplayName("A single book is returned by id, an unknown id gives 404.")
+    void get_shouldReturnBookOrNotFound() throws Exception {
+
+        // Act & Assert
+        mockMvc.perform(get("/api/books/{id}", hobbit.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("The Hobbit"))
+                .andExpect(jsonPath("$.available").value(true));
+        mockMvc.perform(get("/api/books/{id}", -1))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("A conditional GET with the current ETag gets 304 Not Modified, after a change 200 again.")
+    void get_shouldSupportConditionalRequests() throws Exception {
+
+        // Arrange: Fetch the book once to learn its ETag.
+        String etag = mockMvc.perform(get("/api/books/{id}", hobbit.getId()))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Act & Assert: Unchanged, the client keeps its copy.
+        mockMvc.perform(get("/api/books/{id}", hobbit.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // Act & Assert: Once the book changes, the old ETag no longer matches.
+        hobbit.setTitle("The Hobbit, or There and Back Again");
+        bookRepository.save(hobbit);
+        mockMvc.perform(get("/api/books/{id}", hobbit.getId()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("The Hobbit, or There and Back Again"));
+    }
+
+    @Test
+    @DisplayName("Search and suggestions return at most 100 books; a limit below 1 is a bad request.")
+    void search_shouldCapLimit() throws Exception {
+
+        // Arrange: More matching books than the cap.
+        bookRepository.saveAll(IntStream.range(0, 110)
+                .mapToObj(i -> Book.builder().isbn("CAPPED-" + i).title("Capped " + i).maxLoanDays(14).build())
+                .toList());
+
+        // Act & Assert
+        mockMvc.perform(get("/api/books/search").param("q", "capped").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(100)));
+        mockMvc.perform(get("/api/books/suggest").param("q", "capped").param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(100)));
+        mockMvc.perform(get("/api/books/search").param("q", "capped").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Sorting by a property the resource doesn't have is a bad request.")
+    void list_shouldRejectUnknownSortProperty() throws Exception {
+
+        // Act & Assert
+        mockMvc.perform(get("/api/books").param("sort", "password"))
+                .andExpect(status().isBadRequest());
+    }
+
+}
@@ -0,0 +1,145 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.endsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Not transactional: checkouts and returns commit in their own transactions.
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookLoanControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    private AppUser user;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        user = appUserRepository.save(AppUser.builder()
+                .username("reader")
+                .password(TestPasswords.HASH)
+                .regDate(LocalDate.of(2024, 1, 1))
+                .userDetails(new Details("reader@example.com", "Reader", LocalDate.of(1990, 1, 1)))
+                .build());
+        book = bookRepository.save(Book.builder().isbn("LOAN-API-1").title("Dune").maxLoanDays(14).build());
+    }
+
+    @Test
+    @DisplayName("Checkout creates a loan, the book becomes unavailable and the loan shows up for the user.")
+    void checkout_shouldCreateLoan() throws Exception {
+
+        // Act & Assert: The new loan is returned with its location.
+        mockMvc.perform(post("/api/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"borrowerId\": %d, \"bookId\": %d}".formatted(user.getId(), book.getId())))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", endsWith("/api/loans/" + bookLoanRepository.findAll().get(0).getId())))
+                .andExpect(jsonPath("$.bookTitle").value("Dune"))
+                .andExpect(jsonPath("$.borrowerUsername").value("reader"))
+                .andExpect(jsonPath("$.returned").value(false));
+
+        // Assert: Book and user reflect the loan.
+        mockMvc.perform(get("/api/books/{id}", book.getId()))
+                .andExpect(jsonPath("$.available").value(false));
+        mockMvc.perform(get("/api/users/{id}/loans", user.getId()))
+                .andExpect(jsonPath("$.content[*].bookTitle", contains("Dune")));
+        mockMvc.perform(get("/api/loans"))
+                .andExpect(jsonPath("$.page.totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Checking out an unavailable book is a conflict, an unknown book a bad request.")
+    void checkout_shouldMapServiceErrors() throws Exception {
+
+        // Arrange: The book is already on loan.
+        String body = "{\"borrowerId\": %d, \"bookId\": %d}".formatted(user.getId(), book.getId());
+        mockMvc.perform(post("/api/loans").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isCreated());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/loans").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.detail").value("Book is not available for loan: Dune"));
+        mockMvc.perform(post("/api/loans").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"borrowerId\": %d, \"bookId\": -1}".formatted(user.getId())))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("A loan can be returned once; returning it again is a conflict.")
+    void returnLoan_shouldReturnOpenLoanOnce() throws Exception {
+
+        // Arrange
+        mockMvc.perform(post("/api/loans").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"borrowerId\": %d, \"bookId\": %d}".formatted(user.getId(), book.getId())));
+        int loanId = bookLoanRepository.findAll().get(0).getId();
+
+        // Act & Assert
+        mockMvc.perform(post("/api/loans/{id}/return", loanId))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(post("/api/loans/{id}/return", loanId))
+                .andExpect(status().isConflict());
+        mockMvc.perform(get("/api/loans/{id}", loanId))
+                .andExpect(jsonPath("$.returned").value(true));
+    }
+
+    @Test
+    @DisplayName("Users are shown with their details and without the password.")
+    void getUser_shouldNotExposePassword() throws Exception {
+
+        // Act & Assert
+        mockMvc.perform(get("/api/users/{id}", user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value("reader"))
+                .andExpect(jsonPath("$.email").value("reader@example.com"))
+                .andExpect(jsonPath("$.password").doesNotExist());
+    }
+
+}
@@ -0,0 +1,34 @@
+package io.github.bokalebsson.libraryapplication.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LoanStatisticsControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @DisplayName("A period that ends before it starts is a bad request on every report.")
+    void reports_shouldRejectInvertedPeriod() throws Exception {
+
+        // Act & Assert
+        for (String report : new String[]{"summary", "cohorts", "top-books"}) {
+            mockMvc.perform(get("/api/statistics/loans/" + report).param("from", "2024-03-31").param("to", "2024-03-01"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get("/api/statistics/loans/" + report).param("from", "2024-03-01").param("to", "2024-03-01"))
+                    .andExpect(status().isOk());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.bokalebsson.libraryapplication.entity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsbnTest {
+
+    @Test
+    @DisplayName("Valid ISBNs are stored as compact ISBN-13.")
+    void normalize_shouldCanonicalizeValidIsbns() {
+
+        // Act & Assert: Hyphens and spaces go, ISBN-10s become ISBN-13s.
+        assertThat(Isbn.normalize("978-0-306-40615-7")).isEqualTo("9780306406157");
+        assertThat(Isbn.normalize(" 0 306 40615 2 ")).isEqualTo("9780306406157");
+        assertThat(Isbn.normalize("0-8044-2957-x")).isEqualTo("9780804429573");
+    }
+
+    @Test
+    @DisplayName("Other identifiers are only trimmed and upper-cased.")
+    void normalize_shouldKeepInvalidIsbnsReadable() {
+
+        // Act & Assert: A wrong check digit is not silently "fixed".
+        assertThat(Isbn.normalize("978-0-306-40615-8")).isEqualTo("978-0-306-40615-8");
+        assertThat(Isbn.normalize(" 123-abc ")).isEqualTo("123-ABC");
+        assertThat(Isbn.normalize(null)).isNull();
+    }
+
+    @Test
+    @DisplayName("Normalizing twice gives the same result.")
+    void normalize_shouldBeIdempotent() {
+
+        // Act & Assert
+        for (String isbn : new String[]{"0-306-40615-2", "123-abc", "9780306406157"}) {
+            assertThat(Isbn.normalize(Isbn.normalize(isbn))).isEqualTo(Isbn.normalize(isbn));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package io.github.bokalebsson.libraryapplication.outbox;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.entity.LoanEvent;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanDailyStatsRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanEventRepository;
+import io.github.bokalebsson.libraryapplication.service.LoanService;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Not transactional: the dispatcher only sees events that were committed. Batches of two, no
+// back-off, so a test can retry right after a failure, and the outbox is counted on every run.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "library.outbox.batch-size=2",
+        "library.outbox.max-batches-per-run=10",
+        "library.outbox.initial-backoff=0s",
+        "library.outbox.pending-count-interval=0s"})
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanEventDispatcherTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private LoanEventDispatcher dispatcher;
+
+    @Autowired
+    private InMemoryLoanEventSink sink;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanEventRepository loanEventRepository;
+
+    @Autowired
+    private LoanDailyStatsRepository loanDailyStatsRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private AppUser borrower;
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+
+        loanEventRepository.deleteAllInBatch();
+        loanDailyStatsRepository.deleteAllInBatch();
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+        sink.clear();
+        sink.setAvailable(true);
+
+        books = bookRepository.saveAll(List.of(
+                Book.builder().isbn("OUTBOX-0").title("First").maxLoanDays(14).build(),
+                Book.builder().isbn("OUTBOX-1").title("Second").maxLoanDays(14).build(),
+                Book.builder().isbn("OUTBOX-2").title("Third").maxLoanDays(14).build()));
+        borrower = appUserRepository.save(AppUser.builder()
+                .username("reader")
+                .password(TestPasswords.HASH)
+                .regDate(TODAY)
+                .userDetails(new Details("reader@test.nu", "reader", LocalDate.of(1990, 1, 1)))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.setAvailable(true);
+    }
+
+    @Test
+    @DisplayName("Checkouts and returns write their events to the outbox, in the same transaction.")
+    void loanService_shouldWriteEventsToOutbox() {
+
+        // Act
+        BookLoan loan = loanService.checkout(borrower.getId(), books.get(0).getId(), TODAY);
+        loanService.returnLoans(List.of(loan.getId()));
+
+        // Assert: Nothing is delivered until the dispatcher runs.
+        assertThat(loanEventRepository.findAll())
+                .extracting(LoanEvent::getType, LoanEvent::getLoanId, LoanEvent::getBookId, LoanEvent::getBorrowerId)
+                .containsExactly(
+                        tuple(LoanEvent.Type.CHECKED_OUT, loan.getId(), books.get(0).getId(), borrower.getId()),
+                        tuple(LoanEvent.Type.RETURNED, loan.getId(), books.get(0).getId(), borrower.getId()));
+        assertThat(sink.events()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A failed checkout leaves no event behind.")
+    void checkout_shouldNotWriteEventWhenRolledBack() {
+
+        // Arrange
+        loanService.checkout(borrower.getId(), books.get(0).getId(), TODAY);
+
+        // Act & Assert: The book is already out.
+        assertThatThrownBy(() -> loanService.checkout(borrower.getId(), books.get(0).getId(), TODAY))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(loanEventRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("The dispatcher delivers the events oldest first, batch by batch, and empties the outbox.")
+    void dispatch_shouldDeliverOldestFirstAndEmptyOutbox() {
+
+        // Arrange: Five events, three batches of two.
+        List<BookLoan> loans = books.stream()
+                .map(book -> loanService.checkout(borrower.getId(), book.getId(), TODAY))
+                .toList();
+        loanService.returnLoans(List.of(loans.get(0).getId(), loans.get(1).getId()));
+        List<Integer> ids = loanEventRepository.findAll().stream().map(LoanEvent::getId).sorted().toList();
+        double published = meterRegistry.get("library.outbox.published").counter().count();
+        long batches = meterRegistry.get("library.outbox.batch").timer().count();
+
+        // Act
+        int delivered = dispatcher.dispatch();
+
+        // Assert
+        assertThat(delivered).isEqualTo(5);
+        assertThat(sink.events()).extracting(LoanEvent::getId).containsExactlyElementsOf(ids);
+        assertThat(loanEventRepository.count()).isZero();
+        assertThat(meterRegistry.get("library.outbox.published").counter().count()).isEqualTo(published + 5);
+        assertThat(meterRegistry.get("library.outbox.batch").timer().count()).isEqualTo(batches + 3);
+        assertThat(meterRegistry.get("library.outbox.pending").gauge().value()).isZero();
+        assertThat(meterRegistry.get("library.outbox.lag").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("Events the sink rejects stay in the outbox and are delivered once it is back.")
+    void dispatch_shouldKeepEventsWhileSinkIsDown() {
+
+        // Arrange
+        loanService.checkout(borrower.getId(), books.get(0).getId(), TODAY);
+        loanService.checkout(borrower.getId(), books.get(1).getId(), TODAY);
+        double failures = meterRegistry.get("library.outbox.failures").counter().count();
+        sink.setAvailable(false);
+
+        // Act
+        int deliveredWhileDown = dispatcher.dispatch();
+        sink.setAvailable(true);
+        int deliveredAfterwards = dispatcher.dispatch();
+
+        // Assert
+        assertThat(deliveredWhileDown).isZero();
+        assertThat(meterRegistry.get("library.outbox.failures").counter().count()).isEqualTo(failures + 1);
+        assertThat(deliveredAfterwards).isEqualTo(2);
+        assertThat(sink.events()).hasSize(2);
+        assertThat(loanEventRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("The backlog gauges show how many events wait to be delivered.")
+    void dispatch_shouldReportBacklogWhileSinkIsDown() {
+
+        // Arrange
+        loanService.checkout(borrower.getId(), books.get(0).getId(), TODAY);
+        loanService.checkout(borrower.getId(), books.get(1).getId(), TODAY);
+        loanService.checkout(borrower.getId(), books.get(2).getId(), TODAY);
+        sink.setAvailable(false);
+
+        // Act
+        dispatcher.dispatch();
+
+        // Assert
+        assertThat(meterRegistry.get("library.outbox.pending").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("library.outbox.lag").gauge().value()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("With dispatching off, polling still reports the backlog and delivers nothing.")
+    void poll_shouldReportBacklogWhenDispatchIsOff() {
+
+        // Arrange
+        loanService.checkout(borrower.getId(), books.get(0).getId(), TODAY);
+        loanService.checkout(borrower.getId(), books.get(1).getId(), TODAY);
+
+        // Act
+        dispatcher.poll();
+
+        // Assert
+        assertThat(meterRegistry.get("library.outbox.pending").gauge().value()).isEqualTo(2);
+        assertThat(sink.events()).isEmpty();
+        assertThat(loanEventRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Dispatching can't be switched on without a sink to deliver to.")
+    void dispatcher_shouldRequireSinkWhenEnabled() {
+
+        // Arrange
+        ObjectProvider<LoanEventSink> noSink = new StaticListableBeanFactory().getBeanProvider(LoanEventSink.class);
+
+        // Act & Assert
+        assertThatThrownBy(() -> new LoanEventDispatcher(loanEventRepository, noSink, true, null, meterRegistry))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("library.outbox.sink");
+    }
+}
@@ -4,11 +4,16 @@ import io.github.bokalebsson.libraryapplication.entity.AppUser;
 import io.github.bokalebsson.libraryapplication.entity.Book;
 import io.github.bokalebsson.libraryapplication.entity.BookLoan;
 import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.entity.LoanPolicy;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
@@ -25,6 +30,15 @@ public class AppUserRepositoryTest {
     @Autowired
     private AppUserRepository appUserRepository;
 
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
     private AppUser testAppUser1;
     private AppUser testAppUser2;
 
@@ -47,14 +61,14 @@ public class AppUserRepositoryTest {
 
         testAppUser1 = AppUser.builder()
                 .username("hansluhrberg")
-                .password("123456789")
+                .password(TestPasswords.HASH)
                 .regDate(LocalDate.of(2023, 12, 13))
                 .userDetails(testUserDetails1)
                 .build();
 
         testAppUser2 = AppUser.builder()
                 .username("gregerpettersson")
-                .password("verysecret")
+                .password(TestPasswords.HASH)
                 .regDate(LocalDate.of(2025, 9, 18))
                 .userDetails(testUserDetails2)
                 .build();
@@ -64,6 +78,7 @@ public class AppUserRepositoryTest {
 
     @Test
     @DisplayName("Finds an appUser with the provided username.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByUsername_shouldReturnCorrectAppUser() {
 
         // Arrange: define the username we want to search for.
@@ -80,8 +95,25 @@ public class AppUserRepositoryTest {
                 .isEqualTo(usernameToFind);
     }
 
+    @Test
+    @DisplayName("Finds an appUser by username regardless of case and surrounding whitespace.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void findByUsername_shouldIgnoreCaseAndWhitespace() {
+
+        // Act: search with a differently written username.
+        Optional<AppUser> result = appUserRepository.findByUsername(" HansLuhrberg ");
+
+        // Assert: the stored, lower-cased user is found.
+        assertThat(result)
+                .isPresent()
+                .get()
+                .extracting(AppUser::getUsername)
+                .isEqualTo("hansluhrberg");
+    }
+
     @Test
     @DisplayName("Returns empty Optional when username does not exist")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByUsername_shouldReturnEmptyOptionalWhenNotFound() {
 
         // Arrange: define a username that does not exist.
@@ -97,6 +129,7 @@ public class AppUserRepositoryTest {
 
     @Test
     @DisplayName("Finds all appUsers registered within a given date range.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByRegDateBetween_shouldReturnCorrectUsers() {
 
         // Arrange: define the date range for the search.
@@ -115,6 +148,7 @@ public class AppUserRepositoryTest {
 
     @Test
     @DisplayName("Returns empty list when no users registered in the date range")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByRegDateBetween_shouldReturnEmptyListWhenNoMatch() {
 
         // Arrange: define a date range with no users.
@@ -131,6 +165,7 @@ public class AppUserRepositoryTest {
 
     @Test
     @DisplayName("Finds an appUser by the associated Details ID.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByUserDetailsId_shouldReturnCorrectAppUser() {
 
         // Arrange: get the Details ID of the second test user.
@@ -149,6 +184,7 @@ public class AppUserRepositoryTest {
 
     @Test
     @DisplayName("Returns empty Optional when no user has the given Details ID")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByUserDetailsId_shouldReturnEmptyOptionalWhenNotFound() {
 
         // Arrange: define a Details ID that does not exist.
@@ -164,6 +200,7 @@ public class AppUserRepositoryTest {
 
     @Test
     @DisplayName("Finds an appUser by email, ignoring case.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByUserDetailsEmailIgnoreCase_shouldReturnCorrectAppUser() {
 
         // Arrange: define the email to search for (different case to test ignore case).
@@ -182,6 +219,7 @@ public class AppUserRepositoryTest {
 
     @Test
     @DisplayName("Returns empty Optional when email does not exist, ignoring case")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void findByUserDetailsEmailIgnoreCase_shouldReturnEmptyOptionalWhenNotFound() {
 
         // Arrange: define an email that does not exist.
@@ -210,7 +248,7 @@ public class AppUserRepositoryTest {
 
         AppUser user = new AppUser();
         user.setUsername("alice123");
-        user.setPassword("password");
+        user.setPassword(TestPasswords.HASH);
         user.setRegDate(LocalDate.now());
         user.setUserDetails(details);
 
@@ -220,8 +258,7 @@ public class AppUserRepositoryTest {
         // Act: Add the loan to the user.
         user.addBookLoan(loan);
 
-        // Assert: Verify bidirectional relationship.
-        assertTrue(user.getBookLoans().contains(loan), "User should contain the loan");
+        // Assert: Verify the loan is linked to the user.
         assertEquals(user, loan.getBorrower(), "Loan borrower should be set to user");
 
         // Assert: Verify dueDate is calculated correctly.
@@ -231,6 +268,32 @@ public class AppUserRepositoryTest {
 
         // Assert: Verify book availability.
         assertFalse(book.isAvailable(), "Book should be unavailable after loan");
+        assertEquals(1, user.getActiveLoanCount(), "Active loan count should be incremented");
+    }
+
+    @Test
+    void testAddBookLoan_ThrowsExceptionIfLoanLimitReached() {
+
+        // Arrange: A user who already has two active loans, under a policy of two.
+        LoanPolicy policy = new LoanPolicy(2);
+        AppUser user = new AppUser();
+        user.setUsername("gina123");
+        for (int id = 10; id < 12; id++) {
+            BookLoan loan = new BookLoan();
+            loan.setBook(Book.builder().id(id).title("Book " + id).maxLoanDays(7).available(true).build());
+            user.addBookLoan(loan, policy);
+        }
+
+        Book third = Book.builder().id(12).title("Book 12").maxLoanDays(7).available(true).build();
+        BookLoan loan = new BookLoan();
+        loan.setBook(third);
+
+        // Act & Assert: The third loan is refused and leaves the book and the counter alone.
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> user.addBookLoan(loan, policy));
+        assertEquals("Borrower gina123 already has 2 active loans, the limit is 2", exception.getMessage());
+        assertTrue(third.isAvailable(), "Book should remain available");
+        assertEquals(2, user.getActiveLoanCount(), "Active loan count should be unchanged");
     }
 
     @Test
@@ -248,7 +311,7 @@ public class AppUserRepositoryTest {
 
         AppUser user = new AppUser();
         user.setUsername("bob123");
-        user.setPassword("password");
+        user.setPassword(TestPasswords.HASH);
         user.setRegDate(LocalDate.now());
         user.setUserDetails(details);
 
@@ -269,7 +332,7 @@ public class AppUserRepositoryTest {
 
         AppUser user = new AppUser();
         user.setUsername("dave123");
-        user.setPassword("password");
+        user.setPassword(TestPasswords.HASH);
         user.setRegDate(LocalDate.now());
         user.setUserDetails(details);
 
@@ -295,7 +358,7 @@ public class AppUserRepositoryTest {
 
         AppUser user = new AppUser();
         user.setUsername("eva123");
-        user.setPassword("password");
+        user.setPassword(TestPasswords.HASH);
         user.setRegDate(LocalDate.now());
         user.setUserDetails(details);
 
@@ -329,7 +392,7 @@ public class AppUserRepositoryTest {
 
         AppUser user = new AppUser();
         user.setUsername("carol123");
-        user.setPassword("password");
+        user.setPassword(TestPasswords.HASH);
         user.setRegDate(LocalDate.now());
         user.setUserDetails(details);
 
@@ -341,9 +404,33 @@ public class AppUserRepositoryTest {
         user.removeBookLoan(loan);
 
         // Assert:
-        assertFalse(user.getBookLoans().contains(loan), "User should no longer contain the loan");
         assertNull(loan.getBorrower(), "Loan borrower should be null after removal");
         assertTrue(book.isAvailable(), "Book should be available again after loan removed");
+        assertEquals(0, user.getActiveLoanCount(), "Active loan count should be decremented");
+    }
+
+    @Test
+    @DisplayName("A loan read from the repository, with its borrower as a lazy proxy, is removed from that borrower.")
+    void testRemoveBookLoan_LoanLoadedFromRepository() {
+
+        // Arrange: A saved loan, read back in a fresh persistence context.
+        Book book = bookRepository.save(Book.builder().isbn("PROXY-1").title("Lazy Loading").maxLoanDays(14).build());
+        BookLoan saved = BookLoan.builder().book(book).build();
+        testAppUser1.addBookLoan(saved);
+        bookLoanRepository.save(saved);
+        entityManager.flush();
+        entityManager.clear();
+
+        BookLoan loan = bookLoanRepository.findById(saved.getId()).orElseThrow();
+        assertFalse(Hibernate.isInitialized(loan.getBorrower()), "Borrower should be a lazy proxy");
+
+        // Act: Through the user instance saved earlier, not the proxy.
+        testAppUser1.removeBookLoan(loan);
+
+        // Assert:
+        assertNull(loan.getBorrower(), "Loan borrower should be null after removal");
+        assertTrue(loan.getBook().isAvailable(), "Book should be available again after loan removed");
+        assertEquals(0, testAppUser1.getActiveLoanCount(), "Active loan count should be decremented");
     }
 
     @Test
@@ -361,7 +448,7 @@ public class AppUserRepositoryTest {
 
         AppUser user = new AppUser();
         user.setUsername("frank123");
-        user.setPassword("password");
+        user.setPassword(TestPasswords.HASH);
         user.setRegDate(LocalDate.now());
         user.setUserDetails(details);
 
@@ -371,9 +458,8 @@ public class AppUserRepositoryTest {
         // Act: Remove a loan that was never added.
         user.removeBookLoan(loan);
 
-        // Assert: Nothing crashes and book remains available.
-        assertFalse(user.getBookLoans() != null && user.getBookLoans().contains(loan),
-                "User should not contain the loan");
+        // Assert: Nothing crashes, the counter is untouched and book remains available.
+        assertEquals(0, user.getActiveLoanCount(), "Active loan count should be unchanged");
         assertTrue(book.isAvailable(), "Book should remain available");
     }
 
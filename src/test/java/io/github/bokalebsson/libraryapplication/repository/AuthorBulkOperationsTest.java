@@ -0,0 +1,182 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.search.CatalogSearchIndex;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Merge and delete on a catalogue where duplicate authors share tens of thousands of links.
+ * The data is written with JDBC, so nothing is in the persistence context or the caches
+ * unless a test puts it there.
+ */
+// Not transactional: the search index only follows committed changes.
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(CatalogSearchIndex.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthorBulkOperationsTest {
+
+    private static final int CANONICAL = 1_000_000;
+    private static final int DUPLICATES = 20;
+    private static final int BOOKS = 2_000;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private CatalogSearchIndex catalogSearchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<Integer> duplicateIds;
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+
+        // Arrange: Books 1..BOOKS. The canonical author wrote the first half; each duplicate is
+        // linked to every second book, so duplicates overlap with it and with each other.
+        List<Object[]> books = new ArrayList<>();
+        for (int id = 1; id <= BOOKS; id++) {
+            books.add(new Object[]{CANONICAL + id, "BULK-" + id, "Bulk Book " + id});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO book (id, isbn, title, max_loan_days, available, version) VALUES (?, ?, ?, 14, true, 0)", books);
+
+        duplicateIds = IntStream.rangeClosed(1, DUPLICATES).map(i -> CANONICAL + i).boxed().toList();
+        List<Object[]> authors = new ArrayList<>();
+        authors.add(new Object[]{CANONICAL, UUID.randomUUID(), "Ursula", "Le Guin"});
+        duplicateIds.forEach(id -> authors.add(new Object[]{id, UUID.randomUUID(), "Ursula K.", "Le Guin"}));
+        jdbcTemplate.batchUpdate("INSERT INTO author (id, uuid, first_name, last_name) VALUES (?, ?, ?, ?)", authors);
+
+        List<Object[]> links = new ArrayList<>();
+        for (int book = 1; book <= BOOKS / 2; book++) {
+            links.add(new Object[]{CANONICAL, CANONICAL + book});
+        }
+        for (int duplicate : duplicateIds) {
+            for (int book = duplicate % 2 + 1; book <= BOOKS; book += 2) {
+                links.add(new Object[]{duplicate, CANONICAL + book});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO author_book (author_id, book_id) VALUES (?, ?)", links);
+        assertThat(links).hasSizeGreaterThan(20_000);
+
+        catalogSearchIndex.rebuild();
+    }
+
+    @Test
+    @DisplayName("Merging moves every link to the canonical author once and deletes the duplicates.")
+    @QueryBudget(maxQueries = 4, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void mergeAuthors_shouldRewriteLinksWithSetBasedStatements() {
+
+        // Act: Merge all duplicates, plus the canonical id itself, into the canonical author.
+        List<Integer> toMerge = new ArrayList<>(duplicateIds);
+        toMerge.add(CANONICAL);
+        int merged = authorRepository.mergeAuthors(toMerge, CANONICAL);
+
+        // Assert: Every book is linked to the canonical author exactly once, nothing else is left.
+        assertThat(merged).isEqualTo(DUPLICATES);
+        assertThat(count("SELECT COUNT(*) FROM author_book")).isEqualTo(BOOKS);
+        assertThat(count("SELECT COUNT(DISTINCT book_id) FROM author_book WHERE author_id = " + CANONICAL)).isEqualTo(BOOKS);
+        assertThat(count("SELECT COUNT(*) FROM author")).isEqualTo(1);
+
+        // Assert: The duplicates are gone from the search index, the canonical author is not.
+        assertThat(catalogSearchIndex.authors().searchPrefix("le guin", 100)).containsExactly(CANONICAL);
+    }
+
+    @Test
+    @DisplayName("Deleting authors removes their links, keeps their books and never loads them.")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void deleteAuthors_shouldDeleteLinksWithoutLoadingBooks() {
+
+        // Act: Delete the duplicates.
+        int deleted = authorRepository.deleteAuthors(duplicateIds);
+
+        // Assert: Only the canonical author and its links remain, all books still exist.
+        assertThat(deleted).isEqualTo(DUPLICATES);
+        assertThat(count("SELECT COUNT(*) FROM author_book")).isEqualTo(BOOKS / 2);
+        assertThat(count("SELECT COUNT(*) FROM book")).isEqualTo(BOOKS);
+        assertThat(catalogSearchIndex.authors().searchPrefix("ursula", 100)).containsExactly(CANONICAL);
+    }
+
+    @Test
+    @DisplayName("Merging evicts the cached authors and author/book collections it changed.")
+    void mergeAuthors_shouldEvictCachedCollections() {
+
+        // Arrange: A duplicate, its books and the authors of one of its books are cached.
+        int duplicate = duplicateIds.get(0);
+        int book = CANONICAL + BOOKS;
+        inTransaction(() -> authorRepository.findById(duplicate).orElseThrow().getBooks().size());
+        inTransaction(() -> bookRepository.findById(book).orElseThrow().getAuthors().size());
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        assertThat(cache.containsEntity(Author.class, duplicate)).isTrue();
+        assertThat(cache.containsCollection(Book.class.getName() + ".authors", book)).isTrue();
+
+        // Act: Merge the duplicates.
+        authorRepository.mergeAuthors(duplicateIds, CANONICAL);
+
+        // Assert: The book's authors are read again and show the canonical author only.
+        assertThat(cache.containsEntity(Author.class, duplicate)).isFalse();
+        assertThat(cache.containsCollection(Book.class.getName() + ".authors", book)).isFalse();
+        List<Integer> authorsOfBook = inTransaction(() -> bookRepository.findById(book).orElseThrow()
+                .getAuthors().stream().map(Author::getId).toList());
+        assertThat(authorsOfBook).containsExactly(CANONICAL);
+    }
+
+    @Test
+    @DisplayName("Merging into an unknown author throws and changes nothing.")
+    void mergeAuthors_shouldRejectUnknownCanonicalAuthor() {
+
+        // Act & Assert: The canonical author must exist (IllegalArgumentException, as translated by the repository).
+        assertThrows(InvalidDataAccessApiUsageException.class, () -> authorRepository.mergeAuthors(duplicateIds, 42));
+        assertThat(count("SELECT COUNT(*) FROM author")).isEqualTo(DUPLICATES + 1);
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        return new TransactionTemplate(transactionManager).execute(status -> work.get());
+    }
+}
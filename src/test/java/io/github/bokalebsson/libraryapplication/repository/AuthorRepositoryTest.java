@@ -2,17 +2,20 @@ package io.github.bokalebsson.libraryapplication.repository;
 
 import io.github.bokalebsson.libraryapplication.entity.Author;
 import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -26,6 +29,9 @@ class AuthorRepositoryTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
     private Author author1;
     private Author author2;
     private Author author3;
@@ -78,6 +84,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find authors by first name.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByFirstName() {
 
         // Act: Retrieve all authors with firstName "John".
@@ -90,6 +97,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find by first name with null, should return empty list.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByFirstNameNull() {
 
         // Act: Search with null firstName.
@@ -101,6 +109,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find by first name with empty string, should return empty list")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByFirstNameEmpty() {
 
         // Act: Search with empty string
@@ -112,6 +121,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find authors by first name ignoring case (edge case).")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByFirstNameIgnoreCase() {
 
         // Act: Retrieve all authors with firstName "john" (lowercase, original is "John").
@@ -124,6 +134,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find authors by last name.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByLastName() {
 
         // Act: Retrieve all authors with lastName "Doe".
@@ -137,6 +148,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find authors by first or last name containing keyword (ignore case).")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByFirstOrLastNameContainingIgnoreCase() {
 
         // Act: Retrieve authors whose firstName or lastName contains "jo" or "smith" (case-insensitive).
@@ -151,6 +163,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find by first or last name containing keyword with no match, should return empty list")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByFirstOrLastNameContainingIgnoreCaseNoneFound() {
 
         // Act: Search with keywords that do not match any author.
@@ -163,6 +176,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find authors by books' ID - single book.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByBooksIdSingleBook() {
 
         // Act: Find authors who have book1.
@@ -175,6 +189,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find authors by books' ID - no match.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByBooksIdNoMatch() {
 
         // Act: Use a non-existing book ID.
@@ -186,6 +201,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Update author name by ID.")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 1, maxCollectionFetches = 0)
     void testUpdateNameById() {
 
         // Act: Update author1's name using updateNameById.
@@ -200,6 +216,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Update author name by ID with invalid ID, should not throw")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 3, maxCollectionFetches = 0)
     void testUpdateNameByIdInvalidId() {
 
         // Act: Try to update a non-existing author.
@@ -213,6 +230,7 @@ class AuthorRepositoryTest {
     @Test
     @Transactional
     @DisplayName("Delete author by ID.")
+    @QueryBudget(maxQueries = 4, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testDeleteById() {
 
         // Arrange: Retrieve the author entity to be deleted so that Hibernate manages it.
@@ -234,6 +252,7 @@ class AuthorRepositoryTest {
     @Test
     @Transactional
     @DisplayName("Delete author by invalid ID should not throw.")
+    @QueryBudget(maxQueries = 3, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testDeleteByIdInvalid() {
 
         // Act: Attempt to delete an author that does not exist.
@@ -247,6 +266,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Add book to author bi-directionally.")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testAddBookToAuthorBiDirectional() {
 
         // Arrange: Create a new book and save.
@@ -259,6 +279,7 @@ class AuthorRepositoryTest {
         // Act: Add book to author using bidirectional method
         author.addBook(newBook);
         authorRepository.save(author);
+        entityManager.flush();
 
         // Assert: Author should contain the new book.
         Author updatedAuthor = authorRepository.findById(author3.getId()).orElseThrow();
@@ -270,6 +291,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Add same book twice to author should not duplicate.")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testAddSameBookTwice() {
 
         // Arrange: Create a new book and save it.
@@ -283,6 +305,7 @@ class AuthorRepositoryTest {
         author.addBook(newBook);
         author.addBook(newBook);
         authorRepository.save(author);
+        entityManager.flush();
 
         // Assert: Author's books set should contain the book only once.
         Author updatedAuthor = authorRepository.findById(author3.getId()).orElseThrow();
@@ -296,6 +319,7 @@ class AuthorRepositoryTest {
     @Test
     @DisplayName("Remove book from author bi-directionally.")
     @Transactional
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testRemoveBookFromAuthorBiDirectional() {
 
         // Arrange: Retrieve author1 and ensure book1 is present.
@@ -305,6 +329,7 @@ class AuthorRepositoryTest {
         // Act: Remove book1.
         author.removeBook(book1);
         authorRepository.save(author);
+        entityManager.flush();
 
         // Assert: Author no longer has book1.
         Author updatedAuthor = authorRepository.findById(author1.getId()).orElseThrow();
@@ -317,6 +342,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Remove non-existing book from author should not throw.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testRemoveNonExistingBook() {
 
         // Arrange: Create a book not associated with author1.
@@ -329,6 +355,7 @@ class AuthorRepositoryTest {
         // Act: Remove the book which author1 does not have.
         author.removeBook(newBook);
         authorRepository.save(author);
+        entityManager.flush();
 
         // Assert: Author's books should remain unchanged (still contains book1).
         Author updatedAuthor = authorRepository.findById(author1.getId()).orElseThrow();
@@ -337,6 +364,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Multiple authors sharing the same book.")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testMultipleAuthorsSameBook() {
 
         // Arrange: Create a new book.
@@ -351,6 +379,7 @@ class AuthorRepositoryTest {
         authorA.addBook(sharedBook);
         authorB.addBook(sharedBook);
         authorRepository.saveAll(List.of(authorA, authorB));
+        entityManager.flush();
 
         // Assert: Both authors should have the shared book.
         Author updatedA = authorRepository.findById(author1.getId()).orElseThrow();
@@ -365,6 +394,7 @@ class AuthorRepositoryTest {
 
     @Test
     @DisplayName("Find authors by books' ID when multiple authors share a book.")
+    @QueryBudget(maxQueries = 3, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByBooksIdMultipleAuthors() {
 
         // Arrange: Create a new book.
@@ -386,7 +416,56 @@ class AuthorRepositoryTest {
                 .containsExactlyInAnyOrder(authorA.getFirstName(), authorB.getFirstName());
     }
 
+    @Test
+    @DisplayName("An author added to a HashSet before persisting is still found after persisting.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void testAuthorSetSemanticsAcrossPersist() {
+
+        // Arrange: Put a transient author (no id yet) into a set.
+        Author newAuthor = Author.builder().firstName("Transient").lastName("Author").books(new HashSet<>()).build();
+        Set<Author> authors = new HashSet<>(Set.of(newAuthor));
+        int hashBeforePersist = newAuthor.hashCode();
+
+        // Act: Persist the author so it gets an id.
+        authorRepository.saveAndFlush(newAuthor);
+
+        // Assert: The hash code is unchanged and the set still finds the author.
+        assertThat(newAuthor.getId()).isNotNull();
+        assertThat(newAuthor.hashCode()).isEqualTo(hashBeforePersist);
+        assertThat(authors).contains(newAuthor);
+    }
+
+    @Test
+    @DisplayName("Authors with the same name are still different authors.")
+    void testAuthorsWithSameNameAreNotEqual() {
+
+        // Arrange: Create two authors with identical names.
+        Author first = Author.builder().firstName("John").lastName("Smith").build();
+        Author second = Author.builder().firstName("John").lastName("Smith").build();
 
+        // Assert: Each author gets its own uuid and they are not equal.
+        assertThat(first.getUuid()).isNotNull().isNotEqualTo(second.getUuid());
+        assertThat(first).isNotEqualTo(second);
+        assertThat(new HashSet<>(List.of(first, second))).hasSize(2);
+    }
 
+    @Test
+    @DisplayName("An author loaded in a new persistence context equals the original instance.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 1, maxCollectionFetches = 0)
+    void testLoadedAuthorEqualsOriginal() {
+
+        // Arrange: Flush and detach everything so the next lookup creates a new instance.
+        entityManager.flush();
+        entityManager.clear();
+        Set<Author> authors = new HashSet<>(Set.of(author1));
+
+        // Act: Load author1 again.
+        Author reloaded = authorRepository.findById(author1.getId()).orElseThrow();
+
+        // Assert: The reloaded author is a new instance that is still found in the set.
+        assertThat(reloaded).isNotSameAs(author1);
+        assertThat(reloaded.getUuid()).isEqualTo(author1.getUuid());
+        assertThat(authors).contains(reloaded);
+    }
 
-}
\ No newline at end of file
+}
@@ -1,24 +1,38 @@
 package io.github.bokalebsson.libraryapplication.repository;
 
+import io.github.bokalebsson.libraryapplication.dto.OverdueLoanView;
 import io.github.bokalebsson.libraryapplication.entity.AppUser;
 import io.github.bokalebsson.libraryapplication.entity.Book;
 import io.github.bokalebsson.libraryapplication.entity.BookLoan;
 import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.service.LoanService;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
 import jakarta.transaction.Transactional;
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Window;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest
+@Import(LoanService.class)
+@QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
 @ActiveProfiles("test")
 class BookLoanRepositoryTest {
 
@@ -31,6 +45,9 @@ class BookLoanRepositoryTest {
     @Autowired
     private AppUserRepository appUserRepository;
 
+    @Autowired
+    private LoanService loanService;
+
     private Book book1;
     private Book book2;
 
@@ -53,15 +70,18 @@ class BookLoanRepositoryTest {
 
         user1 = AppUser.builder()
                 .username("user1")
-                .password("pass1")
+                .password(TestPasswords.HASH)
                 .regDate(LocalDate.now())
+                .activeLoanCount(1)
                 .userDetails(details1)
                 .build();
 
         user2 = AppUser.builder()
                 .username("user2")
-                .password("pass2")
+                .password(TestPasswords.HASH)
                 .regDate(LocalDate.now())
+                .activeLoanCount(1)
+                .overdueLoanCount(1)
                 .userDetails(details2)
                 .build();
 
@@ -122,6 +142,34 @@ class BookLoanRepositoryTest {
         assertThat(found).isEmpty();
     }
 
+    @Test
+    @DisplayName("Loan history of a borrower, most recent first, one page at a time.")
+    @QueryBudget(maxQueries = 4, maxEntityLoads = 4, maxCollectionFetches = 0)
+    void testFindHistoryByBorrower() {
+
+        // Arrange: user1 gets a second loan on the same day as loan3 (one insert).
+        BookLoan loan4 = bookLoanRepository.save(BookLoan.builder()
+                .book(book2)
+                .borrower(user1)
+                .loanDate(loan3.getLoanDate())
+                .dueDate(loan3.getDueDate())
+                .build());
+
+        // Act: Read user1's history in pages of two, by offset and by keyset.
+        Slice<BookLoan> first = bookLoanRepository.findByBorrowerIdOrderByLoanDateDescIdDesc(user1.getId(), PageRequest.of(0, 2));
+        Slice<BookLoan> second = bookLoanRepository.findByBorrowerIdOrderByLoanDateDescIdDesc(user1.getId(), first.nextPageable());
+        Window<BookLoan> window = bookLoanRepository.findByBorrowerIdOrderByLoanDateDescIdDesc(
+                user1.getId(), ScrollPosition.keyset(), Limit.of(3));
+
+        // Assert: Newest first, the later id first within a day, and the book already loaded.
+        assertThat(first.getContent()).extracting(BookLoan::getId).containsExactly(loan4.getId(), loan3.getId());
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(BookLoan::getId).containsExactly(loan1.getId());
+        assertThat(second.hasNext()).isFalse();
+        assertThat(window.getContent()).extracting(BookLoan::getId).containsExactly(loan4.getId(), loan3.getId(), loan1.getId());
+        assertThat(first.getContent()).allSatisfy(loan -> assertThat(Hibernate.isInitialized(loan.getBook())).isTrue());
+    }
+
     @Test
     @DisplayName("Find BookLoans by bookId.")
     void testFindByBookId() {
@@ -161,6 +209,7 @@ class BookLoanRepositoryTest {
 
     @Test
     @DisplayName("Find BookLoans where all loans are returned, returns empty list.")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByReturnedFalseNoneFound() {
 
         // Arrange: Mark all loans as returned.
@@ -199,6 +248,35 @@ class BookLoanRepositoryTest {
         assertThat(found).isEmpty();
     }
 
+    @Test
+    @DisplayName("Stream overdue loans as lightweight rows.")
+    void testStreamOverdueLoans() {
+
+        // Act: Stream loans with due date before today and not returned.
+        List<OverdueLoanView> found;
+        try (Stream<OverdueLoanView> overdueLoans = bookLoanRepository.streamOverdueLoans(LocalDate.now())) {
+            found = overdueLoans.toList();
+        }
+
+        // Assert: Only loan2 is overdue, with the borrower's email and the book's title.
+        assertThat(found).containsExactly(new OverdueLoanView(
+                loan2.getId(), "jane@example.com", "Java Basics", LocalDate.now().minusDays(1)));
+    }
+
+    @Test
+    @DisplayName("Stream overdue loans when none are overdue, returns empty stream.")
+    void testStreamOverdueLoansNoneFound() {
+
+        // Act: Stream loans with due date before a date far in the past.
+        long count;
+        try (Stream<OverdueLoanView> overdueLoans = bookLoanRepository.streamOverdueLoans(LocalDate.of(2000, 1, 1))) {
+            count = overdueLoans.count();
+        }
+
+        // Assert: Should be empty.
+        assertThat(count).isZero();
+    }
+
     @Test
     @DisplayName("Find BookLoans between two dates.")
     void testFindByLoanDateBetween() {
@@ -229,30 +307,38 @@ class BookLoanRepositoryTest {
     @Test
     @Transactional
     @DisplayName("Mark a BookLoan as returned.")
+    @QueryBudget(maxQueries = 12, maxEntityLoads = 3, maxCollectionFetches = 0)
     void testMarkAsReturned() {
 
-        // Act: Mark loan1 as returned using the @Modifying query.
-        bookLoanRepository.markAsReturned(loan1.getId());
+        // Act: Return loan1 the supported way, through LoanService.
+        boolean returned = loanService.returnLoan(loan1.getId());
 
-        // Assert: Verify that loan1 is now returned.
+        // Assert: Verify that loan1 is now returned, and its borrower and book know it.
         BookLoan updated = bookLoanRepository.findById(loan1.getId()).orElseThrow();
+        assertThat(returned).isTrue();
         assertThat(updated.isReturned()).isTrue();
+        assertThat(updated.getReturnDate()).isEqualTo(LocalDate.now());
+        assertThat(appUserRepository.findById(user1.getId()).orElseThrow().getActiveLoanCount()).isZero();
+        assertThat(bookRepository.findById(book1.getId()).orElseThrow().isAvailable()).isTrue();
     }
 
     @Test
     @Transactional
     @DisplayName("Mark a BookLoan as returned that is already returned")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testMarkAsReturnedAlreadyReturned() {
 
         // Arrange: Ensure loan3 is already returned.
         assertThat(loan3.isReturned()).isTrue();
 
-        // Act: Call markAsReturned on loan3 which is already returned.
-        bookLoanRepository.markAsReturned(loan3.getId());
+        // Act: Return loan3 again.
+        boolean returned = loanService.returnLoan(loan3.getId());
 
-        // Assert: The loan should still be returned (true).
+        // Assert: Nothing was returned, the loan is still returned and user1 still has loan1 out.
         BookLoan updated = bookLoanRepository.findById(loan3.getId()).orElseThrow();
+        assertThat(returned).isFalse();
         assertThat(updated.isReturned()).isTrue();
+        assertThat(appUserRepository.findById(user1.getId()).orElseThrow().getActiveLoanCount()).isEqualTo(1);
     }
 
 }
@@ -2,17 +2,24 @@ package io.github.bokalebsson.libraryapplication.repository;
 
 import io.github.bokalebsson.libraryapplication.entity.Author;
 import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -26,6 +33,12 @@ public class BookRepositoryTest {
     @Autowired
     private AuthorRepository authorRepository;
 
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private Book book1;
     private Book book2;
     private Book book3;
@@ -57,6 +70,7 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Find book by ISBN ignoring case")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByIsbnIgnoreCase() {
 
         // Act: Search for the book with different case.
@@ -67,8 +81,27 @@ public class BookRepositoryTest {
         assertThat(found.get().getTitle()).isEqualTo("Spring Boot for Dummies");
     }
 
+    @Test
+    @DisplayName("ISBNs are stored as ISBN-13 and found in any notation")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void testFindByIsbnIgnoreCaseNormalizesIsbn() {
+
+        // Arrange: Save a book with a hyphenated ISBN-10.
+        bookRepository.save(Book.builder().isbn("0-306-40615-2").title("Mathematical Tables").maxLoanDays(14).build());
+
+        // Act: Search by the ISBN-13, with and without hyphens.
+        Optional<Book> byIsbn13 = bookRepository.findByIsbnIgnoreCase("978-0-306-40615-7");
+        Optional<Book> byIsbn10 = bookRepository.findByIsbnIgnoreCase("0306406152");
+
+        // Assert: Both find the book, which stores the compact ISBN-13.
+        assertThat(byIsbn13).isPresent();
+        assertThat(byIsbn13.get().getIsbn()).isEqualTo("9780306406157");
+        assertThat(byIsbn10).containsSame(byIsbn13.get());
+    }
+
     @Test
     @DisplayName("Find book by non-existing ISBN returns empty")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByIsbnIgnoreCaseNotFound() {
 
         // Act: Search for a non-existing ISBN.
@@ -80,6 +113,7 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Find books by title containing substring ignoring case")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByTitleContainingIgnoreCase() {
 
         // Act: Search for books with "java" in title.
@@ -93,6 +127,7 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Find books by title containing substring not present returns empty list")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByTitleContainingIgnoreCaseNotFound() {
 
         // Act: Search for books with a substring that does not exist.
@@ -104,6 +139,7 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Find books with maxLoanDays less than a value")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByMaxLoanDaysLessThan() {
 
         // Act: Find books with maxLoanDays < 15.
@@ -117,6 +153,7 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Find books with maxLoanDays less than a value lower than all returns empty list")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testFindByMaxLoanDaysLessThanNoneFound() {
 
         // Act: Find books with maxLoanDays < 5.
@@ -128,6 +165,8 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Add author to book bi-directionally.")
+    // Up to one id block fetch each from book_seq and author_seq, depending on the sequence state.
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testAddAuthorToBookBiDirectional() {
 
         // Arrange: Create a new book and new author.
@@ -153,6 +192,7 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Adding the same author twice to a book does not duplicate.")
+    @QueryBudget(maxQueries = 0, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testAddSameAuthorTwice() {
 
         // Arrange: Ensure book1 has author1.
@@ -163,6 +203,7 @@ public class BookRepositoryTest {
         author1.getBooks().add(book);
         bookRepository.save(book);
         authorRepository.save(author1);
+        entityManager.flush();
 
         // Assert: Author list should contain author1 only once.
         Book updatedBook = bookRepository.findById(book1.getId()).orElseThrow();
@@ -172,6 +213,7 @@ public class BookRepositoryTest {
     @Test
     @DisplayName("Remove author from book bi-directionally.")
     @Transactional
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testRemoveAuthorFromBookBiDirectional() {
 
         // Arrange: Ensure book1 has author1.
@@ -182,6 +224,7 @@ public class BookRepositoryTest {
         book.getAuthors().remove(author1);
         author1.getBooks().remove(book);
         bookRepository.save(book);
+        entityManager.flush();
 
         // Assert: Book no longer contains author1.
         Book updatedBook = bookRepository.findById(book1.getId()).orElseThrow();
@@ -194,6 +237,7 @@ public class BookRepositoryTest {
 
     @Test
     @DisplayName("Removing a non-associated author from a book does not throw.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
     void testRemoveNonExistingAuthor() {
 
         // Arrange: Create an author not associated with book3.
@@ -205,10 +249,72 @@ public class BookRepositoryTest {
         book.getAuthors().remove(newAuthor);
         newAuthor.getBooks().remove(book);
         bookRepository.save(book);
+        entityManager.flush();
 
         // Assert: Book's authors remain unchanged (still empty).
         Book updatedBook = bookRepository.findById(book3.getId()).orElseThrow();
         assertThat(updatedBook.getAuthors()).isEmpty();
     }
 
+    @Test
+    @DisplayName("A book added to a HashSet before persisting is still found after persisting.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void testBookSetSemanticsAcrossPersist() {
+
+        // Arrange: Put a transient book (no id yet) into a set.
+        Book newBook = Book.builder().title("Transient Book").isbn("555-EEE").maxLoanDays(7).authors(new HashSet<>()).build();
+        Set<Book> books = new HashSet<>(Set.of(newBook));
+        int hashBeforePersist = newBook.hashCode();
+
+        // Act: Persist the book so it gets an id.
+        bookRepository.saveAndFlush(newBook);
+
+        // Assert: The hash code is unchanged and the set still finds the book.
+        assertThat(newBook.getId()).isNotNull();
+        assertThat(newBook.hashCode()).isEqualTo(hashBeforePersist);
+        assertThat(books).contains(newBook);
+
+        // Assert: A copy with the same ISBN is equal, one with another ISBN is not.
+        assertThat(books).contains(Book.builder().isbn("555-EEE").build());
+        assertThat(books).doesNotContain(Book.builder().isbn("555-FFF").build());
+    }
+
+    @Test
+    @DisplayName("Books without an ISBN are only equal to themselves.")
+    void testBooksWithoutIsbnAreNotEqual() {
+
+        // Arrange: Create two books without ISBN.
+        Book first = Book.builder().title("No ISBN").build();
+        Book second = Book.builder().title("No ISBN").build();
+
+        // Assert: Each book equals itself but not the other one.
+        assertThat(first).isEqualTo(first);
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    @DisplayName("saveAll of many books is sent to the database in JDBC batches.")
+    // One more query when the ids left in book_seq's pool (shared with the other tests of this
+    // context) run out one block earlier.
+    @QueryBudget(maxQueries = 4, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void testSaveAllUsesJdbcBatching() {
+
+        // Arrange: Build 120 new books and reset the Hibernate statistics.
+        List<Book> newBooks = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            newBooks.add(Book.builder().isbn("BATCH-" + i).title("Batch Book " + i).maxLoanDays(14).build());
+        }
+        entityManager.flush();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // Act: Save all books and flush them to the database.
+        bookRepository.saveAll(newBooks);
+        entityManager.flush();
+
+        // Assert: All rows are inserted, but with a handful of statements instead of one per row.
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(120);
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(10);
+    }
+
 }
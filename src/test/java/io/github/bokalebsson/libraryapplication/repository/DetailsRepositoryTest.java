@@ -1,6 +1,7 @@
 package io.github.bokalebsson.libraryapplication.repository;
 
 import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,6 +16,7 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DataJpaTest
+@QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
 @ActiveProfiles("test")
 public class DetailsRepositoryTest {
 
@@ -0,0 +1,183 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Budgets the SQL statements each finder needs, including touching the associations its callers
+ * use. Associations are lazy, so every finder that hands out loans or users with their related
+ * rows must fetch them through an entity graph in the same statement.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+class FetchPlanTest {
+
+    private static final int USERS = 5;
+    private static final int BOOKS = 8;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private List<AppUser> users;
+    private List<Book> books;
+    private List<BookLoan> loans;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(AppUser.builder()
+                    .username("fetcher" + i)
+                    .password(TestPasswords.HASH)
+                    .regDate(today)
+                    .userDetails(new Details("fetcher" + i + "@test.nu", "Fetcher " + i, LocalDate.of(1990, 1, 1)))
+                    .build());
+        }
+        appUserRepository.saveAll(users);
+
+        books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(Book.builder().isbn("FETCH-" + i).title("Fetch Book " + i).maxLoanDays(14).build());
+        }
+        bookRepository.saveAll(books);
+
+        // Every user borrows every book once; half of the loans are overdue.
+        loans = new ArrayList<>();
+        for (AppUser user : users) {
+            for (int i = 0; i < BOOKS; i++) {
+                loans.add(BookLoan.builder()
+                        .borrower(user)
+                        .book(books.get(i))
+                        .loanDate(today.minusDays(20))
+                        .dueDate(i % 2 == 0 ? today.minusDays(6) : today.plusDays(8))
+                        .build());
+            }
+        }
+        bookLoanRepository.saveAll(loans);
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    @DisplayName("findByBorrowerId loads the loans and their books in one statement.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 2 * BOOKS)
+    void findByBorrowerId_shouldFetchBooksInOneStatement() {
+
+        // Act: Load a borrower's loans and read every book title.
+        List<BookLoan> loans = bookLoanRepository.findByBorrowerId(users.get(0).getId());
+        loans.forEach(loan -> loan.getBook().getTitle());
+
+        // Assert: The loans are found; the budget rules out a select per book.
+        assertThat(loans).hasSize(BOOKS);
+    }
+
+    @Test
+    @DisplayName("findByBookId loads the loans and their borrowers in one statement.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 2 * USERS)
+    void findByBookId_shouldFetchBorrowersInOneStatement() {
+
+        // Act: Load a book's loan history and read every borrower name.
+        List<BookLoan> loans = bookLoanRepository.findByBookId(books.get(0).getId());
+        loans.forEach(loan -> loan.getBorrower().getUsername());
+
+        // Assert: The loans are found; the budget rules out a select per borrower.
+        assertThat(loans).hasSize(USERS);
+    }
+
+    @Test
+    @DisplayName("findByDueDateBeforeAndReturnedFalse loads books and borrowers in one statement.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = USERS * BOOKS / 2 + BOOKS / 2 + USERS)
+    void findOverdue_shouldFetchBooksAndBorrowersInOneStatement() {
+
+        // Act: Load the overdue loans and read both sides of each loan.
+        List<BookLoan> overdue = bookLoanRepository.findByDueDateBeforeAndReturnedFalse(today);
+        overdue.forEach(loan -> {
+            loan.getBook().getTitle();
+            loan.getBorrower().getUsername();
+        });
+
+        // Assert: Every overdue loan is found.
+        assertThat(overdue).hasSize(USERS * BOOKS / 2);
+    }
+
+    @Test
+    @DisplayName("A page of open loans is loaded with books and borrowers in one statement.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 10 + BOOKS + USERS)
+    void findOpenLoansPage_shouldFetchBooksAndBorrowersInOneStatement() {
+
+        // Act: Load the first page of open loans and read both sides of each loan.
+        List<BookLoan> page = bookLoanRepository.findByReturnedFalse(PageRequest.of(0, 10, Sort.by("id"))).getContent();
+        page.forEach(loan -> {
+            loan.getBook().getTitle();
+            loan.getBorrower().getUsername();
+        });
+
+        // Assert: The page is full.
+        assertThat(page).hasSize(10);
+    }
+
+    @Test
+    @DisplayName("findByUsername loads the user with its details in one statement.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 2)
+    void findByUsername_shouldFetchDetailsInOneStatement() {
+
+        // Act: Look up a user and read the e-mail address.
+        AppUser user = appUserRepository.findByUsername("fetcher3").orElseThrow();
+
+        // Assert: Details came with the user.
+        assertThat(Hibernate.isInitialized(user.getUserDetails())).isTrue();
+        assertThat(user.getUserDetails().getEmail()).isEqualTo("fetcher3@test.nu");
+    }
+
+    @Test
+    @DisplayName("Loans loaded without a fetch graph leave their associations unloaded.")
+    @QueryBudget(maxQueries = 2, maxEntityLoads = 2)
+    void findById_shouldNotLoadAssociations() {
+
+        // Act: Load a single loan by id.
+        BookLoan loan = bookLoanRepository.findById(loans.get(0).getId()).orElseThrow();
+
+        // Assert: Book and borrower are only loaded on first access, with one select for the borrower.
+        assertThat(Hibernate.isInitialized(loan.getBook())).isFalse();
+        assertThat(Hibernate.isInitialized(loan.getBorrower())).isFalse();
+        assertThat(loan.getBorrower().getUsername()).isEqualTo("fetcher0");
+    }
+
+}
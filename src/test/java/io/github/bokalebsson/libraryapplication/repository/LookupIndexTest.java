@@ -0,0 +1,151 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.support.SqlRecorder;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The case-insensitive lookups must be able to use an index. Each finder is run once to record
+ * the SQL it generates, and that SQL is then EXPLAINed on H2: a plan that reads the table
+ * through an index names it, a full scan shows up as "tableScan".
+ */
+// Not transactional: lookups have to reach the database instead of the persistence context.
+@DataJpaTest
+@ActiveProfiles("test")
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=io.github.bokalebsson.libraryapplication.support.SqlRecorder")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LookupIndexTest {
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private DetailsRepository detailsRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        appUserRepository.deleteAll();
+        detailsRepository.deleteAll();
+        bookRepository.deleteAll();
+
+        appUserRepository.save(AppUser.builder()
+                .username("alice")
+                .password(TestPasswords.HASH)
+                .regDate(LocalDate.now())
+                .userDetails(new Details("Alice.Smith@Example.com", "Alice Smith", LocalDate.of(1990, 1, 1)))
+                .build());
+        bookRepository.save(Book.builder().isbn("978-0-306-40615-7").title("Lookup Book").maxLoanDays(14).build());
+
+        // Natural-id lookups would otherwise be answered from the second-level cache.
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        SqlRecorder.clear();
+    }
+
+    @Test
+    @DisplayName("Email and name lookups ignore case and whitespace, findByEmail included.")
+    void lookups_shouldIgnoreCase() {
+
+        // Act & Assert: Differently cased input finds the same row.
+        assertThat(detailsRepository.findByEmail(" alice.smith@example.COM")).isPresent();
+        assertThat(appUserRepository.findByUserDetails_EmailIgnoreCase("ALICE.SMITH@EXAMPLE.COM"))
+                .map(AppUser::getUsername).contains("alice");
+        assertThat(detailsRepository.findByNameIgnoreCase("alice smith")).hasSize(1);
+        assertThat(bookRepository.findByIsbnIgnoreCase("9780306406157")).isPresent();
+    }
+
+    @Test
+    @DisplayName("Email lookups use the unique index on the normalized email.")
+    void emailLookups_shouldUseIndex() {
+
+        // Act: Run both email finders.
+        detailsRepository.findByEmail("alice.smith@example.com");
+        String detailsSql = lastSelect();
+        appUserRepository.findByUserDetails_EmailIgnoreCase("alice.smith@example.com");
+        String userSql = lastSelect();
+
+        // Assert: Both filter on email_key and neither scans details.
+        assertThat(detailsSql).contains("email_key").doesNotContainIgnoringCase("lower(");
+        assertThat(explain(detailsSql, "alice.smith@example.com")).containsIgnoringCase("uk_details_email_key");
+        assertThat(explain(userSql, "alice.smith@example.com")).containsIgnoringCase("uk_details_email_key");
+    }
+
+    @Test
+    @DisplayName("Name lookups use the index on the normalized name.")
+    void nameLookup_shouldUseIndex() {
+
+        // Act: Run the name finder.
+        detailsRepository.findByNameIgnoreCase("alice smith");
+        String sql = lastSelect();
+
+        // Assert: The plan goes through idx_details_name_key.
+        assertThat(explain(sql, "alice smith")).containsIgnoringCase("idx_details_name_key").doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("The ISBN lookup uses the unique index on isbn.")
+    void isbnLookup_shouldUseIndex() {
+
+        // Act: Look a book up by a hyphenated ISBN.
+        bookRepository.findByIsbnIgnoreCase("978-0-306-40615-7");
+        String sql = lastSelect();
+
+        // Assert: The stored, normalized ISBN is compared directly, through an index.
+        assertThat(sql).doesNotContainIgnoringCase("lower(").doesNotContainIgnoringCase("upper(");
+        assertThat(explain(sql, "9780306406157")).doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Wrapping the column in LOWER(), as the old finders did, scans the table.")
+    void lowerOnColumn_shouldScanTable() {
+
+        // Act & Assert: The same lookup written the old way can't use the index.
+        assertThat(explain("SELECT id FROM details WHERE LOWER(email) = ?", "alice.smith@example.com"))
+                .contains("tableScan");
+    }
+
+    private String lastSelect() {
+        List<String> selects = SqlRecorder.statements().stream()
+                .filter(sql -> sql.stripLeading().toLowerCase().startsWith("select"))
+                .toList();
+        assertThat(selects).isNotEmpty();
+        return selects.get(selects.size() - 1);
+    }
+
+    private String explain(String sql, Object... args) {
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args));
+    }
+}
@@ -0,0 +1,254 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.support.WindowIterator;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that draining the Slice and keyset (Window) variants of each finder page by page
+ * returns exactly the same rows as the unbounded List version.
+ */
+@DataJpaTest
+@QueryBudget(maxQueries = 15, maxEntityLoads = 0, maxCollectionFetches = 0)
+@ActiveProfiles("test")
+class PaginationParityTest {
+
+    private static final int PAGE_SIZE = 4;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private DetailsRepository detailsRepository;
+
+    private List<Book> books;
+    private List<AppUser> users;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        books = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            String title = i % 3 == 0 ? "Java Volume " + i : "Kotlin Volume " + i;
+            books.add(Book.builder().isbn("PAGE-" + i).title(title).maxLoanDays(5 + i).build());
+        }
+        bookRepository.saveAll(books);
+
+        Author prolificAuthor = Author.builder().firstName("Joan").lastName("Page").books(new HashSet<>(books.subList(0, 17))).build();
+        List<Author> authors = new ArrayList<>(List.of(prolificAuthor));
+        for (int i = 0; i < 13; i++) {
+            authors.add(Author.builder().firstName(i % 2 == 0 ? "Joan" : "Jonas").lastName(i % 3 == 0 ? "Page" : "Smith-" + i)
+                    .books(new HashSet<>(List.of(books.get(0)))).build());
+        }
+        authorRepository.saveAll(authors);
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            users.add(AppUser.builder()
+                    .username("pager" + i)
+                    .password(TestPasswords.HASH)
+                    .regDate(today.minusDays(i * 10L))
+                    .userDetails(new Details("pager" + i + "@test.nu", i % 2 == 0 ? "Page Turner" : "Other Reader " + i, LocalDate.of(1990, 1, 1)))
+                    .build());
+        }
+        appUserRepository.saveAll(users);
+
+        List<BookLoan> loans = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            loans.add(BookLoan.builder()
+                    .book(books.get(i % 3))
+                    .borrower(users.get(i % 2))
+                    .loanDate(today.minusDays(i))
+                    .dueDate(today.minusDays(i).plusDays(14))
+                    .returned(i % 4 == 0)
+                    .build());
+        }
+        bookLoanRepository.saveAll(loans);
+    }
+
+    @Test
+    @DisplayName("BookLoan finders: Slice and Window variants return the same loans as the List versions.")
+    @QueryBudget(maxQueries = 63, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void bookLoanFinders_shouldMatchListVersions() {
+
+        int borrowerId = users.get(0).getId();
+        int bookId = books.get(1).getId();
+        LocalDate from = today.minusDays(25);
+
+        assertParity(BookLoan::getId,
+                bookLoanRepository.findByBorrowerId(borrowerId),
+                pageable -> bookLoanRepository.findByBorrowerId(borrowerId, pageable),
+                (position, limit) -> bookLoanRepository.findByBorrowerIdOrderByIdAsc(borrowerId, position, limit));
+
+        assertParity(BookLoan::getId,
+                bookLoanRepository.findByBookId(bookId),
+                pageable -> bookLoanRepository.findByBookId(bookId, pageable),
+                (position, limit) -> bookLoanRepository.findByBookIdOrderByIdAsc(bookId, position, limit));
+
+        assertParity(BookLoan::getId,
+                bookLoanRepository.findByReturnedFalse(),
+                pageable -> bookLoanRepository.findByReturnedFalse(pageable),
+                (position, limit) -> bookLoanRepository.findByReturnedFalseOrderByIdAsc(position, limit));
+
+        assertParity(BookLoan::getId,
+                bookLoanRepository.findByDueDateBeforeAndReturnedFalse(today),
+                pageable -> bookLoanRepository.findByDueDateBeforeAndReturnedFalse(today, pageable),
+                (position, limit) -> bookLoanRepository.findByDueDateBeforeAndReturnedFalseOrderByIdAsc(today, position, limit));
+
+        assertParity(BookLoan::getId,
+                bookLoanRepository.findByLoanDateBetween(from, today),
+                pageable -> bookLoanRepository.findByLoanDateBetween(from, today, pageable),
+                (position, limit) -> bookLoanRepository.findByLoanDateBetweenOrderByIdAsc(from, today, position, limit));
+    }
+
+    @Test
+    @DisplayName("Book finders: Slice and Window variants return the same books as the List versions.")
+    @QueryBudget(maxQueries = 22, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void bookFinders_shouldMatchListVersions() {
+
+        assertParity(Book::getId,
+                bookRepository.findByTitleContainingIgnoreCase("volume"),
+                pageable -> bookRepository.findByTitleContainingIgnoreCase("volume", pageable),
+                (position, limit) -> bookRepository.findByTitleContainingIgnoreCaseOrderByIdAsc("volume", position, limit));
+
+        assertParity(Book::getId,
+                bookRepository.findByMaxLoanDaysLessThan(20),
+                pageable -> bookRepository.findByMaxLoanDaysLessThan(20, pageable),
+                (position, limit) -> bookRepository.findByMaxLoanDaysLessThanOrderByIdAsc(20, position, limit));
+    }
+
+    @Test
+    @DisplayName("Author finders: Slice and Window variants return the same authors as the List versions.")
+    @QueryBudget(maxQueries = 26, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void authorFinders_shouldMatchListVersions() {
+
+        int bookId = books.get(0).getId();
+
+        assertParity(Author::getId,
+                authorRepository.findByFirstName("Joan"),
+                pageable -> authorRepository.findByFirstName("Joan", pageable),
+                (position, limit) -> authorRepository.findByFirstNameOrderByIdAsc("Joan", position, limit));
+
+        assertParity(Author::getId,
+                authorRepository.findByLastName("Page"),
+                pageable -> authorRepository.findByLastName("Page", pageable),
+                (position, limit) -> authorRepository.findByLastNameOrderByIdAsc("Page", position, limit));
+
+        assertParity(Author::getId,
+                authorRepository.findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase("jon", "smith"),
+                pageable -> authorRepository.findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase("jon", "smith", pageable),
+                (position, limit) -> authorRepository.findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCaseOrderByIdAsc("jon", "smith", position, limit));
+
+        assertParity(Author::getId,
+                authorRepository.findByBooks_Id(bookId),
+                pageable -> authorRepository.findByBooks_Id(bookId, pageable),
+                (position, limit) -> authorRepository.findByBooks_IdOrderByIdAsc(bookId, position, limit));
+    }
+
+    @Test
+    @DisplayName("AppUser and Details finders: Slice and Window variants return the same rows as the List versions.")
+    void appUserAndDetailsFinders_shouldMatchListVersions() {
+
+        LocalDate from = today.minusDays(75);
+
+        assertParity(AppUser::getId,
+                appUserRepository.findByRegDateBetween(from, today),
+                pageable -> appUserRepository.findByRegDateBetween(from, today, pageable),
+                (position, limit) -> appUserRepository.findByRegDateBetweenOrderByIdAsc(from, today, position, limit));
+
+        assertParity(Details::getId,
+                detailsRepository.findByNameContaining("Reader"),
+                pageable -> detailsRepository.findByNameContaining("Reader", pageable),
+                (position, limit) -> detailsRepository.findByNameContainingOrderByIdAsc("Reader", position, limit));
+
+        assertParity(Details::getId,
+                detailsRepository.findByNameIgnoreCase("page turner"),
+                pageable -> detailsRepository.findByNameIgnoreCase("page turner", pageable),
+                (position, limit) -> detailsRepository.findByNameIgnoreCaseOrderByIdAsc("page turner", position, limit));
+    }
+
+    @Test
+    @DisplayName("Slices stop at the page size and report whether there is a next page.")
+    @QueryBudget(maxQueries = 1, maxEntityLoads = 0, maxCollectionFetches = 0)
+    void slice_shouldRespectPageSize() {
+
+        // Act: Fetch the first page of authors named Page.
+        Slice<Author> firstPage = authorRepository.findByLastName("Page", PageRequest.of(0, 2, Sort.by("id")));
+
+        // Assert: Only two rows are loaded and a next page exists.
+        assertThat(firstPage.getContent()).hasSize(2);
+        assertThat(firstPage.hasNext()).isTrue();
+    }
+
+    private static <T> void assertParity(ToIntFunction<T> id,
+                                         List<T> listResult,
+                                         Function<Pageable, Slice<T>> sliceQuery,
+                                         BiFunction<ScrollPosition, Limit, Window<T>> windowQuery) {
+
+        List<Integer> expected = listResult.stream().map(id::applyAsInt).sorted().toList();
+        assertThat(expected).as("the list version should return more than one page").hasSizeGreaterThan(PAGE_SIZE);
+
+        List<Integer> fromSlices = new ArrayList<>();
+        Pageable pageable = PageRequest.of(0, PAGE_SIZE, Sort.by("id"));
+        Slice<T> slice;
+        do {
+            slice = sliceQuery.apply(pageable);
+            assertThat(slice.getContent()).hasSizeLessThanOrEqualTo(PAGE_SIZE);
+            slice.forEach(row -> fromSlices.add(id.applyAsInt(row)));
+            pageable = slice.nextPageable();
+        } while (slice.hasNext());
+
+        List<Integer> fromWindows = new ArrayList<>();
+        WindowIterator.of(position -> windowQuery.apply(position, Limit.of(PAGE_SIZE)))
+                .startingAt(ScrollPosition.keyset())
+                .forEachRemaining(row -> fromWindows.add(id.applyAsInt(row)));
+
+        assertThat(fromSlices).containsExactlyElementsOf(expected);
+        assertThat(fromWindows).containsExactlyElementsOf(expected);
+    }
+
+}
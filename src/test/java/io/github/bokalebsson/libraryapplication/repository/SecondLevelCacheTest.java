@@ -0,0 +1,189 @@
+package io.github.bokalebsson.libraryapplication.repository;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Not transactional: the second-level cache is only shared between transactions.
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    private static final String AUTHOR_BOOKS = Author.class.getName() + ".books";
+    private static final String BOOK_AUTHORS = Book.class.getName() + ".authors";
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Cache cache;
+    private Statistics statistics;
+
+    private Author author;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+
+        book = bookRepository.save(Book.builder().isbn("CACHE-1").title("Cached Book").maxLoanDays(14).authors(new HashSet<>()).build());
+        author = authorRepository.save(Author.builder().firstName("Cached").lastName("Author").books(new HashSet<>(List.of(book))).build());
+
+        cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        cache.evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    // Nothing here is rolled back, and the context is shared with the other tests.
+    @AfterEach
+    void tearDown() {
+
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("findById in a later transaction is served from the cache without SQL.")
+    void findById_shouldHitCacheInLaterTransaction() {
+
+        // Arrange: The first read loads the author and puts it in the cache.
+        authorRepository.findById(author.getId()).orElseThrow();
+        statistics.clear();
+
+        // Act: Read the same author again in a new transaction.
+        Author cached = authorRepository.findById(author.getId()).orElseThrow();
+
+        // Assert: No statement was executed, the entity came from the "author" region.
+        assertThat(cached.getLastName()).isEqualTo("Author");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics("author").getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Lookups by ISBN natural id are resolved from the natural-id cache.")
+    void findByIsbn_shouldHitNaturalIdCache() {
+
+        // Arrange: The first lookup resolves the ISBN with SQL and caches id and entity.
+        bookRepository.findByIsbnIgnoreCase("CACHE-1").orElseThrow();
+        statistics.clear();
+
+        // Act: Look the book up by ISBN again, written differently.
+        Book cached = bookRepository.findByIsbnIgnoreCase("cache-1").orElseThrow();
+
+        // Assert: Both the ISBN and the book came from the cache.
+        assertThat(cached.getId()).isEqualTo(book.getId());
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getNaturalIdCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Lookups by username are served from the natural-id and entity caches, details included.")
+    void findByUsername_shouldHitNaturalIdCache() {
+
+        // Arrange: A user whose username was resolved once.
+        appUserRepository.deleteAll();
+        appUserRepository.save(AppUser.builder().username("cached").password(TestPasswords.HASH).regDate(LocalDate.now())
+                .userDetails(Details.builder().name("Cached User").email("cached@test.nu").birthDate(LocalDate.of(1990, 1, 1)).build())
+                .build());
+        appUserRepository.findByUsername("cached").orElseThrow();
+        statistics.clear();
+
+        // Act: Look the user up again.
+        AppUser user = appUserRepository.findByUsername("Cached").orElseThrow();
+
+        // Assert: No statement was executed and the details are fetched.
+        assertThat(user.getUsername()).isEqualTo("cached");
+        assertThat(statistics.getNaturalIdCacheHitCount()).isEqualTo(1);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(Hibernate.isInitialized(user.getUserDetails())).isTrue();
+    }
+
+    @Test
+    @DisplayName("updateNameById evicts the author region but leaves cached books alone.")
+    void updateNameById_shouldEvictAuthorRegionOnly() {
+
+        // Arrange: Author and book are cached.
+        authorRepository.findById(author.getId()).orElseThrow();
+        bookRepository.findById(book.getId()).orElseThrow();
+        assertThat(cache.containsEntity(Author.class, author.getId())).isTrue();
+
+        // Act: Rename the author with the bulk update.
+        authorRepository.updateNameById(author.getId(), "Renamed", "Writer");
+
+        // Assert: The author is evicted and reloaded with the new name, the book stays cached.
+        assertThat(cache.containsEntity(Author.class, author.getId())).isFalse();
+        assertThat(cache.containsEntity(Book.class, book.getId())).isTrue();
+        assertThat(authorRepository.findById(author.getId()).orElseThrow().getFirstName()).isEqualTo("Renamed");
+    }
+
+    @Test
+    @DisplayName("deleteById evicts the author and the cached author/book collections.")
+    void deleteById_shouldEvictAuthorAndCollectionRegions() {
+
+        // Arrange: Author, its books and the authors of its book are cached.
+        inTransaction(entityManager -> entityManager.find(Author.class, author.getId()).getBooks().size());
+        inTransaction(entityManager -> entityManager.find(Book.class, book.getId()).getAuthors().size());
+        assertThat(cache.containsEntity(Author.class, author.getId())).isTrue();
+        assertThat(cache.containsCollection(AUTHOR_BOOKS, author.getId())).isTrue();
+        assertThat(cache.containsCollection(BOOK_AUTHORS, book.getId())).isTrue();
+
+        // Act: Delete the author with the bulk delete (the int overload, not CrudRepository.deleteById).
+        authorRepository.deleteById(author.getId().intValue());
+
+        // Assert: Neither the author nor its collection can be served from the cache.
+        assertThat(cache.containsEntity(Author.class, author.getId())).isFalse();
+        assertThat(cache.containsCollection(AUTHOR_BOOKS, author.getId())).isFalse();
+        assertThat(cache.containsCollection(BOOK_AUTHORS, book.getId())).isFalse();
+        assertThat(authorRepository.findById(author.getId())).isEmpty();
+        int authorsOfBook = inTransaction(entityManager -> entityManager.find(Book.class, book.getId()).getAuthors().size());
+        assertThat(authorsOfBook).isZero();
+    }
+
+    private <T> T inTransaction(Function<EntityManager, T> work) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                work.apply(EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory)));
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.bokalebsson.libraryapplication.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextIndexTest {
+
+    private TextIndex index;
+
+    @BeforeEach
+    void setUp() {
+
+        index = TextIndex.builder()
+                .add(1, "Harry Potter and the Philosopher's Stone")
+                .add(2, "Harry Potter")
+                .add(3, "The Hobbit")
+                .add(4, "Brontë: Jane Eyre")
+                .add(5, "Potted Plants for Beginners")
+                .build();
+    }
+
+    @Test
+    @DisplayName("Prefix search matches the start of words, in any order.")
+    void searchPrefix_shouldMatchWordStarts() {
+
+        // Act & Assert: Every query word has to start a word of the title.
+        assertThat(index.searchPrefix("har pot", 10)).containsExactly(2, 1);
+        assertThat(index.searchPrefix("potter harry", 10)).containsExactly(2, 1);
+        assertThat(index.searchPrefix("pot", 10)).containsExactlyInAnyOrder(1, 2, 5);
+        assertThat(index.searchPrefix("otter", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Substring search matches inside words, short terms included.")
+    void searchSubstring_shouldMatchInsideWords() {
+
+        // Act & Assert: Terms may occur anywhere inside a word.
+        assertThat(index.searchSubstring("otter", 10)).containsExactly(2, 1);
+        assertThat(index.searchSubstring("obbi", 10)).containsExactly(3);
+        assertThat(index.searchSubstring("ot", 10)).containsExactlyInAnyOrder(1, 2, 5);
+        assertThat(index.searchSubstring("arry zzz", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Whole words rank above prefixes, prefixes above infixes, shorter texts first.")
+    void search_shouldRankBestMatchFirst() {
+
+        // Arrange: One title with "pot" as the whole word, one with "pot" inside the word.
+        index.put(7, "Teapot");
+        index.put(8, "Pot");
+
+        // Act & Assert: The whole word wins, then the prefixes by length, then the infix.
+        assertThat(index.searchSubstring("pot", 10)).containsExactly(8, 2, 5, 1, 7);
+
+        // Assert: The limit keeps only the best hits.
+        assertThat(index.searchSubstring("pot", 2)).containsExactly(8, 2);
+    }
+
+    @Test
+    @DisplayName("Search ignores case, accents and punctuation.")
+    void search_shouldFoldCaseAndAccents() {
+
+        // Act & Assert: "bronte" finds "Brontë", "philosopher" finds "Philosopher's".
+        assertThat(index.searchSubstring("BRONTE", 10)).containsExactly(4);
+        assertThat(index.searchPrefix("philosopher s", 10)).containsExactly(1);
+        assertThat(index.searchSubstring("  ", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("put replaces the old text of an id and remove drops it.")
+    void putAndRemove_shouldKeepIndexInSync() {
+
+        // Act: Rename one title and remove another.
+        index.put(3, "The Lord of the Rings");
+        index.remove(5);
+        index.put(6, "Hobbit Holes");
+
+        // Assert: Old words no longer match, new ones do.
+        assertThat(index.searchSubstring("hobbit", 10)).containsExactly(6);
+        assertThat(index.searchPrefix("lord", 10)).containsExactly(3);
+        assertThat(index.searchSubstring("plants", 10)).isEmpty();
+        assertThat(index.searchSubstring("ant", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+}
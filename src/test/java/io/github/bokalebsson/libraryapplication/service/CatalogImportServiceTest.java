@@ -0,0 +1,152 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(CatalogImportService.class)
+@TestPropertySource(properties = "library.import.chunk-size=2")
+class CatalogImportServiceTest {
+
+    @Autowired
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @BeforeEach
+    void setUp() {
+
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+
+        Book existingBook = Book.builder().isbn("978-EXISTING").title("Already In Catalogue").maxLoanDays(14).build();
+        bookRepository.save(existingBook);
+
+        Author existingAuthor = Author.builder().firstName("Joshua").lastName("Bloch").build();
+        authorRepository.save(existingAuthor);
+    }
+
+    @Test
+    @DisplayName("Imports books from CSV and links them to deduplicated authors.")
+    void importCsv_shouldImportBooksAndDeduplicateAuthors() {
+
+        // Arrange: A CSV catalogue where two books share an author, one author already exists
+        // and one title contains a comma.
+        String csv = """
+                isbn,title,maxLoanDays,authors
+                978-1,Effective Java,14,Joshua Bloch
+                978-2,"Java Puzzlers, Traps and Pitfalls",10,Joshua Bloch;Neal Gafter
+                978-3,Java Concurrency in Practice,21,Brian Goetz;joshua bloch
+                """;
+
+        // Act: Import the catalogue.
+        CatalogImportReport report = catalogImportService.importCsv(new StringReader(csv));
+
+        // Assert: All three books are imported and only two new authors are created.
+        assertThat(report.rowsRead()).isEqualTo(3);
+        assertThat(report.booksImported()).isEqualTo(3);
+        assertThat(report.authorsCreated()).isEqualTo(2);
+        assertThat(report.duplicates()).isZero();
+        assertThat(report.rejected()).isZero();
+        assertThat(authorRepository.findAll()).hasSize(3);
+
+        // Assert: The existing author is linked to all three books.
+        Author bloch = authorRepository.findByLastName("Bloch").get(0);
+        List<Author> puzzlersAuthors = authorRepository.findByBooks_Id(
+                bookRepository.findByIsbnIgnoreCase("978-2").orElseThrow().getId());
+        assertThat(puzzlersAuthors).extracting(Author::getLastName).containsExactlyInAnyOrder("Bloch", "Gafter");
+        assertThat(bookRepository.findByIsbnIgnoreCase("978-2").orElseThrow().getTitle())
+                .isEqualTo("Java Puzzlers, Traps and Pitfalls");
+        assertThat(authorRepository.findByBooks_Id(bookRepository.findByIsbnIgnoreCase("978-3").orElseThrow().getId()))
+                .contains(bloch);
+    }
+
+    @Test
+    @DisplayName("Skips books whose ISBN already exists in the database or earlier in the file.")
+    void importCsv_shouldSkipDuplicateIsbns() {
+
+        // Arrange: One ISBN already in the database (other case) and one repeated across chunks.
+        String csv = """
+                978-existing,Already In Catalogue,14,
+                978-10,Refactoring,14,Martin Fowler
+                978-11,Clean Code,14,Robert Martin
+                978-10,Refactoring Again,14,Martin Fowler
+                """;
+
+        // Act: Import the catalogue.
+        CatalogImportReport report = catalogImportService.importCsv(new StringReader(csv));
+
+        // Assert: Only the two new books are imported.
+        assertThat(report.booksImported()).isEqualTo(2);
+        assertThat(report.duplicates()).isEqualTo(2);
+        assertThat(bookRepository.findAll()).hasSize(3);
+        assertThat(bookRepository.findByIsbnIgnoreCase("978-10").orElseThrow().getTitle()).isEqualTo("Refactoring");
+    }
+
+    @Test
+    @DisplayName("Counts malformed rows as rejected and keeps importing the rest.")
+    void importCsv_shouldRejectMalformedRows() {
+
+        // Arrange: Rows with a missing title, a bad loan period, a bad author name and a good row.
+        String csv = """
+                978-20,,14,Kent Beck
+                978-21,Test Driven Development,fourteen,Kent Beck
+                978-22,Extreme Programming,14,Beck
+                978-23,Implementation Patterns,14,Kent Beck
+                """;
+
+        // Act: Import the catalogue.
+        CatalogImportReport report = catalogImportService.importCsv(new StringReader(csv));
+
+        // Assert: Three rows are rejected and one book is imported.
+        assertThat(report.rowsRead()).isEqualTo(4);
+        assertThat(report.rejected()).isEqualTo(3);
+        assertThat(report.booksImported()).isEqualTo(1);
+        assertThat(report.rowsPerSecond()).isPositive();
+        assertThat(bookRepository.findByIsbnIgnoreCase("978-23")).isPresent();
+    }
+
+    @Test
+    @DisplayName("Imports books from JSON lines.")
+    void importJsonLines_shouldImportBooks() {
+
+        // Arrange: Two valid JSON lines and one malformed line.
+        String jsonLines = """
+                {"isbn": "978-30", "title": "Domain-Driven Design", "maxLoanDays": 21, "authors": ["Eric Evans"]}
+                {"isbn": "978-31", "title": "Patterns of Enterprise Application Architecture", "maxLoanDays": 14, "authors": ["Martin Fowler"]}
+                {"isbn": "978-32", "title": broken
+                """;
+
+        // Act: Import the catalogue.
+        CatalogImportReport report = catalogImportService.importJsonLines(new StringReader(jsonLines));
+
+        // Assert: Two books and two authors are imported, one line is rejected.
+        assertThat(report.booksImported()).isEqualTo(2);
+        assertThat(report.authorsCreated()).isEqualTo(2);
+        assertThat(report.rejected()).isEqualTo(1);
+        assertThat(authorRepository.findByBooks_Id(bookRepository.findByIsbnIgnoreCase("978-30").orElseThrow().getId()))
+                .extracting(Author::getLastName)
+                .containsExactly("Evans");
+    }
+
+}
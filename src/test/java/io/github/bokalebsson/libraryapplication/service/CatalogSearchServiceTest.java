@@ -0,0 +1,145 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.Author;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.repository.AuthorRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.search.CatalogSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Not transactional: the index is only updated when a write commits.
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({CatalogSearchIndex.class, CatalogSearchService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CatalogSearchServiceTest {
+
+    @Autowired
+    private CatalogSearchService catalogSearchService;
+
+    @Autowired
+    private CatalogSearchIndex catalogSearchIndex;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Book stone;
+
+    @BeforeEach
+    void setUp() {
+
+        authorRepository.deleteAll();
+        bookRepository.deleteAll();
+
+        stone = Book.builder().isbn("SEARCH-1").title("Harry Potter and the Philosopher's Stone").maxLoanDays(14).build();
+        bookRepository.saveAll(List.of(
+                stone,
+                Book.builder().isbn("SEARCH-2").title("Harry Potter").maxLoanDays(14).build(),
+                Book.builder().isbn("SEARCH-3").title("The Hobbit").maxLoanDays(21).build()));
+        authorRepository.saveAll(List.of(
+                Author.builder().firstName("Joanne").lastName("Rowling").build(),
+                Author.builder().firstName("John").lastName("Tolkien").build()));
+
+        catalogSearchIndex.rebuild();
+    }
+
+    @Test
+    @DisplayName("Search is served from the index, best match first.")
+    void searchBooks_shouldReturnRankedMatches() {
+
+        // Act: Search for a word and a prefix.
+        List<Book> found = catalogSearchService.searchBooks("potter", 10);
+        List<Book> suggested = catalogSearchService.suggestBooks("hob", 10);
+
+        // Assert: The shorter title with the same match ranks first.
+        assertThat(found).extracting(Book::getIsbn).containsExactly("SEARCH-2", "SEARCH-1");
+        assertThat(suggested).extracting(Book::getTitle).containsExactly("The Hobbit");
+        assertThat(catalogSearchService.searchAuthors("olki", 10)).extracting(Author::getLastName).containsExactly("Tolkien");
+    }
+
+    @Test
+    @DisplayName("Committed inserts, updates and deletes are visible in searches.")
+    void index_shouldFollowCommittedWrites() {
+
+        // Act: Add a book, rename another and delete the third.
+        bookRepository.save(Book.builder().isbn("SEARCH-4").title("The Silmarillion").maxLoanDays(21).build());
+        stone.setTitle("Harry Potter and the Chamber of Secrets");
+        bookRepository.save(stone);
+        bookRepository.delete(bookRepository.findByIsbnIgnoreCase("SEARCH-3").orElseThrow());
+
+        // Assert: The index reflects all three changes.
+        assertThat(catalogSearchService.searchBooks("silmar", 10)).extracting(Book::getIsbn).containsExactly("SEARCH-4");
+        assertThat(catalogSearchService.searchBooks("chamber", 10)).extracting(Book::getIsbn).containsExactly("SEARCH-1");
+        assertThat(catalogSearchService.searchBooks("stone", 10)).isEmpty();
+        assertThat(catalogSearchService.searchBooks("hobbit", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("An author renamed with the bulk update is found under the new name only.")
+    void index_shouldFollowBulkRename() {
+
+        // Arrange
+        Author tolkien = authorRepository.findByLastName("Tolkien").get(0);
+
+        // Act
+        authorRepository.updateNameById(tolkien.getId(), "Ronald", "Reuel");
+
+        // Assert
+        assertThat(catalogSearchService.searchAuthors("reuel", 10)).extracting(Author::getId).containsExactly(tolkien.getId());
+        assertThat(catalogSearchService.searchAuthors("olki", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Rolled back writes never reach the index.")
+    void index_shouldIgnoreRolledBackWrites() {
+
+        // Act: Save a book in a transaction that rolls back.
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            bookRepository.save(Book.builder().isbn("SEARCH-5").title("Unpublished Manuscript").maxLoanDays(7).build());
+            bookRepository.flush();
+            status.setRollbackOnly();
+        });
+
+        // Assert: The book can't be found.
+        assertThat(catalogSearchIndex.books().searchSubstring("manuscript", 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Search falls back to the repository finders while the index is not ready.")
+    void search_shouldFallBackToRepositoryWhileIndexIsNotReady() {
+
+        // Arrange: A fresh index that has not been built yet.
+        CatalogSearchIndex notBuilt = new CatalogSearchIndex(bookRepository, authorRepository, transactionManager);
+        CatalogSearchService fallback = new CatalogSearchService(notBuilt, bookRepository, authorRepository);
+
+        // Act: Search for a title fragment and an author name fragment.
+        List<Book> books = fallback.searchBooks("Potter", 10);
+        List<Author> authors = fallback.searchAuthors("rowl", 10);
+
+        // Assert: The LIKE finders answer, in id order.
+        assertThat(notBuilt.isReady()).isFalse();
+        assertThat(books).extracting(Book::getIsbn).containsExactly("SEARCH-1", "SEARCH-2");
+        assertThat(authors).extracting(Author::getLastName).containsExactly("Rowling");
+    }
+
+}
@@ -0,0 +1,159 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Not transactional: every batch of the reconciliation commits on its own.
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(LoanCounterReconciler.class)
+@TestPropertySource(properties = "library.loan.counter-reconcile-batch-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanCounterReconcilerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 6, 1);
+
+    @Autowired
+    private LoanCounterReconciler reconciler;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<AppUser> users;
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        books = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            books.add(Book.builder().isbn("COUNT-" + i).title("Counted Book " + i).maxLoanDays(14).build());
+        }
+        bookRepository.saveAll(books);
+
+        users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(AppUser.builder()
+                    .username("counted" + i)
+                    .password(TestPasswords.HASH)
+                    .regDate(TODAY)
+                    .userDetails(new Details("counted" + i + "@test.nu", "Counted User " + i, LocalDate.of(1990, 1, 1)))
+                    .build());
+        }
+        appUserRepository.saveAll(users);
+    }
+
+    @Test
+    @DisplayName("Counters that differ from book_loan are corrected, batch by batch.")
+    void reconcile_shouldCorrectCountersInBatches() {
+
+        // Arrange: Loans written behind the counters' back: user 0 has one open and one overdue
+        // loan, user 3 one returned loan, and user 4 a counter with no loans behind it.
+        saveLoan(users.get(0), books.get(0), TODAY.minusDays(3), false);
+        saveLoan(users.get(0), books.get(1), TODAY.minusDays(20), false);
+        saveLoan(users.get(3), books.get(2), TODAY.minusDays(30), true);
+        AppUser stale = appUserRepository.findById(users.get(4).getId()).orElseThrow();
+        stale.setActiveLoanCount(2);
+        appUserRepository.save(stale);
+
+        // Act: Reconcile all five users, two per batch.
+        LoanCounterReport report = reconciler.reconcile(TODAY);
+
+        // Assert: Users 0 and 4 are corrected, the others already matched.
+        assertThat(report).isEqualTo(new LoanCounterReport(5, 2, 1, 0));
+        assertCounts(users.get(0), 2, 1);
+        assertCounts(users.get(3), 0, 0);
+        assertCounts(users.get(4), 0, 0);
+
+        // Assert: A second run finds nothing to do.
+        assertThat(reconciler.reconcile(TODAY)).isEqualTo(new LoanCounterReport(5, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("Loans falling due are counted as overdue by the next run.")
+    void reconcile_shouldRefreshOverdueCounts() {
+
+        // Arrange: A loan checked out two weeks ago, with matching counters.
+        saveLoan(users.get(1), books.get(0), TODAY.minusDays(14), false);
+        reconciler.reconcile(TODAY);
+        assertCounts(users.get(1), 1, 0);
+
+        // Act: Reconcile one day later, when the loan is past its due date.
+        LoanCounterReport report = reconciler.reconcile(TODAY.plusDays(1));
+
+        // Assert: Only the overdue count changed.
+        assertThat(report).isEqualTo(new LoanCounterReport(5, 0, 1, 0));
+        assertCounts(users.get(1), 1, 1);
+    }
+
+    @Test
+    @DisplayName("Corrections only touch the cache entries of the corrected users.")
+    void reconcile_shouldKeepOtherUsersCached() {
+
+        // Arrange: User 0 has a loan its counters don't know about; users 0 and 1 are cached.
+        saveLoan(users.get(0), books.get(0), TODAY.minusDays(3), false);
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        cache.evictAll();
+        List.of(0, 1).forEach(i -> appUserRepository.findById(users.get(i).getId()).orElseThrow());
+
+        // Act
+        reconciler.reconcile(TODAY);
+
+        // Assert: User 1 is still cached, user 0 is read back with the corrected counters.
+        assertThat(cache.containsEntity(AppUser.class, users.get(1).getId())).isTrue();
+        assertCounts(users.get(0), 1, 0);
+    }
+
+    private void saveLoan(AppUser borrower, Book book, LocalDate loanDate, boolean returned) {
+        bookLoanRepository.save(BookLoan.builder()
+                .borrower(borrower)
+                .book(book)
+                .loanDate(loanDate)
+                .dueDate(loanDate.plusDays(book.getMaxLoanDays()))
+                .returned(returned)
+                .build());
+    }
+
+    private void assertCounts(AppUser user, int activeLoans, int overdueLoans) {
+        AppUser stored = appUserRepository.findById(user.getId()).orElseThrow();
+        assertThat(stored.getActiveLoanCount()).as("active loans of %s", user.getUsername()).isEqualTo(activeLoans);
+        assertThat(stored.getOverdueLoanCount()).as("overdue loans of %s", user.getUsername()).isEqualTo(overdueLoans);
+    }
+}
@@ -0,0 +1,341 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Not transactional: every checkout has to commit on its own for the concurrency test to mean anything.
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(LoanService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanServiceTest {
+
+    private static final int BOOKS = 10;
+    private static final int USERS = 16;
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<Book> books;
+    private List<AppUser> users;
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(Book.builder().isbn("STRESS-" + i).title("Stress Book " + i).maxLoanDays(14).build());
+        }
+        bookRepository.saveAll(books);
+
+        users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(AppUser.builder()
+                    .username("stress" + i)
+                    .password(TestPasswords.HASH)
+                    .regDate(LocalDate.now())
+                    .userDetails(new Details("stress" + i + "@test.nu", "Stress User " + i, LocalDate.of(1990, 1, 1)))
+                    .build());
+        }
+        appUserRepository.saveAll(users);
+    }
+
+    @Test
+    @DisplayName("Checkout creates a loan and makes the book unavailable.")
+    void checkout_shouldCreateLoanAndMarkBookUnavailable() {
+
+        // Act: Check out the first book for the first user.
+        BookLoan loan = loanService.checkout(users.get(0).getId(), books.get(0).getId());
+
+        // Assert: The loan is stored with a due date and the book is no longer available.
+        BookLoan stored = bookLoanRepository.findById(loan.getId()).orElseThrow();
+        assertThat(stored.getDueDate()).isEqualTo(stored.getLoanDate().plusDays(14));
+        assertThat(bookRepository.findById(books.get(0).getId()).orElseThrow().isAvailable()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Checkout of a book that is already on loan throws.")
+    void checkout_shouldThrowWhenBookIsOnLoan() {
+
+        // Arrange: The first user borrows the book.
+        loanService.checkout(users.get(0).getId(), books.get(0).getId());
+
+        // Act & Assert: The second user cannot borrow the same book.
+        assertThrows(IllegalStateException.class,
+                () -> loanService.checkout(users.get(1).getId(), books.get(0).getId()));
+        assertThat(bookLoanRepository.findByBookId(books.get(0).getId())).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Checkout with an unknown user or book throws IllegalArgumentException.")
+    void checkout_shouldThrowForUnknownIds() {
+
+        // Act & Assert: Neither a missing user nor a missing book creates a loan.
+        assertThrows(IllegalArgumentException.class, () -> loanService.checkout(999_999, books.get(0).getId()));
+        assertThrows(IllegalArgumentException.class, () -> loanService.checkout(users.get(0).getId(), 999_999));
+        assertThat(bookLoanRepository.count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Returning a loan marks it returned and makes the book available again.")
+    void returnLoan_shouldMarkReturnedAndReleaseBook() {
+
+        // Arrange: Check out a book.
+        BookLoan loan = loanService.checkout(users.get(0).getId(), books.get(0).getId());
+
+        // Act: Return the loan.
+        boolean returned = loanService.returnLoan(loan.getId());
+
+        // Assert: The loan is returned and the book can be borrowed again.
+        assertThat(returned).isTrue();
+        assertThat(bookLoanRepository.findById(loan.getId()).orElseThrow().isReturned()).isTrue();
+        assertThat(bookRepository.findById(books.get(0).getId()).orElseThrow().isAvailable()).isTrue();
+        assertThat(loanService.checkout(users.get(1).getId(), books.get(0).getId())).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Returning an already returned loan does nothing.")
+    void returnLoan_shouldIgnoreAlreadyReturnedLoan() {
+
+        // Arrange: Borrow and return a book, then lend it to another user.
+        BookLoan firstLoan = loanService.checkout(users.get(0).getId(), books.get(0).getId());
+        loanService.returnLoan(firstLoan.getId());
+        loanService.checkout(users.get(1).getId(), books.get(0).getId());
+
+        // Act: Return the first loan a second time.
+        boolean returned = loanService.returnLoan(firstLoan.getId());
+
+        // Assert: Nothing changed, the book stays lent to the second user.
+        assertThat(returned).isFalse();
+        assertThat(bookRepository.findById(books.get(0).getId()).orElseThrow().isAvailable()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Returning a batch of loans releases all their books.")
+    void returnLoans_shouldReturnWholeBatch() {
+
+        // Arrange: Lend five books and return one of them already.
+        List<Integer> loanIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            loanIds.add(loanService.checkout(users.get(i).getId(), books.get(i).getId()).getId());
+        }
+        loanService.returnLoan(loanIds.get(0));
+        loanIds.add(999_999);
+
+        // Act: Return the whole drop box, including the returned and a non-existing loan.
+        int returned = loanService.returnLoans(loanIds);
+
+        // Assert: The four open loans are returned and all five books are available.
+        assertThat(returned).isEqualTo(4);
+        assertThat(bookLoanRepository.findByReturnedFalse()).isEmpty();
+        assertThat(bookRepository.findAll()).allMatch(Book::isAvailable);
+    }
+
+    @Test
+    @DisplayName("Checkout and return keep the borrower's active loan count up to date.")
+    void checkoutAndReturn_shouldMaintainActiveLoanCount() {
+
+        // Arrange: The first user borrows three books.
+        int userId = users.get(0).getId();
+        List<Integer> loanIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            loanIds.add(loanService.checkout(userId, books.get(i).getId()).getId());
+        }
+        assertThat(appUserRepository.findById(userId).orElseThrow().getActiveLoanCount()).isEqualTo(3);
+
+        // Act: Return two of them, one of them twice.
+        loanService.returnLoan(loanIds.get(0));
+        loanService.returnLoans(List.of(loanIds.get(0), loanIds.get(1)));
+
+        // Assert: Only the loan that is still out is counted.
+        assertThat(appUserRepository.findById(userId).orElseThrow().getActiveLoanCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Returning an overdue loan also lowers the overdue count.")
+    void returnLoan_shouldDecrementOverdueCount() {
+
+        // Arrange: A loan that fell due yesterday, counted as overdue by the reconciliation.
+        int userId = users.get(0).getId();
+        BookLoan loan = loanService.checkout(userId, books.get(0).getId(), LocalDate.now().minusDays(15));
+        AppUser counted = appUserRepository.findById(userId).orElseThrow();
+        counted.setOverdueLoanCount(1);
+        appUserRepository.save(counted);
+
+        // Act: Return the loan.
+        loanService.returnLoan(loan.getId());
+
+        // Assert: Neither counter includes it anymore.
+        AppUser borrower = appUserRepository.findById(userId).orElseThrow();
+        assertThat(borrower.getActiveLoanCount()).isZero();
+        assertThat(borrower.getOverdueLoanCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Returns refresh the cached borrowers and books they change and keep the others cached.")
+    void returnLoans_shouldOnlyTouchCacheEntriesOfAffectedRows() {
+
+        // Arrange: One loan to return; two users and two books in the cache.
+        BookLoan loan = loanService.checkout(users.get(0).getId(), books.get(0).getId());
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        cache.evictAll();
+        List.of(0, 1).forEach(i -> {
+            appUserRepository.findById(users.get(i).getId()).orElseThrow();
+            bookRepository.findById(books.get(i).getId()).orElseThrow();
+        });
+
+        // Act
+        loanService.returnLoans(List.of(loan.getId()));
+
+        // Assert: The other user and book are still cached; the changed ones are cached with the new state.
+        assertThat(cache.containsEntity(AppUser.class, users.get(1).getId())).isTrue();
+        assertThat(cache.containsEntity(Book.class, books.get(1).getId())).isTrue();
+        assertThat(appUserRepository.findById(users.get(0).getId()).orElseThrow().getActiveLoanCount()).isZero();
+        assertThat(bookRepository.findById(books.get(0).getId()).orElseThrow().isAvailable()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Checkout beyond the borrowing limit throws and leaves the book available.")
+    void checkout_shouldEnforceMaxActiveLoans() {
+
+        // Arrange: The first user borrows the maximum of five books.
+        int userId = users.get(0).getId();
+        BookLoan first = loanService.checkout(userId, books.get(0).getId());
+        for (int i = 1; i < 5; i++) {
+            loanService.checkout(userId, books.get(i).getId());
+        }
+
+        // Act & Assert: The sixth checkout is refused.
+        assertThrows(IllegalStateException.class, () -> loanService.checkout(userId, books.get(5).getId()));
+        assertThat(bookRepository.findById(books.get(5).getId()).orElseThrow().isAvailable()).isTrue();
+
+        // Act & Assert: After a return there is room for it again.
+        loanService.returnLoan(first.getId());
+        assertThat(loanService.checkout(userId, books.get(5).getId())).isNotNull();
+        assertThat(appUserRepository.findById(userId).orElseThrow().getActiveLoanCount()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Concurrent checkouts by one borrower never pass the borrowing limit.")
+    void checkout_shouldNotPassLimitUnderContention() throws Exception {
+
+        // Arrange: One user tries to borrow every book at the same time.
+        int userId = users.get(0).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(BOOKS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (Book book : books) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    loanService.checkout(userId, book.getId());
+                } catch (IllegalStateException | OptimisticLockingFailureException e) {
+                    // Refused by the limit, or lost the race more often than there are retries.
+                }
+                return null;
+            }));
+        }
+
+        // Act: Release all threads and wait for them to finish.
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert: At most five loans exist and the counter matches them.
+        int loans = bookLoanRepository.findByBorrowerId(userId).size();
+        assertThat(loans).isBetween(1, 5);
+        assertThat(appUserRepository.findById(userId).orElseThrow().getActiveLoanCount()).isEqualTo(loans);
+    }
+
+    @Test
+    @DisplayName("Concurrent checkouts of the same books never create double loans.")
+    void checkout_shouldNeverDoubleLoanUnderContention() throws Exception {
+
+        // Arrange: Every user tries to borrow every book at the same time.
+        ExecutorService executor = Executors.newFixedThreadPool(USERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successful = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (AppUser user : users) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (Book book : books) {
+                    try {
+                        loanService.checkout(user.getId(), book.getId());
+                        successful.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        // Act: Release all threads and wait for them to finish.
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert: Each book was lent exactly once and all other attempts were rejected.
+        assertThat(successful.get()).isEqualTo(BOOKS);
+        assertThat(rejected.get()).isEqualTo(BOOKS * USERS - BOOKS);
+
+        Map<Integer, Long> loansPerBook = bookLoanRepository.findAll().stream()
+                .collect(Collectors.groupingBy(loan -> loan.getBook().getId(), Collectors.counting()));
+        assertThat(loansPerBook).hasSize(BOOKS).allSatisfy((bookId, loans) -> assertThat(loans).isEqualTo(1L));
+        assertThat(bookRepository.findAll()).noneMatch(Book::isAvailable);
+    }
+
+}
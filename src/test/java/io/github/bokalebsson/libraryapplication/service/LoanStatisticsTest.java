@@ -0,0 +1,185 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.dto.BookCirculation;
+import io.github.bokalebsson.libraryapplication.dto.CirculationSummary;
+import io.github.bokalebsson.libraryapplication.dto.CohortCirculation;
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.entity.LoanDailyStats;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.repository.LoanDailyStatsRepository;
+import io.github.bokalebsson.libraryapplication.support.QueryBudget;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Not transactional: checkouts, returns and every backfill batch commit on their own.
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({LoanService.class, LoanStatisticsBackfill.class})
+@TestPropertySource(properties = "library.statistics.backfill-days-per-batch=7")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoanStatisticsTest {
+
+    // Returns are always dated today.
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private LoanStatisticsBackfill backfill;
+
+    @Autowired
+    private LoanDailyStatsRepository loanDailyStatsRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+
+        loanDailyStatsRepository.deleteAllInBatch();
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        books = bookRepository.saveAll(List.of(
+                Book.builder().isbn("STATS-0").title("Popular").maxLoanDays(14).build(),
+                Book.builder().isbn("STATS-1").title("Steady").maxLoanDays(14).build(),
+                Book.builder().isbn("STATS-2").title("Quiet").maxLoanDays(14).build()));
+        AppUser veteran = user("veteran", LocalDate.of(2023, 1, 15));
+        AppUser newcomer = user("newcomer", LocalDate.of(2024, 5, 2));
+
+        // Popular: 20 days, 6 of them overdue, then out again. Steady: 5 days. Quiet: still out.
+        BookLoan late = loanService.checkout(veteran.getId(), books.get(0).getId(), TODAY.minusDays(20));
+        BookLoan onTime = loanService.checkout(newcomer.getId(), books.get(1).getId(), TODAY.minusDays(5));
+        loanService.checkout(newcomer.getId(), books.get(2).getId(), TODAY.minusDays(3));
+        loanService.returnLoans(List.of(late.getId(), onTime.getId()));
+        loanService.checkout(newcomer.getId(), books.get(0).getId(), TODAY);
+    }
+
+    @Test
+    @QueryBudget(maxQueries = 3, maxEntityLoads = 0, maxCollectionFetches = 0)
+    @DisplayName("Checkouts and returns are rolled up as they happen, and reports read only the rollups.")
+    void reports_shouldAnswerFromRollups() {
+
+        // Act
+        CirculationSummary summary = loanDailyStatsRepository.summarize(TODAY.minusDays(30), TODAY);
+        List<CohortCirculation> cohorts = loanDailyStatsRepository.summarizeByCohort(TODAY.minusDays(30), TODAY);
+        List<BookCirculation> topBooks = loanDailyStatsRepository.findMostBorrowedBooks(TODAY.minusDays(30), TODAY, Limit.of(2));
+
+        // Assert
+        assertThat(summary).isEqualTo(new CirculationSummary(4, 2, 12.5, 0.5));
+        assertThat(cohorts).containsExactly(
+                new CohortCirculation(202301, new CirculationSummary(1, 1, 20, 1)),
+                new CohortCirculation(202405, new CirculationSummary(3, 1, 5, 0)));
+        assertThat(topBooks).containsExactly(
+                new BookCirculation(books.get(0).getId(), "Popular", 2),
+                new BookCirculation(books.get(1).getId(), "Steady", 1));
+    }
+
+    @Test
+    @DisplayName("A period without circulation reports zeros.")
+    void summarize_shouldReportZerosForEmptyPeriod() {
+
+        // Act
+        CirculationSummary summary = loanDailyStatsRepository.summarize(TODAY.minusYears(2), TODAY.minusYears(1));
+
+        // Assert
+        assertThat(summary).isEqualTo(new CirculationSummary(0, 0, 0, 0));
+    }
+
+    @Test
+    @DisplayName("The backfill rebuilds the same rollups from book_loan, batch by batch, and leaves today alone.")
+    void backfill_shouldRebuildIncrementalRollups() {
+
+        // Arrange
+        List<LoanDailyStats> incremental = loanDailyStatsRepository.findAll();
+        long beforeToday = incremental.stream().filter(stats -> stats.getStatDate().isBefore(TODAY)).count();
+        loanDailyStatsRepository.deleteByStatDateBetween(TODAY.minusYears(1), TODAY.minusDays(1));
+
+        // Act: 20 days in batches of 7.
+        int rows = backfill.backfillAll();
+
+        // Assert
+        assertThat(rows).isEqualTo(beforeToday);
+        assertThat(loanDailyStatsRepository.findAll())
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(incremental);
+    }
+
+    @Test
+    @DisplayName("Rebuilding a range that reaches today stops at yesterday.")
+    void backfill_shouldNotRebuildToday() {
+
+        // Arrange
+        List<LoanDailyStats> today = loanDailyStatsRepository.findAll().stream()
+                .filter(stats -> stats.getStatDate().isEqual(TODAY))
+                .toList();
+
+        // Act
+        int rows = backfill.backfill(TODAY.minusDays(1), TODAY.plusDays(1));
+
+        // Assert: Nothing happened yesterday, and today's rows are the incremental ones.
+        assertThat(rows).isZero();
+        assertThat(today).isNotEmpty();
+        assertThat(loanDailyStatsRepository.findAll())
+                .filteredOn(stats -> !stats.getStatDate().isBefore(TODAY))
+                .usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(today);
+    }
+
+    @Test
+    @DisplayName("Rebuilding a range replaces its rows, including loans that bypassed LoanService.")
+    void backfill_shouldReplaceRowsOfRange() {
+
+        // Arrange: A loan written directly, without touching the rollups.
+        BookLoan direct = BookLoan.builder().loanDate(TODAY.minusDays(3)).dueDate(TODAY.plusDays(11)).book(books.get(2)).build();
+        appUserRepository.findByUsername("veteran").orElseThrow().addBookLoan(direct);
+        bookLoanRepository.save(direct);
+
+        // Act
+        backfill.backfill(TODAY.minusDays(3), TODAY.minusDays(3));
+
+        // Assert: Quiet now has both checkouts of that day, and nothing else changed.
+        assertThat(loanDailyStatsRepository.findMostBorrowedBooks(TODAY.minusDays(3), TODAY.minusDays(3), Limit.of(10)))
+                .containsExactly(new BookCirculation(books.get(2).getId(), "Quiet", 2));
+        assertThat(loanDailyStatsRepository.summarize(TODAY.minusDays(30), TODAY).checkouts()).isEqualTo(5);
+    }
+
+    private AppUser user(String username, LocalDate regDate) {
+        return appUserRepository.save(AppUser.builder()
+                .username(username)
+                .password(TestPasswords.HASH)
+                .regDate(regDate)
+                .userDetails(new Details(username + "@test.nu", username, LocalDate.of(1990, 1, 1)))
+                .build());
+    }
+}
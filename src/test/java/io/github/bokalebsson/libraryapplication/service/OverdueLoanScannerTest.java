@@ -0,0 +1,110 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.dto.OverdueLoanView;
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Book;
+import io.github.bokalebsson.libraryapplication.entity.BookLoan;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookLoanRepository;
+import io.github.bokalebsson.libraryapplication.repository.BookRepository;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(OverdueLoanScanner.class)
+class OverdueLoanScannerTest {
+
+    @Autowired
+    private OverdueLoanScanner overdueLoanScanner;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        appUserRepository.deleteAll();
+
+        AppUser reader = appUserRepository.save(AppUser.builder()
+                .username("reader")
+                .password(TestPasswords.HASH)
+                .regDate(today)
+                .userDetails(new Details("reader@test.nu", "Late Reader", LocalDate.of(1990, 1, 1)))
+                .build());
+
+        List<Book> books = new ArrayList<>();
+        List<BookLoan> loans = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            Book book = Book.builder().isbn("OVERDUE-" + i).title("Overdue Book " + i).maxLoanDays(14).build();
+            books.add(book);
+            loans.add(BookLoan.builder()
+                    .book(book)
+                    .borrower(reader)
+                    .loanDate(today.minusDays(30))
+                    .dueDate(i % 5 == 0 ? today.plusDays(1) : today.minusDays(1 + i % 7))
+                    .returned(i % 10 == 1)
+                    .build());
+        }
+        bookRepository.saveAll(books);
+        bookLoanRepository.saveAll(loans);
+    }
+
+    @Test
+    @DisplayName("Scan passes every overdue, not returned loan to the consumer in id order.")
+    void scan_shouldEmitAllOverdueLoans() {
+
+        // Arrange: Collect the emitted rows.
+        List<OverdueLoanView> reminders = new ArrayList<>();
+
+        // Act: Scan for loans overdue today.
+        long count = overdueLoanScanner.scan(today, reminders::add);
+
+        // Assert: 250 loans minus 50 not yet due minus 25 returned are overdue.
+        assertThat(count).isEqualTo(175);
+        assertThat(reminders).hasSize(175)
+                .allSatisfy(reminder -> {
+                    assertThat(reminder.borrowerEmail()).isEqualTo("reader@test.nu");
+                    assertThat(reminder.dueDate()).isBefore(today);
+                    assertThat(reminder.bookTitle()).startsWith("Overdue Book");
+                });
+        assertThat(reminders).extracting(OverdueLoanView::loanId).isSorted();
+    }
+
+    @Test
+    @DisplayName("Scan emits nothing when no loan is overdue.")
+    void scan_shouldEmitNothingWhenNoLoanIsOverdue() {
+
+        // Act: Scan with a date before every due date.
+        long count = overdueLoanScanner.scan(today.minusDays(30), reminder -> {
+            throw new AssertionError("No reminder expected");
+        });
+
+        // Assert: Nothing was emitted.
+        assertThat(count).isZero();
+    }
+
+}
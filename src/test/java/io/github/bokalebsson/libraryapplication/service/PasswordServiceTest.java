@@ -0,0 +1,256 @@
+package io.github.bokalebsson.libraryapplication.service;
+
+import io.github.bokalebsson.libraryapplication.config.PasswordEncoderConfig;
+import io.github.bokalebsson.libraryapplication.config.PasswordHashingProperties;
+import io.github.bokalebsson.libraryapplication.config.PasswordHashingProperties.Algorithm;
+import io.github.bokalebsson.libraryapplication.entity.AppUser;
+import io.github.bokalebsson.libraryapplication.entity.Details;
+import io.github.bokalebsson.libraryapplication.repository.AppUserRepository;
+import io.github.bokalebsson.libraryapplication.support.TestPasswords;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({PasswordService.class, PasswordEncoderConfig.class})
+@TestPropertySource(properties = "library.password.bcrypt.strength=5")
+class PasswordServiceTest {
+
+    private static final String CURRENT_HASH_PREFIX = "{bcrypt}$2a$05$";
+
+    @Autowired
+    private PasswordService passwordService;
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+
+        appUserRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Login accepts the right password only and never stores it in plain text.")
+    void login_shouldAcceptCorrectPasswordOnly() {
+
+        // Arrange: A user whose password is set through the service.
+        AppUser user = newUser("reader");
+        passwordService.setPassword(user, "correct horse");
+        appUserRepository.save(user);
+
+        // Act & Assert: Only the right password of a known user logs in.
+        assertThat(user.getPassword()).startsWith(CURRENT_HASH_PREFIX).doesNotContain("correct horse");
+        assertThat(passwordService.login("reader", "correct horse")).containsSame(user);
+        assertThat(passwordService.login("reader", "wrong horse")).isEmpty();
+        assertThat(passwordService.login("nobody", "correct horse")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A legacy plain text password logs in once and is then replaced by a hash, if legacy passwords are accepted.")
+    void login_shouldRehashLegacyPlaintextPassword() {
+
+        // Arrange: A user stored before passwords were hashed, and a service that accepts those.
+        AppUser user = storeLegacyUser("legacy", "123456789");
+        PasswordService legacyPasswordService = new PasswordService(encoder(Algorithm.BCRYPT, 5, true),
+                appUserRepository, transactionManager);
+
+        // Act: Log in with the plain text password.
+        boolean loggedIn = legacyPasswordService.login("legacy", "123456789").isPresent();
+
+        // Assert: The stored password is now a current hash and still works, also without legacy support.
+        assertThat(loggedIn).isTrue();
+        assertThat(reload(user).getPassword()).startsWith(CURRENT_HASH_PREFIX);
+        assertThat(passwordService.login("legacy", "123456789")).isPresent();
+    }
+
+    @Test
+    @DisplayName("By default a legacy plain text password doesn't log in.")
+    void login_shouldRejectLegacyPlaintextPasswordByDefault() {
+
+        // Arrange
+        AppUser user = storeLegacyUser("legacy", "123456789");
+
+        // Act
+        boolean loggedIn = passwordService.login("legacy", "123456789").isPresent();
+
+        // Assert
+        assertThat(loggedIn).isFalse();
+        assertThat(reload(user).getPassword()).isEqualTo("123456789");
+    }
+
+    @Test
+    @DisplayName("A user can't be given a password that isn't a hash.")
+    void appUser_shouldRejectUnhashedPassword() {
+
+        // Arrange
+        AppUser user = newUser("plain");
+
+        // Act & Assert
+        assertThatIllegalArgumentException().isThrownBy(() -> user.setPassword("123456789"));
+        assertThatIllegalArgumentException().isThrownBy(() -> AppUser.builder().password("123456789"));
+        assertThatIllegalArgumentException().isThrownBy(() -> new AppUser("plain", "123456789",
+                LocalDate.of(2025, 1, 1), null));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Login verifies and rehashes the password without a transaction open.")
+    void login_shouldHashOutsideTransactions() {
+
+        // Arrange: A committed user with an outdated hash, and an encoder that notes whether a
+        // transaction is open whenever it hashes.
+        AppUser user = newUser("outside");
+        user.setPassword(encoder(Algorithm.PBKDF2, 4, false).encode("secret"));
+        appUserRepository.save(user);
+        List<Boolean> inTransaction = new ArrayList<>();
+        PasswordEncoder current = encoder(Algorithm.BCRYPT, 5, false);
+        PasswordEncoder recording = new PasswordEncoder() {
+
+            @Override
+            public String encode(CharSequence rawPassword) {
+                inTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+                return current.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                inTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+                return current.matches(rawPassword, encodedPassword);
+            }
+
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                return current.upgradeEncoding(encodedPassword);
+            }
+        };
+
+        PasswordService recordingPasswordService = new PasswordService(recording, appUserRepository,
+                transactionManager);
+        inTransaction.clear();
+
+        try {
+            // Act
+            boolean loggedIn = recordingPasswordService.login("outside", "secret").isPresent();
+
+            // Assert: Verified and rehashed, neither of them in a transaction, and the new hash is stored.
+            assertThat(loggedIn).isTrue();
+            assertThat(inTransaction).hasSize(2).containsOnly(false);
+            assertThat(appUserRepository.findById(user.getId()).orElseThrow().getPassword())
+                    .startsWith(CURRENT_HASH_PREFIX);
+        } finally {
+            appUserRepository.deleteAll();
+        }
+    }
+
+    @Test
+    @DisplayName("Hashes with a lower cost or another algorithm are upgraded on login.")
+    void login_shouldUpgradeOutdatedHashes() {
+
+        // Arrange: One user hashed with a lower bcrypt cost, one with PBKDF2 and one with Argon2.
+        AppUser cheap = newUser("cheap");
+        cheap.setPassword(encoder(Algorithm.BCRYPT, 4).encode("secret"));
+        AppUser pbkdf2 = newUser("pbkdf2");
+        pbkdf2.setPassword(encoder(Algorithm.PBKDF2, 4).encode("secret"));
+        AppUser argon2 = newUser("argon2");
+        argon2.setPassword(encoder(Algorithm.ARGON2, 4).encode("secret"));
+        appUserRepository.saveAll(List.of(cheap, pbkdf2, argon2));
+
+        // Act: All of them log in.
+        passwordService.login("cheap", "secret").orElseThrow();
+        passwordService.login("pbkdf2", "secret").orElseThrow();
+        passwordService.login("argon2", "secret").orElseThrow();
+
+        // Assert: All now have a hash with the current algorithm and cost.
+        assertThat(reload(cheap).getPassword()).startsWith(CURRENT_HASH_PREFIX);
+        assertThat(reload(pbkdf2).getPassword()).startsWith(CURRENT_HASH_PREFIX);
+        assertThat(reload(argon2).getPassword()).startsWith(CURRENT_HASH_PREFIX);
+    }
+
+    @Test
+    @DisplayName("A failed login leaves an outdated hash alone.")
+    void login_shouldNotRehashOnWrongPassword() {
+
+        // Arrange: A user with an outdated hash.
+        AppUser user = newUser("unlucky");
+        String outdated = encoder(Algorithm.PBKDF2, 4).encode("secret");
+        user.setPassword(outdated);
+        appUserRepository.save(user);
+
+        // Act: Log in with a wrong password.
+        boolean loggedIn = passwordService.login("unlucky", "guess").isPresent();
+
+        // Assert: Nothing changed.
+        assertThat(loggedIn).isFalse();
+        assertThat(reload(user).getPassword()).isEqualTo(outdated);
+    }
+
+    private static PasswordEncoder encoder(Algorithm algorithm, int bcryptStrength) {
+        return encoder(algorithm, bcryptStrength, false);
+    }
+
+    private static PasswordEncoder encoder(Algorithm algorithm, int bcryptStrength, boolean acceptLegacyPlaintext) {
+        return PasswordEncoderConfig.delegatingPasswordEncoder(new PasswordHashingProperties(algorithm,
+                acceptLegacyPlaintext,
+                new PasswordHashingProperties.Bcrypt(bcryptStrength),
+                new PasswordHashingProperties.Argon2(1024, 1, 1),
+                new PasswordHashingProperties.Pbkdf2(1000)));
+    }
+
+    // Written past the entity, which only takes hashes, like a row from before hashing was introduced.
+    private AppUser storeLegacyUser(String username, String plaintext) {
+        AppUser user = appUserRepository.save(newUser(username));
+        entityManager.flush();
+        entityManager.getEntityManager()
+                .createNativeQuery("update app_users set password = :password where id = :id")
+                .setParameter("password", plaintext)
+                .setParameter("id", user.getId())
+                .executeUpdate();
+        entityManager.clear();
+        return user;
+    }
+
+    private AppUser reload(AppUser user) {
+        entityManager.flush();
+        entityManager.clear();
+        return appUserRepository.findById(user.getId()).orElseThrow();
+    }
+
+    private static AppUser newUser(String username) {
+        return AppUser.builder()
+                .username(username)
+                .password(TestPasswords.HASH)
+                .regDate(LocalDate.of(2025, 1, 1))
+                .userDetails(Details.builder()
+                        .name(username)
+                        .email(username + "@test.nu")
+                        .birthDate(LocalDate.of(1990, 1, 1))
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.bokalebsson.libraryapplication.support;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails a test that needs more SQL work than it is allowed. Counted from Hibernate statistics
+ * between the end of the {@code @BeforeEach} methods and the end of the test method; whatever
+ * the setup left unflushed is written before counting starts.
+ * <p>
+ * Put it on a test method, or on the class to give every test without its own budget the same one.
+ * The statistics have to be enabled ({@code hibernate.generate_statistics}), which the "test"
+ * profile does.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@ExtendWith(QueryBudgetExtension.class)
+public @interface QueryBudget {
+
+    int UNLIMITED = -1;
+
+    /** Maximum number of JDBC statements prepared, reads and writes alike. */
+    int maxQueries() default UNLIMITED;
+
+    /** Maximum number of entities loaded from the database. */
+    int maxEntityLoads() default UNLIMITED;
+
+    /** Maximum number of collections initialized. */
+    int maxCollectionFetches() default UNLIMITED;
+}
@@ -0,0 +1,79 @@
+package io.github.bokalebsson.libraryapplication.support;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Enforces {@link QueryBudget}. Registered by the annotation itself, so tests only need the annotation.
+ */
+public class QueryBudgetExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        if (findBudget(context) == null) {
+            return;
+        }
+
+        EntityManagerFactory entityManagerFactory = entityManagerFactory(context);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            throw new ExtensionConfigurationException(
+                    "@QueryBudget needs Hibernate statistics, set spring.jpa.properties.hibernate.generate_statistics=true");
+        }
+
+        // Setup work still pending in the test's persistence context must not count against the test.
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (entityManager != null && entityManager.isJoinedToTransaction()) {
+            entityManager.flush();
+        }
+        statistics.clear();
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        QueryBudget budget = findBudget(context);
+        if (budget == null || context.getExecutionException().isPresent()) {
+            return;
+        }
+
+        Statistics statistics = entityManagerFactory(context).unwrap(SessionFactory.class).getStatistics();
+        List<String> exceeded = new ArrayList<>();
+        check(exceeded, "queries", statistics.getPrepareStatementCount(), budget.maxQueries());
+        check(exceeded, "entity loads", statistics.getEntityLoadCount(), budget.maxEntityLoads());
+        check(exceeded, "collection fetches", statistics.getCollectionFetchCount(), budget.maxCollectionFetches());
+
+        if (!exceeded.isEmpty()) {
+            fail("Query budget exceeded in " + context.getDisplayName() + ": " + String.join(", ", exceeded));
+        }
+    }
+
+    private static void check(List<String> exceeded, String name, long actual, int max) {
+        if (max != QueryBudget.UNLIMITED && actual > max) {
+            exceeded.add(name + " " + actual + " > " + max);
+        }
+    }
+
+    private static QueryBudget findBudget(ExtensionContext context) {
+        return AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), QueryBudget.class)
+                .or(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), QueryBudget.class))
+                .orElse(null);
+    }
+
+    private static EntityManagerFactory entityManagerFactory(ExtensionContext context) {
+        return SpringExtension.getApplicationContext(context).getBean(EntityManagerFactory.class);
+    }
+}
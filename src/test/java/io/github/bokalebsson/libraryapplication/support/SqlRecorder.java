@@ -0,0 +1,31 @@
+package io.github.bokalebsson.libraryapplication.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the SQL Hibernate sends, so tests can look at (or EXPLAIN) the statements a finder
+ * really generates. Enable it for a test context with
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector} set to this class.
+ */
+public class SqlRecorder implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    /** The statements recorded since the last {@link #clear()}, in order. */
+    public static List<String> statements() {
+        return List.copyOf(STATEMENTS);
+    }
+}
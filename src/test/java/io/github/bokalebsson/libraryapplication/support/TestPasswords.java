@@ -0,0 +1,13 @@
+package io.github.bokalebsson.libraryapplication.support;
+
+/**
+ * Stored passwords for test users, which AppUser only accepts as hashes.
+ */
+public final class TestPasswords {
+
+    // "secret", hashed with bcrypt at the lowest cost.
+    public static final String HASH = "{bcrypt}$2a$04$qqebfO0Oopsc8yLqcNPZgeiFXFq9a4j8YNmpADwHtnLofjQBI0.7C";
+
+    private TestPasswords() {
+    }
+}
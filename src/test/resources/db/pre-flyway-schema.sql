@@ -0,0 +1,72 @@
+-- The schema ddl-auto=update created from the entities before the migrations existed: identity
+-- ids, no sequence tables, no author.uuid or book.version, and constraint names Hibernate made up.
+create table details (
+    id integer not null auto_increment,
+    birth_date date not null,
+    email varchar(100) not null,
+    name varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+create table app_users (
+    id integer not null auto_increment,
+    password varchar(255) not null,
+    reg_date date not null,
+    username varchar(255) not null,
+    details_id integer not null,
+    primary key (id)
+) engine=InnoDB;
+create table author (
+    id integer not null auto_increment,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+create table book (
+    id integer not null auto_increment,
+    available bit not null,
+    isbn varchar(255) not null,
+    max_loan_days integer not null,
+    title varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+create table author_book (
+    author_id integer not null,
+    book_id integer not null,
+    primary key (author_id, book_id)
+) engine=InnoDB;
+create table book_loan (
+    id integer not null auto_increment,
+    due_date date not null,
+    loan_date date not null,
+    returned bit not null,
+    book_id integer not null,
+    borrower_id integer not null,
+    primary key (id)
+) engine=InnoDB;
+alter table details add constraint UKj3ogv0e8sxo0ql7x9vohi43df unique (email);
+alter table app_users add constraint UK7jt3ycfhtnlr5psy5tvdlbo5s unique (details_id);
+alter table app_users add constraint UKspsnwr241e9k9c8p5xl4k45ih unique (username);
+alter table book add constraint UKehpdfjpu1jm3hijhj4mm0hx9h unique (isbn);
+alter table app_users add constraint FK5b8hxkjvbbsvxa8fqd0gjq1ad foreign key (details_id) references details (id);
+alter table author_book add constraint FKn8665s8lv781v4eojs8jo3jao foreign key (book_id) references book (id);
+alter table author_book add constraint FKg7j6ud9d32ll232o9mgo90s57 foreign key (author_id) references author (id);
+alter table book_loan add constraint FKpdapwdnhfdr9q6l6ek4m3ak2m foreign key (book_id) references book (id);
+alter table book_loan add constraint FKbvhcfu9aq4cyvmnjm0ewjb6y6 foreign key (borrower_id) references app_users (id);
+
+-- Once the pooled-id entities ran against it with ddl-auto=update, Hibernate added sequence tables
+-- starting at 1, behind the identity ids.
+create table book_loan_seq (next_val bigint) engine=InnoDB;
+insert into book_loan_seq values (1);
+
+-- Ids well past 1, as they are after a while in production. A username and an ISBN as they
+-- were stored before they were normalized.
+insert into details (id, birth_date, email, name) values (120, '1985-03-01', 'Ada@Example.com', 'Ada Lovelace');
+insert into app_users (id, password, reg_date, username, details_id) values (130, 'secret', '2020-01-10', ' Ada', 120);
+insert into author (id, first_name, last_name) values (140, 'Donald', 'Knuth'), (141, 'Edsger', 'Dijkstra');
+insert into book (id, available, isbn, max_loan_days, title)
+values (150, false, '9780201896831', 30, 'The Art of Computer Programming'),
+       (151, true, '0-13-110362-8', 14, 'The C Programming Language');
+insert into author_book (author_id, book_id) values (140, 150);
+insert into book_loan (id, due_date, loan_date, returned, book_id, borrower_id)
+values (160, '2020-02-10', '2020-01-10', true, 151, 130),
+       (161, '2020-03-31', '2020-03-01', false, 150, 130);